@@ -0,0 +1,105 @@
+package frc.robot.commands.auto;
+
+import com.pathplanner.lib.auto.AutoBuilder;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.subsystems.drive.Drive;
+import frc.robot.subsystems.drive.GyroIO;
+import frc.robot.subsystems.drive.ModuleIOSim;
+import frc.robot.util.PathCache;
+import frc.robot.util.TrajectoryCache;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the startup cost of the auto choosers: {@link AutoBuilder#buildAutoChooser()}, which
+ * builds every PathPlanner auto and was called twice at boot, against building only the selected
+ * auto through {@link AutoRegistry}. Also compares loading a path from its JSON with loading it
+ * from the compiled paths, and generating its trajectory at the start of a path with sampling the
+ * pre-generated one. Missing compiled paths and trajectories are generated in the setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AutoLoadingBenchmark {
+  private static final String AUTO_NAME = "Example Auto";
+  private static final String PATH_NAME = "Example Path";
+
+  private AutoRegistry registry;
+  private PathPlannerPath path;
+  private TrajectoryCache.SampledTrajectory trajectory;
+  private final TrajectoryCache.Setpoint setpoint = new TrajectoryCache.Setpoint();
+  private double sampleTimeSecs = 0.0;
+
+  @Setup
+  public void setup() throws IOException {
+    HAL.initialize(500, 0);
+    Drive drive =
+        new Drive(
+            new GyroIO() {},
+            new ModuleIOSim(),
+            new ModuleIOSim(),
+            new ModuleIOSim(),
+            new ModuleIOSim());
+
+    Path pathplanner = Filesystem.getDeployDirectory().toPath().resolve("pathplanner");
+    String paths = pathplanner.resolve("paths").toString();
+    if (!Files.exists(pathplanner.resolve("paths.bin"))) {
+      PathCache.main(paths, pathplanner.resolve("paths.bin").toString());
+    }
+    if (!Files.exists(pathplanner.resolve("trajectories.bin"))) {
+      TrajectoryCache.main(paths, pathplanner.resolve("trajectories.bin").toString());
+    }
+    registry = new AutoRegistry("Auto Choices", drive, () -> false);
+    path = PathPlannerPath.fromPathFile(PATH_NAME);
+    trajectory = TrajectoryCache.load().get(PATH_NAME).blue();
+  }
+
+  @Benchmark
+  public SendableChooser<Command> eagerAutoChooser() {
+    return AutoBuilder.buildAutoChooser();
+  }
+
+  @Benchmark
+  public Command selectedAuto() {
+    return registry.build(AUTO_NAME);
+  }
+
+  @Benchmark
+  public PathPlannerPath pathFromJson() {
+    return PathPlannerPath.fromPathFile(PATH_NAME);
+  }
+
+  @Benchmark
+  public PathPlannerPath pathFromCompiled() {
+    return PathCache.load().getPath(PATH_NAME);
+  }
+
+  @Benchmark
+  public PathPlannerTrajectory generateTrajectory() {
+    return new PathPlannerTrajectory(
+        path, new ChassisSpeeds(), path.getPreviewStartingHolonomicPose().getRotation());
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public TrajectoryCache.Setpoint sampleTrajectory() {
+    sampleTimeSecs = (sampleTimeSecs + 0.013) % trajectory.getDurationSecs();
+    trajectory.sample(sampleTimeSecs, setpoint);
+    return setpoint;
+  }
+}
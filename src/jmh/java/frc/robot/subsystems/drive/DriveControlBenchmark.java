@@ -0,0 +1,63 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.commands.DriveCommands;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the per-cycle cost of the drive control path: converting chassis speeds into module
+ * setpoints, running one module's closed loop controllers, and the joystick drive command.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DriveControlBenchmark {
+  private final ChassisSpeeds speeds = new ChassisSpeeds(2.0, 1.0, 0.5);
+  private final SwerveModuleState moduleSetpoint =
+      new SwerveModuleState(3.0, Rotation2d.fromDegrees(30.0));
+
+  private Drive drive;
+  private Module module;
+  private Command joystickDrive;
+
+  @Setup
+  public void setup() {
+    drive = DriveFakes.createDrive(5);
+
+    module = new Module(new DriveFakes.FakeModuleIO(5), 0);
+    module.updateInputs();
+    module.periodic(); // Initializes the relative turn offset
+    module.runSetpoint(moduleSetpoint);
+
+    joystickDrive = DriveCommands.joystickDrive(drive, () -> 0.6, () -> 0.3, () -> -0.4);
+    joystickDrive.initialize();
+  }
+
+  /** Discretizes, converts to module states, desaturates and sets each module's setpoint. */
+  @Benchmark
+  public void runVelocity() {
+    drive.runVelocity(speeds);
+  }
+
+  /** Runs the turn and drive controllers and converts the odometry samples for one module. */
+  @Benchmark
+  public void modulePeriodic() {
+    module.periodic();
+  }
+
+  /** Applies deadbands and converts field relative joystick inputs, then runs the drive. */
+  @Benchmark
+  public void joystickDrive() {
+    joystickDrive.execute();
+  }
+}
@@ -0,0 +1,38 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures one cycle of {@link Drive#periodic()}, which updates every module and integrates all
+ * of the odometry samples received during the cycle into the pose estimator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DrivePeriodicBenchmark {
+  // 250, 500 and 1000 Hz odometry in a 20 ms cycle
+  @Param({"5", "10", "20"})
+  public int samplesPerCycle;
+
+  private Drive drive;
+
+  @Setup
+  public void setup() {
+    drive = DriveFakes.createDrive(samplesPerCycle);
+  }
+
+  @Benchmark
+  public Pose2d periodic() {
+    drive.periodic();
+    return drive.getPose();
+  }
+}
@@ -0,0 +1,104 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares {@link SquareSwerveKinematics} with WPILib's {@link SwerveDriveKinematics} for the
+ * drive geometry: inverse kinematics with desaturation, forward kinematics, and odometry twists.
+ * SquareSwerveKinematicsTest checks that both give the same results. Run with "-prof gc" to compare
+ * allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KinematicsBenchmark {
+  private static final double HALF_TRACK_WIDTH = Drive.getModuleTranslations()[0].getX();
+  private static final double MAX_SPEED = 4.6;
+
+  private final SwerveDriveKinematics wpilibKinematics =
+      new SwerveDriveKinematics(Drive.getModuleTranslations());
+  private final SquareSwerveKinematics squareKinematics =
+      new SquareSwerveKinematics(HALF_TRACK_WIDTH, HALF_TRACK_WIDTH);
+
+  private final ChassisSpeeds speeds = new ChassisSpeeds(3.0, -1.5, 2.0);
+  private final SwerveModuleState[] moduleStates = new SwerveModuleState[4];
+  private final SwerveModulePosition[] moduleDeltas = new SwerveModulePosition[4];
+  private final double[] moduleSpeeds = new double[4];
+  private final double[] moduleDistances = new double[4];
+  private final double[] moduleAnglesRad = new double[4];
+  private final double[] speedsOut = new double[4];
+  private final double[] anglesOut = new double[4];
+  private final double[] result = new double[3];
+
+  @Setup
+  public void setup() {
+    Translation2d[] translations = Drive.getModuleTranslations();
+    if (translations[0].getX() != translations[0].getY()) {
+      throw new IllegalStateException("The benchmark expects a square drive base");
+    }
+
+    for (int i = 0; i < 4; i++) {
+      moduleAnglesRad[i] = 0.3 * i;
+      moduleSpeeds[i] = 2.0 + 0.1 * i;
+      moduleDistances[i] = 0.008 + 0.001 * i;
+      moduleStates[i] = new SwerveModuleState(moduleSpeeds[i], new Rotation2d(moduleAnglesRad[i]));
+      moduleDeltas[i] =
+          new SwerveModulePosition(moduleDistances[i], new Rotation2d(moduleAnglesRad[i]));
+    }
+  }
+
+  @Benchmark
+  public SwerveModuleState[] wpilibToModuleStates() {
+    SwerveModuleState[] states = wpilibKinematics.toSwerveModuleStates(speeds);
+    SwerveDriveKinematics.desaturateWheelSpeeds(states, MAX_SPEED);
+    return states;
+  }
+
+  @Benchmark
+  public double[] squareToModuleStates() {
+    squareKinematics.toModuleStates(
+        speeds.vxMetersPerSecond,
+        speeds.vyMetersPerSecond,
+        speeds.omegaRadiansPerSecond,
+        speedsOut,
+        anglesOut);
+    SquareSwerveKinematics.desaturate(speedsOut, MAX_SPEED);
+    return speedsOut;
+  }
+
+  @Benchmark
+  public ChassisSpeeds wpilibToChassisSpeeds() {
+    return wpilibKinematics.toChassisSpeeds(moduleStates);
+  }
+
+  @Benchmark
+  public double[] squareToChassisSpeeds() {
+    squareKinematics.toChassisSpeeds(moduleSpeeds, moduleAnglesRad, result);
+    return result;
+  }
+
+  @Benchmark
+  public Twist2d wpilibToTwist() {
+    return wpilibKinematics.toTwist2d(moduleDeltas);
+  }
+
+  @Benchmark
+  public double[] squareToTwist() {
+    squareKinematics.toTwist(moduleDistances, moduleAnglesRad, result);
+    return result;
+  }
+}
@@ -0,0 +1,89 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.util.Gains;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares closing the module loops on the RIO at 50 Hz with closing them on the motor controllers
+ * at 1 kHz, using the physics sim. The module follows a sequence of steps in speed and angle. The
+ * measured time is the robot code of one cycle, the sim runs in the invocation setup. The RMS
+ * tracking errors of each mode are printed at the end of the trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModuleControlBenchmark {
+  private static final int CYCLES_PER_SETPOINT = 25;
+  private static final SwerveModuleState[] SETPOINTS = {
+    new SwerveModuleState(3.0, Rotation2d.fromDegrees(0.0)),
+    new SwerveModuleState(1.0, Rotation2d.fromDegrees(90.0)),
+    new SwerveModuleState(-2.0, Rotation2d.fromDegrees(45.0)),
+    new SwerveModuleState(4.0, Rotation2d.fromDegrees(-120.0))
+  };
+
+  @Param({"false", "true"})
+  public boolean onboardControl;
+
+  private Module module;
+  private SwerveModuleState setpoint = new SwerveModuleState();
+  private int cycle = 0;
+  private double driveErrorSquaredSum = 0.0;
+  private double turnErrorSquaredSum = 0.0;
+
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+    module = new Module(new ModuleIOSim(onboardControl), 0);
+    // Sim gains, whatever the mode of the benchmark JVM
+    module.setGains(new Gains(0.1, 0.0, 0.0, 0.0, 0.13), Gains.pid(10.0, 0.0, 0.0));
+    module.updateInputs();
+    module.periodic(); // Initializes the relative turn offset
+  }
+
+  @Setup(Level.Invocation)
+  public void simulate() {
+    module.updateInputs();
+    if (cycle > 0) {
+      double driveError = setpoint.speedMetersPerSecond - module.getVelocityMetersPerSec();
+      double turnError =
+          MathUtil.angleModulus(setpoint.angle.getRadians() - module.getAngle().getRadians());
+      driveErrorSquaredSum += driveError * driveError;
+      turnErrorSquaredSum += turnError * turnError;
+    }
+  }
+
+  /** Updates the setpoint when the step changes, then runs the module controllers. */
+  @Benchmark
+  public void modulePeriodic() {
+    if (cycle % CYCLES_PER_SETPOINT == 0) {
+      setpoint = module.runSetpoint(SETPOINTS[(cycle / CYCLES_PER_SETPOINT) % SETPOINTS.length]);
+    }
+    cycle++;
+    module.periodic();
+  }
+
+  @TearDown
+  public void printTrackingError() {
+    int samples = Math.max(cycle - 1, 1);
+    System.out.printf(
+        "%n%s control over %d cycles: RMS drive error %.3f m/s, RMS turn error %.3f rad%n",
+        onboardControl ? "Onboard" : "RIO",
+        cycle,
+        Math.sqrt(driveErrorSquaredSum / samples),
+        Math.sqrt(turnErrorSquaredSum / samples));
+  }
+}
@@ -0,0 +1,88 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.util.Units;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the per-cycle cost of converting one module's odometry samples into its inputs, using
+ * the previous boxed stream pipelines and the primitive ring buffer drains. Run with "-prof gc" to
+ * compare allocation per cycle.
+ *
+ * <p>Samples are refilled on every invocation, but the deque path reuses pre-boxed values so only
+ * the drain itself allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OdometryDrainBenchmark {
+  private static final double DRIVE_GEAR_RATIO = 6.75;
+  private static final double TURN_GEAR_RATIO = 150.0 / 7.0;
+  // 250 Hz odometry in a 20 ms cycle
+  private static final int SAMPLES_PER_CYCLE = 5;
+
+  private final Double[] boxedSamples = new Double[SAMPLES_PER_CYCLE];
+  private final Queue<Double> timestampQueue = new ArrayDeque<>(100);
+  private final Queue<Double> drivePositionQueue = new ArrayDeque<>(100);
+  private final Queue<Double> turnPositionQueue = new ArrayDeque<>(100);
+
+  private final OdometryRingBuffer.Sequence sequence = new OdometryRingBuffer.Sequence();
+  private final OdometryRingBuffer timestampBuffer = new OdometryRingBuffer(sequence);
+  private final OdometryRingBuffer drivePositionBuffer = new OdometryRingBuffer(sequence);
+  private final OdometryRingBuffer turnPositionBuffer = new OdometryRingBuffer(sequence);
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+      boxedSamples[i] = i * 0.1;
+    }
+  }
+
+  @Benchmark
+  public void streamDrain(Blackhole blackhole) {
+    for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+      timestampQueue.offer(boxedSamples[i]);
+      drivePositionQueue.offer(boxedSamples[i]);
+      turnPositionQueue.offer(boxedSamples[i]);
+    }
+
+    blackhole.consume(timestampQueue.stream().mapToDouble((Double value) -> value).toArray());
+    blackhole.consume(
+        drivePositionQueue.stream()
+            .mapToDouble((Double value) -> Units.rotationsToRadians(value) / DRIVE_GEAR_RATIO)
+            .toArray());
+    blackhole.consume(
+        turnPositionQueue.stream()
+            .map((Double value) -> Rotation2d.fromRotations(value / TURN_GEAR_RATIO))
+            .toArray(Rotation2d[]::new));
+    timestampQueue.clear();
+    drivePositionQueue.clear();
+    turnPositionQueue.clear();
+  }
+
+  @Benchmark
+  public void ringBufferDrain(Blackhole blackhole) {
+    for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+      long sequenceNumber = sequence.next();
+      timestampBuffer.write(sequenceNumber, i * 0.1);
+      drivePositionBuffer.write(sequenceNumber, i * 0.1);
+      turnPositionBuffer.write(sequenceNumber, i * 0.1);
+      sequence.publish(sequenceNumber);
+    }
+    sequence.snapshot();
+
+    blackhole.consume(timestampBuffer.drain());
+    blackhole.consume(drivePositionBuffer.drain(Units.rotationsToRadians(1.0) / DRIVE_GEAR_RATIO));
+    blackhole.consume(turnPositionBuffer.drain(Units.rotationsToRadians(1.0) / TURN_GEAR_RATIO));
+  }
+}
@@ -0,0 +1,110 @@
+package frc.robot.subsystems.drive;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares one 20 ms cycle of odometry sample handoff using the lock-free ring buffers against the
+ * previous boxed queues guarded by a shared lock. Each cycle produces the samples for every signal
+ * at the given odometry frequency, then drains them the same way the module and gyro IOs do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OdometryQueueBenchmark {
+  // Four modules (drive and turn) plus the gyro
+  private static final int SIGNAL_COUNT = 9;
+  // One timestamp queue per module plus the gyro
+  private static final int TIMESTAMP_COUNT = 5;
+
+  @Param({"250", "500", "1000"})
+  public int odometryFrequency;
+
+  private int samplesPerCycle;
+  private double value = 0.0;
+
+  private OdometryRingBuffer.Sequence sequence;
+  private OdometryRingBuffer[] buffers;
+
+  private Lock lock;
+  private Queue<Double>[] queues;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    samplesPerCycle = (int) (odometryFrequency * 0.02);
+
+    sequence = new OdometryRingBuffer.Sequence();
+    buffers = new OdometryRingBuffer[SIGNAL_COUNT + TIMESTAMP_COUNT];
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = new OdometryRingBuffer(sequence);
+    }
+
+    lock = new ReentrantLock();
+    queues = new Queue[SIGNAL_COUNT + TIMESTAMP_COUNT];
+    for (int i = 0; i < queues.length; i++) {
+      queues[i] = new ArrayDeque<>(100);
+    }
+  }
+
+  @Benchmark
+  public double ringBuffer() {
+    for (int sample = 0; sample < samplesPerCycle; sample++) {
+      long sequenceNumber = sequence.next();
+      for (int i = 0; i < buffers.length; i++) {
+        buffers[i].write(sequenceNumber, value++);
+      }
+      sequence.publish(sequenceNumber);
+    }
+
+    sequence.snapshot();
+    double sum = 0.0;
+    for (int i = 0; i < buffers.length; i++) {
+      double[] drained = buffers[i].drain();
+      for (int j = 0; j < drained.length; j++) {
+        sum += drained[j];
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double dequeWithLock() {
+    for (int sample = 0; sample < samplesPerCycle; sample++) {
+      lock.lock();
+      try {
+        for (int i = 0; i < queues.length; i++) {
+          queues[i].offer(value++);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    lock.lock();
+    double sum = 0.0;
+    try {
+      for (int i = 0; i < queues.length; i++) {
+        double[] drained = queues[i].stream().mapToDouble((Double sample) -> sample).toArray();
+        queues[i].clear();
+        for (int j = 0; j < drained.length; j++) {
+          sum += drained[j];
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    return sum;
+  }
+}
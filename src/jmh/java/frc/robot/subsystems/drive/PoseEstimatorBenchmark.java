@@ -0,0 +1,155 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares one 20 ms cycle of {@link SwervePoseEstimator} with WPILib's {@link
+ * SwerveDrivePoseEstimator}: five odometry samples at 250 Hz, then a number of vision measurements
+ * between 50 and 250 ms old, oldest first. The oldest measurement of each cycle comes before the
+ * newest of the previous cycle, so corrections also arrive out of order. The setup runs both
+ * estimators side by side for a while and prints the largest difference between their estimates.
+ * Run with "-prof gc" to compare allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PoseEstimatorBenchmark {
+  private static final int SAMPLES_PER_CYCLE = 5;
+  private static final double SAMPLE_PERIOD_SECS = 0.004;
+  private static final int SAMPLES_PER_TURN = 1000; // One turn every four seconds
+  private static final double MIN_LATENCY_SECS = 0.05;
+  private static final double MAX_LATENCY_SECS = 0.25;
+  private static final int VISION_POSE_COUNT = 256;
+
+  @Param({"1", "4", "10"})
+  public int measurementsPerCycle;
+
+  private final Rotation2d[] gyroAngles = new Rotation2d[SAMPLES_PER_TURN];
+  private final Pose2d[] visionPoses = new Pose2d[VISION_POSE_COUNT];
+  private final Matrix<N3, N1> visionStdDevs = VecBuilder.fill(0.5, 0.5, 1.0);
+  private final SwerveModulePosition[] modulePositions = new SwerveModulePosition[4];
+  private SwerveDrivePoseEstimator wpilibEstimator;
+  private SwervePoseEstimator arrayEstimator;
+  private int sample = 0;
+  private int visionPose = 0;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(3374);
+    for (int i = 0; i < SAMPLES_PER_TURN; i++) {
+      gyroAngles[i] = new Rotation2d(2.0 * Math.PI * i / SAMPLES_PER_TURN);
+    }
+    for (int i = 0; i < VISION_POSE_COUNT; i++) {
+      visionPoses[i] =
+          new Pose2d(
+              random.nextGaussian() * 0.2,
+              random.nextGaussian() * 0.2,
+              new Rotation2d(random.nextGaussian() * 0.05));
+    }
+    for (int i = 0; i < 4; i++) {
+      modulePositions[i] = new SwerveModulePosition(0.0, new Rotation2d(0.3 * i));
+    }
+
+    // Check that both estimators agree, then start again from the same state
+    reset();
+    double maxDistance = 0.0;
+    double maxRotation = 0.0;
+    for (int cycle = 0; cycle < 500; cycle++) {
+      runCycle(true, true);
+      Pose2d wpilibPose = wpilibEstimator.getEstimatedPosition();
+      Pose2d arrayPose = arrayEstimator.getEstimatedPosition();
+      double distance = wpilibPose.getTranslation().getDistance(arrayPose.getTranslation());
+      maxDistance = Math.max(maxDistance, distance);
+      double rotationDifference =
+          wpilibPose.getRotation().minus(arrayPose.getRotation()).getRadians();
+      maxRotation = Math.max(maxRotation, Math.abs(rotationDifference));
+    }
+    System.out.printf(
+        "%nLargest difference between the estimates: %.6f m, %.6f rad%n", maxDistance, maxRotation);
+    reset();
+  }
+
+  private void reset() {
+    sample = 0;
+    visionPose = 0;
+    for (var position : modulePositions) {
+      position.distanceMeters = 0.0;
+    }
+    var translations = Drive.getModuleTranslations();
+    wpilibEstimator =
+        new SwerveDrivePoseEstimator(
+            new SwerveDriveKinematics(translations), gyroAngles[0], modulePositions, new Pose2d());
+    arrayEstimator =
+        new SwervePoseEstimator(
+            new SquareSwerveKinematics(translations[0].getX(), translations[0].getY()),
+            gyroAngles[0],
+            modulePositions,
+            new Pose2d(),
+            1024);
+  }
+
+  /** Feeds one cycle of odometry samples and vision measurements to either or both estimators. */
+  private void runCycle(boolean wpilib, boolean array) {
+    double timestamp = 0.0;
+    for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+      sample++;
+      timestamp = sample * SAMPLE_PERIOD_SECS;
+      Rotation2d gyroAngle = gyroAngles[sample % SAMPLES_PER_TURN];
+      for (int module = 0; module < 4; module++) {
+        modulePositions[module].distanceMeters = sample * 0.008;
+      }
+      if (wpilib) {
+        wpilibEstimator.updateWithTime(timestamp, gyroAngle, modulePositions);
+      }
+      if (array) {
+        arrayEstimator.updateWithTime(timestamp, gyroAngle, modulePositions);
+      }
+    }
+
+    double latencyStepSecs =
+        measurementsPerCycle > 1
+            ? (MAX_LATENCY_SECS - MIN_LATENCY_SECS) / (measurementsPerCycle - 1)
+            : 0.0;
+    for (int i = 0; i < measurementsPerCycle; i++) {
+      double visionTimestamp = timestamp - MAX_LATENCY_SECS + i * latencyStepSecs;
+      Pose2d pose = visionPoses[visionPose];
+      visionPose = (visionPose + 1) % VISION_POSE_COUNT;
+      if (wpilib) {
+        wpilibEstimator.addVisionMeasurement(pose, visionTimestamp, visionStdDevs);
+      }
+      if (array) {
+        arrayEstimator.addVisionMeasurement(pose, visionTimestamp, visionStdDevs);
+      }
+    }
+  }
+
+  @Benchmark
+  public Pose2d wpilibEstimator() {
+    runCycle(true, false);
+    return wpilibEstimator.getEstimatedPosition();
+  }
+
+  @Benchmark
+  public Pose2d arrayEstimator() {
+    runCycle(false, true);
+    return arrayEstimator.getEstimatedPosition();
+  }
+}
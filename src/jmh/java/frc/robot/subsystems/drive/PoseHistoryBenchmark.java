@@ -0,0 +1,69 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares interpolated pose lookups in a full {@link PoseHistory} against WPILib's {@link
+ * TimeInterpolatableBuffer}, which stores boxed samples in a tree map. Both hold two seconds of
+ * 500 Hz odometry, and lookups step through the history at an uneven stride. Run with "-prof gc"
+ * to compare allocation per lookup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PoseHistoryBenchmark {
+  private static final int SAMPLE_COUNT = 1000;
+  private static final double SAMPLE_PERIOD_SECS = 0.002;
+  private static final double HISTORY_SECS = SAMPLE_COUNT * SAMPLE_PERIOD_SECS;
+
+  private final PoseHistory poseHistory = new PoseHistory(1024, 4);
+  private final PoseHistory.Sample sample = new PoseHistory.Sample(4);
+  private final TimeInterpolatableBuffer<Pose2d> interpolatableBuffer =
+      TimeInterpolatableBuffer.createBuffer(HISTORY_SECS);
+  private double lookupTimestamp = 0.0;
+
+  @Setup
+  public void setup() {
+    SwerveModulePosition[] modulePositions = new SwerveModulePosition[4];
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      double timestamp = i * SAMPLE_PERIOD_SECS;
+      Pose2d pose = new Pose2d(timestamp * 2.0, timestamp, new Rotation2d(timestamp));
+      for (int module = 0; module < 4; module++) {
+        modulePositions[module] = new SwerveModulePosition(timestamp * 2.0, new Rotation2d());
+      }
+      poseHistory.add(timestamp, pose, modulePositions);
+      interpolatableBuffer.addSample(timestamp, pose);
+    }
+  }
+
+  private double nextLookupTimestamp() {
+    lookupTimestamp += 0.0137;
+    if (lookupTimestamp >= HISTORY_SECS) {
+      lookupTimestamp -= HISTORY_SECS;
+    }
+    return lookupTimestamp;
+  }
+
+  @Benchmark
+  public double poseHistory() {
+    poseHistory.getSampleAt(nextLookupTimestamp(), sample);
+    return sample.xMeters + sample.yMeters + sample.rotationRad;
+  }
+
+  @Benchmark
+  public double timeInterpolatableBuffer() {
+    Pose2d pose = interpolatableBuffer.getSample(nextLookupTimestamp()).orElseThrow();
+    return pose.getX() + pose.getY() + pose.getRotation().getRadians();
+  }
+}
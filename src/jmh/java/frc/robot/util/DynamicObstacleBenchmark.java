@@ -0,0 +1,96 @@
+package frc.robot.util;
+
+import com.pathplanner.lib.path.GoalEndState;
+import com.pathplanner.lib.path.PathConstraints;
+import com.pathplanner.lib.path.PathPlannerPath;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.Pair;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the time from moving dynamic obstacles to getting the new path through {@link
+ * LocalADStarAK}, on the real navgrid. Robot-sized obstacles are spread across the middle of the
+ * field, and each one moves a grid cell up or down per invocation. The goal is either the cached
+ * blue speaker goal, whose field is repaired around the changed cells, or a free cell next to it,
+ * which LocalADStar replans for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DynamicObstacleBenchmark {
+  private static final PathConstraints CONSTRAINTS = new PathConstraints(4.0, 3.0, 6.0, 8.0);
+  private static final GoalEndState END_STATE = new GoalEndState(0.0, new Rotation2d());
+  private static final Translation2d ROBOT_POSITION = new Translation2d(14.0, 4.10);
+  private static final double OBSTACLE_HALF_SIZE = 0.45;
+  private static final double STEP_METERS = 0.3; // One grid cell
+  private static final double MIN_Y = 1.5;
+  private static final double MAX_Y = 6.5;
+
+  @Param({"1", "5", "10"})
+  public int obstacleCount;
+
+  @Param({"true", "false"})
+  public boolean cachedGoal;
+
+  private LocalADStarAK pathfinder;
+  private double[] obstacleX;
+  private double[] obstacleY;
+  private double[] obstacleDirection;
+  private final List<Pair<Translation2d, Translation2d>> obstacles = new ArrayList<>();
+
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+    obstacleX = new double[obstacleCount];
+    obstacleY = new double[obstacleCount];
+    obstacleDirection = new double[obstacleCount];
+    for (int i = 0; i < obstacleCount; i++) {
+      obstacleX[i] = 3.0 + i;
+      obstacleY[i] = MIN_Y + (MAX_Y - MIN_Y) * ((i * 0.37) % 1.0);
+      obstacleDirection[i] = i % 2 == 0 ? 1.0 : -1.0;
+    }
+
+    pathfinder = new LocalADStarAK();
+    Translation2d blueSpeaker = NavGrid.COMMON_GOALS.get(0).position();
+    pathfinder.setStartPosition(ROBOT_POSITION);
+    pathfinder.setGoalPosition(
+        cachedGoal ? blueSpeaker : blueSpeaker.plus(new Translation2d(0.9, 0.0)));
+    replan();
+  }
+
+  private PathPlannerPath replan() {
+    while (!pathfinder.isNewPathAvailable()) {
+      Thread.onSpinWait();
+    }
+    return pathfinder.getCurrentPath(CONSTRAINTS, END_STATE);
+  }
+
+  @Benchmark
+  public PathPlannerPath moveObstacles() {
+    obstacles.clear();
+    for (int i = 0; i < obstacleCount; i++) {
+      obstacleY[i] += obstacleDirection[i] * STEP_METERS;
+      if (obstacleY[i] < MIN_Y || obstacleY[i] > MAX_Y) {
+        obstacleDirection[i] = -obstacleDirection[i];
+        obstacleY[i] += 2.0 * obstacleDirection[i] * STEP_METERS;
+      }
+      var center = new Translation2d(obstacleX[i], obstacleY[i]);
+      var halfSize = new Translation2d(OBSTACLE_HALF_SIZE, OBSTACLE_HALF_SIZE);
+      obstacles.add(new Pair<>(center.minus(halfSize), center.plus(halfSize)));
+    }
+    pathfinder.setDynamicObstacles(obstacles, ROBOT_POSITION);
+    return replan();
+  }
+}
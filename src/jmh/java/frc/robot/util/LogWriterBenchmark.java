@@ -0,0 +1,84 @@
+package frc.robot.util;
+
+import edu.wpi.first.hal.HAL;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.littletonrobotics.junction.LogDataReceiver;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.wpilog.WPILOGWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the time each log writer takes to accept one cycle, with a table shaped like the
+ * robot's: 200 inputs and 100 outputs, half of each changing every cycle, including an odometry
+ * pose array. Logs are written to a temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LogWriterBenchmark {
+  private static final int INPUT_COUNT = 200;
+  private static final int OUTPUT_COUNT = 100;
+
+  @Param({"WPILOGWriter", "AsyncWPILOGWriter"})
+  public String writer;
+
+  private Path directory;
+  private LogDataReceiver receiver;
+  private final LogTable table = new LogTable(0);
+  private final String[] inputKeys = new String[INPUT_COUNT];
+  private final String[] outputKeys = new String[OUTPUT_COUNT];
+  private final double[] poses = new double[3 * 50];
+  private long cycle = 0;
+
+  @Setup
+  public void setup() throws IOException {
+    HAL.initialize(500, 0);
+    for (int i = 0; i < INPUT_COUNT; i++) {
+      inputKeys[i] = "Inputs/Value" + i;
+    }
+    for (int i = 0; i < OUTPUT_COUNT; i++) {
+      outputKeys[i] = "RealOutputs/Value" + i;
+    }
+    directory = Files.createTempDirectory("logs");
+    receiver =
+        writer.equals("WPILOGWriter")
+            ? new WPILOGWriter(directory.resolve("akit.wpilog").toString())
+            : new AsyncWPILOGWriter(directory.resolve("akit.wpilog").toString());
+    receiver.start();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    receiver.end();
+    System.out.printf(
+        "%nLog size: %.1f MiB%n", Files.size(directory.resolve("akit.wpilog")) / 1048576.0);
+  }
+
+  @Benchmark
+  public void putTable() throws InterruptedException {
+    cycle++;
+    table.setTimestamp(cycle * 20000);
+    for (int i = 0; i < INPUT_COUNT; i++) {
+      table.put(inputKeys[i], i % 2 == 0 ? cycle : i);
+    }
+    for (int i = 0; i < OUTPUT_COUNT; i++) {
+      table.put(outputKeys[i], i % 2 == 0 ? cycle * 0.5 : i);
+    }
+    for (int i = 0; i < poses.length; i++) {
+      poses[i] = cycle + i;
+    }
+    table.put("RealOutputs/Odometry/Trajectory", poses);
+    receiver.putTable(table);
+  }
+}
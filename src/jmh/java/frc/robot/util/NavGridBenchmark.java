@@ -0,0 +1,95 @@
+package frc.robot.util;
+
+import com.pathplanner.lib.path.GoalEndState;
+import com.pathplanner.lib.path.PathConstraints;
+import com.pathplanner.lib.path.PathPlannerPath;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the startup cost of the navgrid, compiling "navgrid.json" against reading the compiled
+ * binary, and the time from setting a goal to getting its path through {@link LocalADStarAK}. Paths
+ * alternate between goals on both sides of the field, either the cached speaker goals or free cells
+ * next to them, which LocalADStar searches for.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NavGridBenchmark {
+  @State(Scope.Thread)
+  public static class NavGridFiles {
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws IOException {
+      HAL.initialize(500, 0);
+      json =
+          Files.readAllBytes(
+              Filesystem.getDeployDirectory().toPath().resolve("pathplanner/navgrid.json"));
+      binary = NavGrid.compile(json, NavGrid.COMMON_GOALS).toBytes();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Pathfinding {
+    private static final PathConstraints CONSTRAINTS = new PathConstraints(4.0, 3.0, 6.0, 8.0);
+    private static final GoalEndState END_STATE = new GoalEndState(0.0, new Rotation2d());
+    private static final Translation2d START = new Translation2d(8.27, 4.10);
+    private static final Translation2d NOT_CACHED_OFFSET = new Translation2d(0.9, 0.0);
+
+    @Param({"true", "false"})
+    public boolean cachedGoal;
+
+    private LocalADStarAK pathfinder;
+    private Translation2d[] goals;
+    private int nextGoal = 0;
+
+    @Setup
+    public void setup() {
+      HAL.initialize(500, 0);
+      pathfinder = new LocalADStarAK();
+      Translation2d blueSpeaker = NavGrid.COMMON_GOALS.get(0).position();
+      Translation2d redSpeaker = NavGrid.COMMON_GOALS.get(1).position();
+      goals =
+          cachedGoal
+              ? new Translation2d[] {blueSpeaker, redSpeaker}
+              : new Translation2d[] {
+                blueSpeaker.plus(NOT_CACHED_OFFSET), redSpeaker.minus(NOT_CACHED_OFFSET)
+              };
+      pathfinder.setStartPosition(START);
+    }
+  }
+
+  @Benchmark
+  public NavGrid compileJson(NavGridFiles files) throws IOException {
+    return NavGrid.compile(files.json, NavGrid.COMMON_GOALS);
+  }
+
+  @Benchmark
+  public NavGrid readBinary(NavGridFiles files) throws IOException {
+    return NavGrid.fromBytes(files.binary);
+  }
+
+  @Benchmark
+  public PathPlannerPath timeToPath(Pathfinding state) {
+    state.pathfinder.setGoalPosition(state.goals[state.nextGoal]);
+    state.nextGoal = (state.nextGoal + 1) % state.goals.length;
+    while (!state.pathfinder.isNewPathAvailable()) {
+      Thread.onSpinWait();
+    }
+    return state.pathfinder.getCurrentPath(Pathfinding.CONSTRAINTS, Pathfinding.END_STATE);
+  }
+}
@@ -22,8 +22,14 @@ package frc.robot;
  * constants are needed, to reduce verbosity.
  */
 public final class Constants {
-  public static final Mode currentMode = Mode.REAL;
+  // Can be overridden with the "robot.mode" system property, e.g. by the unit tests
+  public static final Mode currentMode =
+      Mode.valueOf(System.getProperty("robot.mode", Mode.REAL.name()));
   public static final boolean tuningMode = false;
+  public static final boolean profilingMode = true; // Disable for competition
+  public static final double canBusUtilizationBudget = 0.7; // Estimated, see StatusFramePlan
+  public static final boolean onboardModuleControl = true; // When supported by the module IO
+  public static final boolean fastDriveLoop = false; // See DriveControlLoop
 
   public static enum Mode {
     /** Running on a real robot. */
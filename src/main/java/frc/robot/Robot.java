@@ -15,6 +15,11 @@ package frc.robot;
 
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.util.AsyncWPILOGWriter;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.PhoenixSignals;
+import frc.robot.util.StatusFramePlan;
 import org.littletonrobotics.junction.LogFileUtil;
 import org.littletonrobotics.junction.LoggedRobot;
 import org.littletonrobotics.junction.Logger;
@@ -39,6 +44,8 @@ public class Robot extends LoggedRobot {
    */
   @Override
   public void robotInit() {
+    long startNanos = System.nanoTime();
+
     // Record metadata
     Logger.recordMetadata("ProjectName", BuildConstants.MAVEN_NAME);
     Logger.recordMetadata("BuildDate", BuildConstants.BUILD_DATE);
@@ -60,8 +67,8 @@ public class Robot extends LoggedRobot {
     // Set up data receivers & replay source
     switch (Constants.currentMode) {
       case REAL:
-        // Running on a real robot, log to a USB stick ("/U/logs")
-        Logger.addDataReceiver(new WPILOGWriter("/media/sda1/logs"));
+        // Running on a real robot, log to a USB stick ("/U/logs") without waiting for it
+        Logger.addDataReceiver(new AsyncWPILOGWriter("/media/sda1/logs"));
         Logger.addDataReceiver(new NT4Publisher());
         break;
 
@@ -88,6 +95,15 @@ public class Robot extends LoggedRobot {
     // Instantiate our RobotContainer. This will perform all our button bindings,
     // and put our autonomous chooser on the dashboard.
     robotContainer = new RobotContainer();
+
+    // Finish configuring devices before applying the status frame rates declared by the IO
+    // implementations, since restoring factory defaults would reset them
+    DeviceConfigurator.awaitAll();
+    StatusFramePlan.apply();
+
+    // Start profiling the loop, after all button bindings are configured
+    LoopProfiler.install();
+    Logger.recordOutput("RobotInitMs", (System.nanoTime() - startNanos) / 1e6);
   }
 
   /** This function is called periodically during all modes. */
@@ -98,7 +114,11 @@ public class Robot extends LoggedRobot {
     // finished or interrupted commands, and running subsystem periodic() methods.
     // This must be called from the robot's periodic block in order for anything in
     // the Command-based framework to work.
+    // Refreshes every Phoenix status signal at once, before any subsystem reads them
+    PhoenixSignals.refreshAll();
+    LoopProfiler.startCycle();
     CommandScheduler.getInstance().run();
+    LoopProfiler.endCycle();
   }
 
   /** This function is called once when the robot is disabled. */
@@ -107,7 +127,9 @@ public class Robot extends LoggedRobot {
 
   /** This function is called periodically when disabled. */
   @Override
-  public void disabledPeriodic() {}
+  public void disabledPeriodic() {
+    robotContainer.prepareAutonomousCommand();
+  }
 
   /** This autonomous runs the autonomous command selected by your {@link RobotContainer} class. */
   @Override
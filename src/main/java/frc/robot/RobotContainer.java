@@ -13,9 +13,10 @@
 
 package frc.robot;
 
-import com.pathplanner.lib.auto.AutoBuilder;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.GenericHID;
 import edu.wpi.first.wpilibj.XboxController;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -26,6 +27,7 @@ import frc.robot.commands.DriveCommands;
 import frc.robot.commands.IntakeAutomated;
 import frc.robot.commands.RunClimber;
 import frc.robot.commands.RunSingleClimber;
+import frc.robot.commands.auto.AutoRegistry;
 import frc.robot.commands.auto.DelayDriveBack;
 import frc.robot.commands.auto.DriveBack;
 import frc.robot.commands.auto.ShootDriveBack;
@@ -37,6 +39,7 @@ import frc.robot.subsystems.climber.Climber;
 import frc.robot.subsystems.climber.ClimberIO;
 import frc.robot.subsystems.climber.ClimberIOTalonFX;
 import frc.robot.subsystems.drive.Drive;
+import frc.robot.subsystems.drive.GroundTruthSim;
 import frc.robot.subsystems.drive.GyroIO;
 import frc.robot.subsystems.drive.GyroIOPigeon2;
 import frc.robot.subsystems.drive.ModuleIO;
@@ -48,6 +51,10 @@ import frc.robot.subsystems.flywheel.FlywheelIOSparkMax;
 import frc.robot.subsystems.indexer.Indexer;
 import frc.robot.subsystems.indexer.IndexerIO;
 import frc.robot.subsystems.indexer.IndexerIOSparkMax;
+import frc.robot.subsystems.vision.Vision;
+import frc.robot.subsystems.vision.VisionIO;
+import frc.robot.subsystems.vision.VisionIOLimelight;
+import frc.robot.subsystems.vision.VisionIOSim;
 import org.littletonrobotics.junction.networktables.LoggedDashboardChooser;
 import org.littletonrobotics.junction.networktables.LoggedDashboardNumber;
 
@@ -65,6 +72,7 @@ public class RobotContainer {
   private final Indexer indexer;
   private final Flywheel flywheel;
   private final AmpJoint ampJoint;
+  private final Vision vision;
 
   private final Climber leftClimber;
   private final Climber rightClimber;
@@ -74,7 +82,7 @@ public class RobotContainer {
   private final CommandXboxController controllerTwo = new CommandXboxController(1);
 
   // Dashboard inputs
-  private final LoggedDashboardChooser<Command> autoChooser;
+  private final AutoRegistry autoRegistry;
   private final LoggedDashboardChooser<Command> allianceChooser;
   //   private final LoggedDashboardNumber intakeSpeedInput =
   //       new LoggedDashboardNumber("Intake Speed", 3000.0);
@@ -113,6 +121,7 @@ public class RobotContainer {
         indexer = new Indexer(new IndexerIOSparkMax());
         flywheel = new Flywheel(new FlywheelIOSparkMax(56), new FlywheelIOSparkMax(52));
         ampJoint = new AmpJoint(new AmpJointIOTalonFX());
+        vision = new Vision(drive::addVisionMeasurement, new VisionIOLimelight("limelight"));
 
         leftClimber = new Climber(new ClimberIOTalonFX(54));
         rightClimber = new Climber(new ClimberIOTalonFX(55));
@@ -120,18 +129,21 @@ public class RobotContainer {
 
       case SIM:
         // Sim robot, instantiate physics sim IO implementations
+        ModuleIOSim[] moduleSims = {
+          new ModuleIOSim(), new ModuleIOSim(), new ModuleIOSim(), new ModuleIOSim()
+        };
         drive =
             new Drive(
-                new GyroIO() {},
-                new ModuleIOSim(),
-                new ModuleIOSim(),
-                new ModuleIOSim(),
-                new ModuleIOSim());
+                new GyroIO() {}, moduleSims[0], moduleSims[1], moduleSims[2], moduleSims[3]);
+        // The camera sees where the simulated robot really is, not where odometry thinks it is
+        GroundTruthSim groundTruth = new GroundTruthSim(moduleSims);
+        drive.setPoseResetListener(groundTruth::resetPose);
         // intake = new Intake(new IntakeIO() {});
         // intakeJoint = new IntakeJoint(new IntakeJointIO() {});
         indexer = new Indexer(new IndexerIO() {});
         flywheel = new Flywheel(new FlywheelIO() {}, new FlywheelIO() {});
         ampJoint = new AmpJoint(new AmpJointIO() {});
+        vision = new Vision(drive::addVisionMeasurement, new VisionIOSim(groundTruth::getPose));
 
         leftClimber = new Climber(new ClimberIO() {});
         rightClimber = new Climber(new ClimberIO() {});
@@ -151,6 +163,7 @@ public class RobotContainer {
         indexer = new Indexer(new IndexerIO() {});
         flywheel = new Flywheel(new FlywheelIO() {}, new FlywheelIO() {});
         ampJoint = new AmpJoint(new AmpJointIO() {});
+        vision = new Vision(drive::addVisionMeasurement, new VisionIO() {});
 
         leftClimber = new Climber(new ClimberIO() {});
         rightClimber = new Climber(new ClimberIO() {});
@@ -158,21 +171,28 @@ public class RobotContainer {
     }
 
     // Set up auto routines
-    autoChooser = new LoggedDashboardChooser<>("Auto Choices", AutoBuilder.buildAutoChooser());
+    // Autos are only built once selected, see AutoRegistry
+    autoRegistry =
+        new AutoRegistry(
+            "Auto Choices",
+            drive,
+            () -> DriverStation.getAlliance().orElse(Alliance.Blue) == Alliance.Red);
     // Set up SysId routines
     // autoChooser.addOption(
     //     "Drive SysId (Quasistatic Forward)",
     //     drive.sysIdQuasistatic(SysIdRoutine.Direction.kForward));
-    autoChooser.addOption("Drive Back", new DriveBack(drive, 1));
-    autoChooser.addOption("Delayed Drive Back", new DelayDriveBack(drive, 1));
-    autoChooser.addOption("Shoot and Drive (Center)", new ShootDriveBack(drive, indexer, flywheel));
-    autoChooser.addOption("Shoot and Drive (Left)", new ShootDriveLeft(drive, indexer, flywheel));
+    autoRegistry.addOption("Drive Back", () -> new DriveBack(drive, 1));
+    autoRegistry.addOption("Delayed Drive Back", () -> new DelayDriveBack(drive, 1));
+    autoRegistry.addOption(
+        "Shoot and Drive (Center)", () -> new ShootDriveBack(drive, indexer, flywheel));
+    autoRegistry.addOption(
+        "Shoot and Drive (Left)", () -> new ShootDriveLeft(drive, indexer, flywheel));
     // autoChooser.addOption(
     // "Shoot and Drive", new ShootDriveBack(drive, intake, intakeJoint, indexer, flywheel));
-    autoChooser.addOption("Do Nothing", null);
+    autoRegistry.addOption("Do Nothing", () -> null);
 
-    allianceChooser =
-        new LoggedDashboardChooser<>("Alliance Selection", AutoBuilder.buildAutoChooser());
+    allianceChooser = new LoggedDashboardChooser<>("Alliance Selection");
+    allianceChooser.addDefaultOption("None", Commands.none());
 
     allianceChooser.addOption(
         "Red", Commands.runOnce(() -> drive.setPose(new Pose2d(0, 0, new Rotation2d(135))), drive));
@@ -338,13 +358,28 @@ public class RobotContainer {
         .onTrue(Commands.startEnd(() -> ampJoint.runPosition(0), ampJoint::stop, ampJoint));
   }
 
+  /** Returns the auto routines. */
+  AutoRegistry getAutoRegistry() {
+    return autoRegistry;
+  }
+
+  /** Returns the drive subsystem. */
+  Drive getDrive() {
+    return drive;
+  }
+
   /**
    * Use this to pass the autonomous command to the main {@link Robot} class.
    *
    * @return the command to run in autonomous
    */
   public Command getAutonomousCommand() {
-    return autoChooser.get();
+    return autoRegistry.getSelected();
+  }
+
+  /** Builds the selected auto routine in the background when the selection changes. */
+  public void prepareAutonomousCommand() {
+    autoRegistry.periodic();
   }
 
   public Command getEndCommand() {
@@ -0,0 +1,315 @@
+package frc.robot.commands.auto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pathplanner.lib.auto.AutoBuilder;
+import com.pathplanner.lib.auto.NamedCommands;
+import com.pathplanner.lib.commands.PathPlannerAuto;
+import com.pathplanner.lib.path.GoalEndState;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.util.GeometryUtil;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
+import frc.robot.subsystems.drive.Drive;
+import frc.robot.util.PathCache;
+import frc.robot.util.TrajectoryCache;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.networktables.LoggedDashboardChooser;
+
+/**
+ * Dashboard chooser of auto routines, which only builds the selected routine instead of every
+ * routine at startup.
+ *
+ * <p>PathPlanner autos are listed by file name, so nothing is parsed at boot. When the selection
+ * changes while disabled, {@link #periodic()} loads the auto and its trajectories or paths on a
+ * background thread, then builds the command on the main thread, since composing commands isn't
+ * thread safe. {@link #getSelected()} builds the selected routine on the spot if it isn't ready
+ * yet, so autonomous always runs the selected routine.
+ */
+public class AutoRegistry {
+  private static final String NONE = "None";
+  private static final double START_ROTATION_TOLERANCE_RAD = Math.toRadians(1.0);
+
+  private static final ExecutorService executor =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "AutoRegistry");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final LoggedDashboardChooser<String> chooser;
+  private final Map<String, Supplier<Command>> routines = new LinkedHashMap<>();
+  private final Set<String> pathPlannerAutos;
+  private final Drive drive;
+  private final BooleanSupplier shouldFlip;
+  private final CompletableFuture<PathCache> pathCache =
+      CompletableFuture.supplyAsync(PathCache::load, executor);
+  private final CompletableFuture<TrajectoryCache> trajectoryCache =
+      CompletableFuture.supplyAsync(TrajectoryCache::load, executor);
+
+  private String selectedName = NONE;
+  private CompletableFuture<JsonNode> pendingAuto = null;
+  private Command selectedCommand = Commands.none();
+  private long selectedNanos = 0;
+
+  // While building an auto, the rotation the robot rests at before the next command, or null if it
+  // may be moving or its rotation is unknown
+  private Rotation2d restingRotation = null;
+  private int pathCount = 0;
+
+  /**
+   * Creates a chooser listing every PathPlanner auto.
+   *
+   * @param key The key of the chooser on the dashboard.
+   * @param drive The drive, whose odometry is reset to the starting pose of a PathPlanner auto.
+   * @param shouldFlip Whether to mirror autos for the red alliance, the same as {@link
+   *     AutoBuilder}'s.
+   */
+  public AutoRegistry(String key, Drive drive, BooleanSupplier shouldFlip) {
+    this.drive = drive;
+    this.shouldFlip = shouldFlip;
+    chooser = new LoggedDashboardChooser<>(key);
+    chooser.addDefaultOption(NONE, NONE);
+    List<String> autoNames = AutoBuilder.getAllAutoNames();
+    pathPlannerAutos = new HashSet<>(autoNames);
+    for (String name : autoNames) {
+      addOption(name, () -> buildPathPlannerAuto(name, readAuto(name)));
+    }
+  }
+
+  /** Adds a routine, which is only built once it is selected. The command may be null. */
+  public void addOption(String name, Supplier<Command> factory) {
+    chooser.addOption(name, name);
+    routines.put(name, factory);
+  }
+
+  /** Returns the names of every routine except the default, in the order they were added. */
+  public List<String> getNames() {
+    return new ArrayList<>(routines.keySet());
+  }
+
+  /** Builds a new command for a routine, reading its files on the calling thread. */
+  public Command build(String name) {
+    return routines.containsKey(name) ? routines.get(name).get() : Commands.none();
+  }
+
+  /** Prepares the selected routine when the selection changes. Call while disabled. */
+  public void periodic() {
+    String name = Objects.requireNonNullElse(chooser.get(), NONE);
+    if (!name.equals(selectedName)) {
+      select(name);
+    }
+
+    if (pendingAuto != null && pendingAuto.isDone()) {
+      try {
+        selectedCommand = buildPathPlannerAuto(selectedName, pendingAuto.get());
+      } catch (InterruptedException | ExecutionException e) {
+        DriverStation.reportError(
+            "Failed to load auto \"" + selectedName + "\": " + e.getCause(), false);
+        selectedCommand = Commands.none();
+      }
+      pendingAuto = null;
+      recordReady();
+    }
+  }
+
+  /** Returns the command of the selected routine, building it if it isn't ready yet. */
+  public Command getSelected() {
+    periodic();
+    if (pendingAuto != null) {
+      pendingAuto = null;
+      selectedCommand = build(selectedName);
+      recordReady();
+    }
+    return selectedCommand;
+  }
+
+  private void select(String name) {
+    selectedName = name;
+    selectedNanos = System.nanoTime();
+    selectedCommand = null;
+    pendingAuto = null;
+    Logger.recordOutput("AutoRegistry/Ready", false);
+    if (pathPlannerAutos.contains(name)) {
+      pendingAuto = CompletableFuture.supplyAsync(() -> readAuto(name), executor);
+    } else {
+      selectedCommand = build(name);
+      recordReady();
+    }
+  }
+
+  private void recordReady() {
+    Logger.recordOutput("AutoRegistry/Ready", true);
+    Logger.recordOutput("AutoRegistry/TimeToReadyMs", (System.nanoTime() - selectedNanos) / 1e6);
+  }
+
+  /** Parses a PathPlanner auto and loads every path it follows. */
+  private JsonNode readAuto(String name) {
+    Path file =
+        Filesystem.getDeployDirectory().toPath().resolve("pathplanner/autos/" + name + ".auto");
+    try {
+      JsonNode auto = new ObjectMapper().readTree(file.toFile());
+      if (!auto.path("choreoAuto").asBoolean(false)) {
+        loadPaths(auto.get("command"));
+      }
+      return auto;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void loadPaths(JsonNode command) {
+    JsonNode data = command.get("data");
+    if (command.get("type").asText().equals("path")) {
+      // The path is also needed when its trajectory doesn't fit where the auto follows it
+      String pathName = data.get("pathName").asText();
+      trajectoryCache.join().get(pathName);
+      pathCache.join().getPath(pathName);
+    } else if (data.has("commands")) {
+      for (JsonNode child : data.get("commands")) {
+        loadPaths(child);
+      }
+    }
+  }
+
+  /**
+   * Builds a PathPlanner auto from its parsed file, like {@link PathPlannerAuto} does. Paths are
+   * followed along their pre-generated trajectories (see {@link FollowTrajectory}) when the robot
+   * starts them at rest, or by PathPlanner with paths from the {@link PathCache} otherwise. Choreo
+   * autos are left to {@link PathPlannerAuto}.
+   */
+  private Command buildPathPlannerAuto(String name, JsonNode auto) {
+    if (auto.path("choreoAuto").asBoolean(false)) {
+      return new PathPlannerAuto(name);
+    }
+    JsonNode startingPose = auto.get("startingPose");
+    boolean hasStartingPose = startingPose != null && !startingPose.isNull();
+    restingRotation =
+        hasStartingPose ? Rotation2d.fromDegrees(startingPose.get("rotation").asDouble()) : null;
+    Command command = buildCommand(auto.get("command"));
+    if (hasStartingPose) {
+      Pose2d pose =
+          new Pose2d(
+              startingPose.get("position").get("x").asDouble(),
+              startingPose.get("position").get("y").asDouble(),
+              Rotation2d.fromDegrees(startingPose.get("rotation").asDouble()));
+      command =
+          Commands.sequence(
+              Commands.runOnce(
+                  () ->
+                      drive.setPose(
+                          shouldFlip.getAsBoolean() ? GeometryUtil.flipFieldPose(pose) : pose)),
+              command);
+    }
+    return command.withName(name);
+  }
+
+  private Command buildCommand(JsonNode command) {
+    JsonNode data = command.get("data");
+    switch (command.get("type").asText()) {
+      case "wait":
+        return Commands.waitSeconds(data.get("waitTime").asDouble());
+      case "named":
+        return NamedCommands.getCommand(data.get("name").asText());
+      case "path":
+        pathCount++;
+        return buildPath(data.get("pathName").asText());
+      case "sequential":
+        List<Command> sequence = new ArrayList<>();
+        for (JsonNode child : data.get("commands")) {
+          sequence.add(buildCommand(child));
+        }
+        return Commands.sequence(sequence.toArray(Command[]::new));
+      case "parallel":
+        return Commands.parallel(buildGroup(data, false));
+      case "race":
+        int previousPathCount = pathCount;
+        Command[] racers = buildGroup(data, false);
+        if (pathCount > previousPathCount) {
+          restingRotation = null; // A path may be cut off while moving
+        }
+        return Commands.race(racers);
+      case "deadline":
+        Command[] commands = buildGroup(data, true);
+        return commands.length > 0
+            ? Commands.deadline(commands[0], Arrays.copyOfRange(commands, 1, commands.length))
+            : Commands.none();
+      default:
+        return Commands.none();
+    }
+  }
+
+  /**
+   * Follows a path along its trajectory if the robot starts it at rest at the rotation the
+   * trajectory was generated from, and with PathPlanner from the robot's actual state otherwise.
+   */
+  private Command buildPath(String pathName) {
+    TrajectoryCache.Entry trajectories = trajectoryCache.join().get(pathName);
+    if (trajectories != null
+        && restingRotation != null
+        && Math.abs(
+                MathUtil.angleModulus(
+                    restingRotation.getRadians() - trajectories.blue().getStartRotationRad()))
+            < START_ROTATION_TOLERANCE_RAD) {
+      TrajectoryCache.SampledTrajectory trajectory = trajectories.blue();
+      restingRotation =
+          trajectory.endsAtRest() ? new Rotation2d(trajectory.getEndRotationRad()) : null;
+      return new FollowTrajectory(drive, trajectories, shouldFlip);
+    }
+    PathPlannerPath path = pathCache.join().getPath(pathName);
+    GoalEndState endState = path.getGoalEndState();
+    restingRotation =
+        endState.getVelocity() < TrajectoryCache.REST_SPEED_METERS_PER_SEC
+            ? endState.getRotation()
+            : null;
+    return AutoBuilder.followPath(path);
+  }
+
+  /**
+   * Builds the commands of a group that runs them at once, so each starts from the state before
+   * the group. The robot is only known to be at rest after the group if a single command follows
+   * paths and the group waits for it to finish: any of a parallel group's, or a deadline group's
+   * first.
+   */
+  private Command[] buildGroup(JsonNode data, boolean isDeadline) {
+    Rotation2d startRotation = restingRotation;
+    Rotation2d endRotation = startRotation;
+    int groupPathCount = 0;
+    List<Command> commands = new ArrayList<>();
+    for (JsonNode child : data.get("commands")) {
+      restingRotation = startRotation;
+      int previousPathCount = pathCount;
+      commands.add(buildCommand(child));
+      if (pathCount > previousPathCount) {
+        groupPathCount++;
+        boolean waitsForChild = !isDeadline || commands.size() == 1;
+        endRotation = groupPathCount == 1 && waitsForChild ? restingRotation : null;
+      }
+    }
+    restingRotation = endRotation;
+    return commands.toArray(Command[]::new);
+  }
+}
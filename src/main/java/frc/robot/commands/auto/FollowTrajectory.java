@@ -0,0 +1,86 @@
+package frc.robot.commands.auto;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.subsystems.drive.Drive;
+import frc.robot.util.TrajectoryCache;
+import frc.robot.util.TrajectoryCache.SampledTrajectory;
+import java.util.function.BooleanSupplier;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Follows a pre-generated trajectory from the {@link TrajectoryCache}, with the same feedback gains
+ * as PathPlanner's holonomic follower. The setpoint of each cycle is looked up by time, so nothing
+ * is generated or searched while following.
+ */
+public class FollowTrajectory extends Command {
+  private static final double TRANSLATION_KP = 5.0;
+  private static final double ROTATION_KP = 5.0;
+
+  private final Drive drive;
+  private final TrajectoryCache.Entry trajectories;
+  private final BooleanSupplier shouldFlip;
+  private final Timer timer = new Timer();
+  private final TrajectoryCache.Setpoint setpoint = new TrajectoryCache.Setpoint();
+  private SampledTrajectory trajectory;
+
+  /**
+   * Follows the trajectory of a path for the current alliance.
+   *
+   * @param shouldFlip Whether to follow the red alliance trajectory, checked when the command
+   *     starts.
+   */
+  public FollowTrajectory(
+      Drive drive, TrajectoryCache.Entry trajectories, BooleanSupplier shouldFlip) {
+    addRequirements(drive);
+    this.drive = drive;
+    this.trajectories = trajectories;
+    this.shouldFlip = shouldFlip;
+  }
+
+  // Called when the command is initially schedule.
+  @Override
+  public void initialize() {
+    trajectory = trajectories.get(shouldFlip.getAsBoolean());
+    timer.reset();
+    timer.start();
+  }
+
+  // Called every time the scheduler runs while the command is scheduled.
+  @Override
+  public void execute() {
+    trajectory.sample(timer.get(), setpoint);
+    Pose2d pose = drive.getPose();
+    double vx = setpoint.vxMetersPerSec + TRANSLATION_KP * (setpoint.xMeters - pose.getX());
+    double vy = setpoint.vyMetersPerSec + TRANSLATION_KP * (setpoint.yMeters - pose.getY());
+    double omega =
+        setpoint.omegaRadPerSec
+            + ROTATION_KP
+                * MathUtil.angleModulus(setpoint.rotationRad - pose.getRotation().getRadians());
+    drive.runVelocity(ChassisSpeeds.fromFieldRelativeSpeeds(vx, vy, omega, pose.getRotation()));
+
+    Logger.recordOutput(
+        "Odometry/TrajectorySetpoint",
+        new Pose2d(setpoint.xMeters, setpoint.yMeters, new Rotation2d(setpoint.rotationRad)));
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    // Like PathPlanner, keep moving into the next segment unless the trajectory ends at rest
+    if (interrupted || trajectory.endsAtRest()) {
+      drive.stop();
+    }
+    timer.stop();
+  }
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return timer.hasElapsed(trajectory.getDurationSecs());
+  }
+}
@@ -13,18 +13,22 @@
 
 package frc.robot.subsystems.ampJoint;
 
-import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 import edu.wpi.first.math.util.Units;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceConfigurator.ConfiguredDevice;
+import frc.robot.util.PhoenixSignals;
+import frc.robot.util.StatusFramePlan;
 
 public class AmpJointIOTalonFX implements AmpJointIO {
   private static final double GEAR_RATIO = 20;
 
   private final TalonFX leader = new TalonFX(57); // TODO: SET
+  private final ConfiguredDevice leaderConfiguration;
 
   private final StatusSignal<Double> leaderPosition = leader.getPosition();
   private final StatusSignal<Double> leaderVelocity = leader.getVelocity();
@@ -36,16 +40,17 @@ public class AmpJointIOTalonFX implements AmpJointIO {
     config.CurrentLimits.StatorCurrentLimit = 30.0;
     config.CurrentLimits.StatorCurrentLimitEnable = true;
     config.MotorOutput.NeutralMode = NeutralModeValue.Coast;
-    leader.getConfigurator().apply(config);
+    leaderConfiguration = DeviceConfigurator.talonFX(leader, config);
 
-    BaseStatusSignal.setUpdateFrequencyForAll(
-        50.0, leaderPosition, leaderVelocity, leaderAppliedVolts, leaderCurrent);
-    leader.optimizeBusUtilization();
+    StatusFramePlan.phoenix(leader)
+        .signals(50.0, leaderPosition, leaderVelocity)
+        .lowPrioritySignals(50.0, leaderAppliedVolts, leaderCurrent);
+    PhoenixSignals.register(
+        leader, leaderPosition, leaderVelocity, leaderAppliedVolts, leaderCurrent);
   }
 
   @Override
   public void updateInputs(AmpJointIOInputs inputs) {
-    BaseStatusSignal.refreshAll(leaderPosition, leaderVelocity, leaderAppliedVolts, leaderCurrent);
     inputs.positionRad = Units.rotationsToRadians(leaderPosition.getValueAsDouble()) / GEAR_RATIO;
     inputs.velocityRadPerSec =
         Units.rotationsToRadians(leaderVelocity.getValueAsDouble()) / GEAR_RATIO;
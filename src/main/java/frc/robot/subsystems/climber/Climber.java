@@ -15,19 +15,21 @@ package frc.robot.subsystems.climber;
 
 import static edu.wpi.first.units.Units.*;
 
-import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import frc.robot.Constants;
+import frc.robot.util.Gains;
+import frc.robot.util.LoopProfiler;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
 public class Climber extends SubsystemBase {
   private final ClimberIO io;
   private final ClimberIOInputsAutoLogged inputs = new ClimberIOInputsAutoLogged();
-  private final SimpleMotorFeedforward ffModel;
+  private volatile Gains gains; // Applied at the next control step
+  private Gains appliedGains = null;
   private final SysIdRoutine sysId;
 
   /** Creates a new Climber. */
@@ -39,15 +41,13 @@ public class Climber extends SubsystemBase {
     switch (Constants.currentMode) {
       case REAL:
       case REPLAY:
-        ffModel = new SimpleMotorFeedforward(0.1, 0.05);
-        io.configurePID(1.0, 0.0, 0.0);
+        setGains(new Gains(1.0, 0.0, 0.0, 0.1, 0.05));
         break;
       case SIM:
-        ffModel = new SimpleMotorFeedforward(0.0, 0.03);
-        io.configurePID(0.5, 0.0, 0.0);
+        setGains(new Gains(0.5, 0.0, 0.0, 0.0, 0.03));
         break;
       default:
-        ffModel = new SimpleMotorFeedforward(0.0, 0.0);
+        setGains(new Gains(0.0, 0.0, 0.0, 0.0, 0.0));
         break;
     }
 
@@ -64,8 +64,11 @@ public class Climber extends SubsystemBase {
 
   @Override
   public void periodic() {
+    applyGains();
     io.updateInputs(inputs);
     Logger.processInputs("Climber", inputs);
+
+    LoopProfiler.recordSubsystem(this);
   }
 
   // /** Enables/Disables software limit */
@@ -80,8 +83,9 @@ public class Climber extends SubsystemBase {
 
   /** Run closed loop at the specified velocity. */
   public void runVelocity(double velocityRPM) {
+    applyGains();
     var velocityRadPerSec = Units.rotationsPerMinuteToRadiansPerSecond(velocityRPM);
-    io.setVelocity(velocityRadPerSec, ffModel.calculate(velocityRadPerSec));
+    io.setVelocity(velocityRadPerSec, appliedGains.feedforward(velocityRadPerSec));
 
     // Log Climber setpoint
     Logger.recordOutput("Climber/SetpointRPM", velocityRPM);
@@ -92,6 +96,25 @@ public class Climber extends SubsystemBase {
     io.stop();
   }
 
+  /**
+   * Sets the PID and feedforward gains, which take effect together at the next control step. The
+   * onboard controller is only reconfigured if the PID gains changed.
+   */
+  public void setGains(Gains gains) {
+    this.gains = gains;
+  }
+
+  private void applyGains() {
+    Gains gains = this.gains;
+    if (gains == appliedGains) {
+      return;
+    }
+    if (gains.pidDiffers(appliedGains)) {
+      io.configurePID(gains.kP(), gains.kI(), gains.kD());
+    }
+    appliedGains = gains;
+  }
+
   /** Returns a command to run a quasistatic test in the specified direction. */
   public Command sysIdQuasistatic(SysIdRoutine.Direction direction) {
     return sysId.quasistatic(direction);
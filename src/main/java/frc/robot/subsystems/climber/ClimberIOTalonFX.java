@@ -13,7 +13,6 @@
 
 package frc.robot.subsystems.climber;
 
-import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.Slot0Configs;
 // import com.ctre.phoenix6.configs.SoftwareLimitSwitchConfigs;
@@ -21,13 +20,19 @@ import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.VelocityVoltage;
 import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.hardware.TalonFX;
+import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 import edu.wpi.first.math.util.Units;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceConfigurator.ConfiguredDevice;
+import frc.robot.util.PhoenixSignals;
+import frc.robot.util.StatusFramePlan;
 
 public class ClimberIOTalonFX implements ClimberIO {
   private static final double GEAR_RATIO = 63;
 
   private final TalonFX leader;
+  private final ConfiguredDevice leaderConfiguration;
 
   private final StatusSignal<Double> leaderPosition;
   private final StatusSignal<Double> leaderVelocity;
@@ -49,19 +54,19 @@ public class ClimberIOTalonFX implements ClimberIO {
     var config = new TalonFXConfiguration();
     config.CurrentLimits.StatorCurrentLimit = 30.0;
     config.CurrentLimits.StatorCurrentLimitEnable = true;
+    config.MotorOutput.Inverted = InvertedValue.CounterClockwise_Positive;
     config.MotorOutput.NeutralMode = NeutralModeValue.Brake;
-    leader.getConfigurator().apply(config);
+    leaderConfiguration = DeviceConfigurator.talonFX(leader, config);
 
-    leader.setInverted(false);
-
-    BaseStatusSignal.setUpdateFrequencyForAll(
-        50.0, leaderPosition, leaderVelocity, leaderAppliedVolts, leaderCurrent);
-    leader.optimizeBusUtilization();
+    StatusFramePlan.phoenix(leader)
+        .signals(50.0, leaderPosition, leaderVelocity)
+        .lowPrioritySignals(50.0, leaderAppliedVolts, leaderCurrent);
+    PhoenixSignals.register(
+        leader, leaderPosition, leaderVelocity, leaderAppliedVolts, leaderCurrent);
   }
 
   @Override
   public void updateInputs(ClimberIOInputs inputs) {
-    BaseStatusSignal.refreshAll(leaderPosition, leaderVelocity, leaderAppliedVolts, leaderCurrent);
     inputs.positionRad = Units.rotationsToRadians(leaderPosition.getValueAsDouble()) / GEAR_RATIO;
     inputs.velocityRadPerSec =
         Units.rotationsToRadians(leaderVelocity.getValueAsDouble()) / GEAR_RATIO;
@@ -116,6 +121,6 @@ public class ClimberIOTalonFX implements ClimberIO {
     config.kP = kP;
     config.kI = kI;
     config.kD = kD;
-    leader.getConfigurator().apply(config);
+    leaderConfiguration.afterConfiguration(() -> leader.getConfigurator().apply(config, 0.0));
   }
 }
@@ -20,25 +20,29 @@ import com.pathplanner.lib.pathfinding.Pathfinding;
 import com.pathplanner.lib.util.HolonomicPathFollowerConfig;
 import com.pathplanner.lib.util.PathPlannerLogging;
 import com.pathplanner.lib.util.ReplanningConfig;
-import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
-import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
-import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
+import frc.robot.Constants;
+import frc.robot.Constants.Mode;
 import frc.robot.util.LocalADStarAK;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import frc.robot.util.LoopProfiler;
+import java.util.function.Consumer;
 import org.littletonrobotics.junction.AutoLogOutput;
+import org.littletonrobotics.junction.LogTable;
 import org.littletonrobotics.junction.Logger;
 
 public class Drive extends SubsystemBase {
@@ -49,23 +53,50 @@ public class Drive extends SubsystemBase {
       Math.hypot(TRACK_WIDTH_X / 2.0, TRACK_WIDTH_Y / 2.0);
   private static final double MAX_ANGULAR_SPEED = MAX_LINEAR_SPEED / DRIVE_BASE_RADIUS;
 
-  static final Lock odometryLock = new ReentrantLock();
   private final GyroIO gyroIO;
-  private final GyroIOInputsAutoLogged gyroInputs = new GyroIOInputsAutoLogged();
+  private final GyroIOInputsAutoLogged gyroInputs = new ReplayCompatibleGyroInputs();
   private final Module[] modules = new Module[4]; // FL, FR, BL, BR
+  private final DriveControlLoop controlLoop;
   private final SysIdRoutine sysId;
 
-  private SwerveDriveKinematics kinematics = new SwerveDriveKinematics(getModuleTranslations());
-  private Rotation2d rawGyroRotation = new Rotation2d();
-  private SwerveModulePosition[] lastModulePositions = // For delta tracking
-      new SwerveModulePosition[] {
-        new SwerveModulePosition(),
-        new SwerveModulePosition(),
-        new SwerveModulePosition(),
-        new SwerveModulePosition()
+  private final SquareSwerveKinematics squareKinematics =
+      new SquareSwerveKinematics(TRACK_WIDTH_X / 2.0, TRACK_WIDTH_Y / 2.0);
+  // Reused by "runVelocity", the modules don't keep references to their setpoints
+  private final double[] setpointSpeeds = new double[4];
+  private final double[] setpointAnglesRad = new double[4];
+  private final SwerveModuleState[] setpointStates =
+      new SwerveModuleState[] {
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState()
       };
-  private SwerveDrivePoseEstimator poseEstimator =
-      new SwerveDrivePoseEstimator(kinematics, rawGyroRotation, lastModulePositions, new Pose2d());
+  private double rawGyroRad = 0.0;
+  private final double[] lastModuleDistances = new double[4]; // For delta tracking
+  // Reused for every odometry sample, the pose estimator and history copy what they keep
+  private final double[] odometryDistances = new double[4];
+  private final double[] odometryDistanceDeltas = new double[4];
+  private final int[] moduleSampleOffsets = new int[4];
+  private final double[] odometryAnglesRad = new double[4];
+  private final double[] odometryTwist = new double[3];
+  // About two seconds of odometry samples at the highest odometry frequency
+  private final PoseHistory poseHistory = new PoseHistory(1024, 4);
+  private final OdometryFrequencyController odometryFrequencyController =
+      new OdometryFrequencyController(Module.ODOMETRY_FREQUENCY);
+  // Holds as many odometry samples as the history, older vision measurements are ignored
+  private final SwervePoseEstimator poseEstimator =
+      new SwervePoseEstimator(
+          squareKinematics,
+          new Rotation2d(),
+          new SwerveModulePosition[] {
+            new SwerveModulePosition(),
+            new SwerveModulePosition(),
+            new SwerveModulePosition(),
+            new SwerveModulePosition()
+          },
+          new Pose2d(),
+          1024);
+  private Consumer<Pose2d> poseResetListener = pose -> {};
 
   public Drive(
       GyroIO gyroIO,
@@ -78,16 +109,22 @@ public class Drive extends SubsystemBase {
     modules[1] = new Module(frModuleIO, 1);
     modules[2] = new Module(blModuleIO, 2);
     modules[3] = new Module(brModuleIO, 3);
+    controlLoop =
+        new DriveControlLoop(
+            modules,
+            new SquareSwerveKinematics(TRACK_WIDTH_X / 2.0, TRACK_WIDTH_Y / 2.0),
+            MAX_LINEAR_SPEED);
 
     // Start threads (no-op for each if no signals have been created)
     PhoenixOdometryThread.getInstance().start();
     SparkMaxOdometryThread.getInstance().start();
+    controlLoop.start();
 
     // Configure AutoBuilder for PathPlanner
     AutoBuilder.configureHolonomic(
         this::getPose,
         this::setPose,
-        () -> kinematics.toChassisSpeeds(getModuleStates()),
+        this::getChassisSpeeds,
         this::runVelocity,
         new HolonomicPathFollowerConfig(
             MAX_LINEAR_SPEED, DRIVE_BASE_RADIUS, new ReplanningConfig()),
@@ -116,6 +153,7 @@ public class Drive extends SubsystemBase {
                 (state) -> Logger.recordOutput("Drive/SysIdState", state.toString())),
             new SysIdRoutine.Mechanism(
                 (voltage) -> {
+                  controlLoop.idle();
                   for (int i = 0; i < 4; i++) {
                     modules[i].runCharacterization(voltage.in(Volts));
                   }
@@ -125,19 +163,22 @@ public class Drive extends SubsystemBase {
   }
 
   public void periodic() {
-    odometryLock.lock(); // Prevents odometry updates while reading data
+    // Capture the odometry samples to read this cycle, so every module sees the same samples
+    PhoenixOdometryThread.getInstance().snapshot();
+    SparkMaxOdometryThread.getInstance().snapshot();
     gyroIO.updateInputs(gyroInputs);
     for (var module : modules) {
       module.updateInputs();
     }
-    odometryLock.unlock();
     Logger.processInputs("Drive/Gyro", gyroInputs);
     for (var module : modules) {
       module.periodic();
     }
+    controlLoop.periodic();
 
     // Stop moving when disabled
     if (DriverStation.isDisabled()) {
+      controlLoop.idle();
       for (var module : modules) {
         module.stop();
       }
@@ -149,48 +190,97 @@ public class Drive extends SubsystemBase {
     }
 
     // Update odometry
-    double[] sampleTimestamps =
-        modules[0].getOdometryTimestamps(); // All signals are sampled together
-    int sampleCount = sampleTimestamps.length;
+    // All signals are sampled together, but a stalled drain can drop the oldest samples of some,
+    // so they are lined up by their newest samples
+    int sampleCount = Integer.MAX_VALUE;
+    for (var module : modules) {
+      sampleCount = Math.min(sampleCount, module.getOdometrySampleCount());
+    }
+    for (int moduleIndex = 0; moduleIndex < 4; moduleIndex++) {
+      moduleSampleOffsets[moduleIndex] =
+          modules[moduleIndex].getOdometrySampleCount() - sampleCount;
+    }
+    double[] sampleTimestamps = modules[0].getOdometryTimestamps();
+    int gyroSampleOffset = gyroInputs.odometryYawPositionsRad.length - sampleCount;
     for (int i = 0; i < sampleCount; i++) {
       // Read wheel positions and deltas from each module
-      SwerveModulePosition[] modulePositions = new SwerveModulePosition[4];
-      SwerveModulePosition[] moduleDeltas = new SwerveModulePosition[4];
       for (int moduleIndex = 0; moduleIndex < 4; moduleIndex++) {
-        modulePositions[moduleIndex] = modules[moduleIndex].getOdometryPositions()[i];
-        moduleDeltas[moduleIndex] =
-            new SwerveModulePosition(
-                modulePositions[moduleIndex].distanceMeters
-                    - lastModulePositions[moduleIndex].distanceMeters,
-                modulePositions[moduleIndex].angle);
-        lastModulePositions[moduleIndex] = modulePositions[moduleIndex];
+        int sample = moduleSampleOffsets[moduleIndex] + i;
+        double distance = modules[moduleIndex].getOdometryDistancesMeters()[sample];
+        odometryDistances[moduleIndex] = distance;
+        odometryDistanceDeltas[moduleIndex] = distance - lastModuleDistances[moduleIndex];
+        odometryAnglesRad[moduleIndex] = modules[moduleIndex].getOdometryAnglesRad()[sample];
+        lastModuleDistances[moduleIndex] = distance;
       }
 
       // Update gyro angle
-      if (gyroInputs.connected) {
+      if (gyroInputs.connected && gyroSampleOffset + i >= 0) {
         // Use the real gyro angle
-        rawGyroRotation = gyroInputs.odometryYawPositions[i];
+        rawGyroRad = gyroInputs.odometryYawPositionsRad[gyroSampleOffset + i];
       } else {
         // Use the angle delta from the kinematics and module deltas
-        Twist2d twist = kinematics.toTwist2d(moduleDeltas);
-        rawGyroRotation = rawGyroRotation.plus(new Rotation2d(twist.dtheta));
+        squareKinematics.toTwist(odometryDistanceDeltas, odometryAnglesRad, odometryTwist);
+        rawGyroRad = MathUtil.angleModulus(rawGyroRad + odometryTwist[2]);
       }
 
-      // Apply update
-      poseEstimator.updateWithTime(sampleTimestamps[i], rawGyroRotation, modulePositions);
+      // Apply update, all in primitives so a sample doesn't allocate
+      double timestamp = sampleTimestamps[moduleSampleOffsets[0] + i];
+      poseEstimator.updateWithTime(timestamp, rawGyroRad, odometryDistances, odometryAnglesRad);
+      poseHistory.add(
+          timestamp,
+          poseEstimator.getEstimatedX(),
+          poseEstimator.getEstimatedY(),
+          poseEstimator.getEstimatedRotationRad(),
+          odometryDistances,
+          odometryAnglesRad);
+    }
+
+    // Adjust the odometry frequency to the bus load (the physics sim has no odometry threads)
+    if (Constants.currentMode != Mode.SIM
+        && odometryFrequencyController.update(
+            sampleTimestamps, modules[0].getOdometrySampleCount())) {
+      setOdometryFrequency(odometryFrequencyController.getFrequency());
+    }
+
+    LoopProfiler.recordSubsystem(this);
+  }
+
+  /** Sets the update frequency of every odometry signal and thread. */
+  private void setOdometryFrequency(double frequencyHz) {
+    PhoenixOdometryThread.getInstance().setFrequency(frequencyHz);
+    SparkMaxOdometryThread.getInstance().setFrequency(frequencyHz);
+    gyroIO.setOdometryFrequency(frequencyHz);
+    for (var module : modules) {
+      module.setOdometryFrequency(frequencyHz);
     }
   }
 
   /**
-   * Runs the drive at the desired velocity.
+   * Runs the drive at the desired velocity. When the fast drive loop is running, the speeds are
+   * handed over to it as is, and must not be modified afterwards.
    *
    * @param speeds Speeds in meters/sec
    */
   public void runVelocity(ChassisSpeeds speeds) {
+    if (controlLoop.isRunning()) {
+      // The fast loop calculates and sends the module setpoints from its next tick
+      controlLoop.submit(speeds, false);
+      return;
+    }
+
     // Calculate module setpoints
     ChassisSpeeds discreteSpeeds = ChassisSpeeds.discretize(speeds, 0.02);
-    SwerveModuleState[] setpointStates = kinematics.toSwerveModuleStates(discreteSpeeds);
-    SwerveDriveKinematics.desaturateWheelSpeeds(setpointStates, MAX_LINEAR_SPEED);
+    squareKinematics.toModuleStates(
+        discreteSpeeds.vxMetersPerSecond,
+        discreteSpeeds.vyMetersPerSecond,
+        discreteSpeeds.omegaRadiansPerSecond,
+        setpointSpeeds,
+        setpointAnglesRad);
+    SquareSwerveKinematics.desaturate(setpointSpeeds, MAX_LINEAR_SPEED);
+    for (int i = 0; i < 4; i++) {
+      setpointStates[i].speedMetersPerSecond = setpointSpeeds[i];
+      setpointStates[i].angle = new Rotation2d(setpointAnglesRad[i]);
+    }
 
     // Send setpoints to modules
     SwerveModuleState[] optimizedSetpointStates = new SwerveModuleState[4];
@@ -214,11 +304,15 @@ public class Drive extends SubsystemBase {
    * return to their normal orientations the next time a nonzero velocity is requested.
    */
   public void stopWithX() {
-    Rotation2d[] headings = new Rotation2d[4];
+    if (controlLoop.isRunning()) {
+      controlLoop.submit(new ChassisSpeeds(), true);
+      return;
+    }
+    double[] headingsRad = new double[4];
     for (int i = 0; i < 4; i++) {
-      headings[i] = getModuleTranslations()[i].getAngle();
+      headingsRad[i] = getModuleTranslations()[i].getAngle().getRadians();
     }
-    kinematics.resetHeadings(headings);
+    squareKinematics.resetHeadings(headingsRad);
     stop();
   }
 
@@ -242,6 +336,19 @@ public class Drive extends SubsystemBase {
     return states;
   }
 
+  /** Returns the robot relative chassis speeds measured by the modules. */
+  private ChassisSpeeds getChassisSpeeds() {
+    double[] speeds = new double[4];
+    double[] anglesRad = new double[4];
+    for (int i = 0; i < 4; i++) {
+      speeds[i] = modules[i].getVelocityMetersPerSec();
+      anglesRad[i] = modules[i].getAngle().getRadians();
+    }
+    double[] chassisSpeeds = new double[3];
+    squareKinematics.toChassisSpeeds(speeds, anglesRad, chassisSpeeds);
+    return new ChassisSpeeds(chassisSpeeds[0], chassisSpeeds[1], chassisSpeeds[2]);
+  }
+
   /** Returns the module positions (turn angles and drive positions) for all of the modules. */
   private SwerveModulePosition[] getModulePositions() {
     SwerveModulePosition[] states = new SwerveModulePosition[4];
@@ -257,6 +364,19 @@ public class Drive extends SubsystemBase {
     return poseEstimator.getEstimatedPosition();
   }
 
+  /**
+   * Finds the odometry pose and module positions at a past time, interpolating between odometry
+   * samples. Does not allocate.
+   *
+   * @param timestamp The timestamp to look up in seconds.
+   * @param sample The sample to store the result in.
+   * @return Whether a sample was found, false if no odometry has been received since the last
+   *     reset.
+   */
+  public boolean getPoseAt(double timestamp, PoseHistory.Sample sample) {
+    return poseHistory.getSampleAt(timestamp, sample);
+  }
+
   /** Returns the current odometry rotation. */
   public Rotation2d getRotation() {
     return getPose().getRotation();
@@ -264,12 +384,21 @@ public class Drive extends SubsystemBase {
 
   /** Resets the current odometry pose. */
   public void setPose(Pose2d pose) {
-    poseEstimator.resetPosition(rawGyroRotation, getModulePositions(), pose);
+    poseEstimator.resetPosition(new Rotation2d(rawGyroRad), getModulePositions(), pose);
+    poseHistory.clear();
+    poseResetListener.accept(pose);
   }
 
   public void setPose(Pose2d pose, double yaw) {
     gyroIO.setYaw(yaw);
-    poseEstimator.resetPosition(rawGyroRotation, getModulePositions(), pose);
+    poseEstimator.resetPosition(new Rotation2d(rawGyroRad), getModulePositions(), pose);
+    poseHistory.clear();
+    poseResetListener.accept(pose);
+  }
+
+  /** Sets a listener called with the new pose whenever the odometry is reset. */
+  public void setPoseResetListener(Consumer<Pose2d> listener) {
+    poseResetListener = listener;
   }
 
   /**
@@ -282,6 +411,19 @@ public class Drive extends SubsystemBase {
     poseEstimator.addVisionMeasurement(visionPose, timestamp);
   }
 
+  /**
+   * Adds a vision measurement to the pose estimator.
+   *
+   * @param visionPose The pose of the robot as measured by the vision camera.
+   * @param timestamp The timestamp of the vision measurement in seconds.
+   * @param visionMeasurementStdDevs The standard deviations of the measurement (x and y in meters,
+   *     rotation in radians).
+   */
+  public void addVisionMeasurement(
+      Pose2d visionPose, double timestamp, Matrix<N3, N1> visionMeasurementStdDevs) {
+    poseEstimator.addVisionMeasurement(visionPose, timestamp, visionMeasurementStdDevs);
+  }
+
   /** Returns the maximum linear speed in meters per sec. */
   public double getMaxLinearSpeedMetersPerSec() {
     return MAX_LINEAR_SPEED;
@@ -301,4 +443,23 @@ public class Drive extends SubsystemBase {
       new Translation2d(-TRACK_WIDTH_X / 2.0, -TRACK_WIDTH_Y / 2.0)
     };
   }
+
+  /**
+   * Gyro inputs which also replay logs from before the odometry yaw positions were logged as
+   * radians in a double array, when they were logged as a Rotation2d struct array under
+   * "OdometryYawPositions". The angles are read from the structs, no unit conversion is needed.
+   */
+  private static class ReplayCompatibleGyroInputs extends GyroIOInputsAutoLogged {
+    @Override
+    public void fromLog(LogTable table) {
+      super.fromLog(table);
+      if (table.get("OdometryYawPositionsRad") == null) {
+        Rotation2d[] positions = table.get("OdometryYawPositions", new Rotation2d[] {});
+        odometryYawPositionsRad = new double[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+          odometryYawPositionsRad[i] = positions[i].getRadians();
+        }
+      }
+    }
+  }
 }
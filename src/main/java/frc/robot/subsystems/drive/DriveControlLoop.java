@@ -0,0 +1,241 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Threads;
+import frc.robot.Constants;
+import frc.robot.Constants.Mode;
+import java.util.concurrent.atomic.AtomicReference;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.inputs.LoggableInputs;
+
+/**
+ * Runs drive setpoint generation and module control on a dedicated real-time Notifier thread,
+ * faster than the main loop. Commanded speeds reach the modules at the next tick, instead of
+ * waiting for the next cycle of the main loop.
+ *
+ * <p>Commands hand their chassis speeds over through an atomic reference, and each tick reads the
+ * latest turn positions sampled by the odometry threads. The loop only runs on the real robot with
+ * the module loops closed on the motor controllers, since it sends setpoints rather than voltages.
+ *
+ * <p>The inputs of every tick are written to ring buffers, which the main thread drains and logs
+ * once per cycle under "Drive/ControlLoop". During replay no thread runs, and the logged ticks are
+ * run again on the main thread instead, producing the same setpoints.
+ */
+public class DriveControlLoop {
+  // Every tick sends a control frame to each motor, so faster loops cost CAN bandwidth
+  private static final double FREQUENCY_HZ = 100.0;
+  private static final int THREAD_PRIORITY = 15;
+
+  private final Module[] modules;
+  private final double maxLinearSpeed;
+  private final SquareSwerveKinematics kinematics;
+  private final double[] xHeadingsRad = new double[4];
+  private final double[] turnPositionsRad = new double[4];
+  private final double[] setpointSpeeds = new double[4];
+  private final double[] setpointAnglesRad = new double[4];
+
+  private final AtomicReference<Request> request = new AtomicReference<>();
+  private final AtomicReference<SwerveModuleState[]> lastSetpoints = new AtomicReference<>();
+  private final Notifier notifier;
+  private boolean prioritySet = false;
+
+  private final OdometryRingBuffer.Sequence sequence = new OdometryRingBuffer.Sequence();
+  private final OdometryRingBuffer timestampQueue = new OdometryRingBuffer(sequence);
+  private final OdometryRingBuffer vxQueue = new OdometryRingBuffer(sequence);
+  private final OdometryRingBuffer vyQueue = new OdometryRingBuffer(sequence);
+  private final OdometryRingBuffer omegaQueue = new OdometryRingBuffer(sequence);
+  private final OdometryRingBuffer xLockQueue = new OdometryRingBuffer(sequence);
+  private final OdometryRingBuffer[] turnPositionQueues = new OdometryRingBuffer[4];
+
+  private boolean running = false;
+  private double[] timestamps = new double[] {};
+  private double[] vxMetersPerSec = new double[] {};
+  private double[] vyMetersPerSec = new double[] {};
+  private double[] omegaRadPerSec = new double[] {};
+  private double[] xLock = new double[] {};
+  private final double[][] tickTurnPositionsRad = new double[4][];
+
+  private final LoggableInputs inputs =
+      new LoggableInputs() {
+        public void toLog(LogTable table) {
+          table.put("Running", running);
+          table.put("Timestamps", timestamps);
+          table.put("VxMetersPerSec", vxMetersPerSec);
+          table.put("VyMetersPerSec", vyMetersPerSec);
+          table.put("OmegaRadPerSec", omegaRadPerSec);
+          table.put("XLock", xLock);
+          for (int i = 0; i < 4; i++) {
+            table.put("Module" + i + "TurnPositionsRad", tickTurnPositionsRad[i]);
+          }
+        }
+
+        public void fromLog(LogTable table) {
+          running = table.get("Running", running);
+          timestamps = table.get("Timestamps", timestamps);
+          vxMetersPerSec = table.get("VxMetersPerSec", vxMetersPerSec);
+          vyMetersPerSec = table.get("VyMetersPerSec", vyMetersPerSec);
+          omegaRadPerSec = table.get("OmegaRadPerSec", omegaRadPerSec);
+          xLock = table.get("XLock", xLock);
+          for (int i = 0; i < 4; i++) {
+            tickTurnPositionsRad[i] =
+                table.get("Module" + i + "TurnPositionsRad", tickTurnPositionsRad[i]);
+          }
+        }
+      };
+
+  /** Creates the loop, with its own kinematics since it keeps the module headings between ticks. */
+  DriveControlLoop(Module[] modules, SquareSwerveKinematics kinematics, double maxLinearSpeed) {
+    this.modules = modules;
+    this.kinematics = kinematics;
+    this.maxLinearSpeed = maxLinearSpeed;
+    var moduleTranslations = Drive.getModuleTranslations();
+    for (int i = 0; i < 4; i++) {
+      xHeadingsRad[i] = moduleTranslations[i].getAngle().getRadians();
+      turnPositionQueues[i] = new OdometryRingBuffer(sequence);
+      tickTurnPositionsRad[i] = new double[] {};
+    }
+    notifier = new Notifier(this::tick);
+    notifier.setName("DriveControlLoop");
+  }
+
+  /**
+   * Starts the loop if enabled in the constants, on the real robot, and every module closes its
+   * loops on the motor controllers. Otherwise the drive keeps running its modules in the main loop.
+   */
+  void start() {
+    if (!Constants.fastDriveLoop || Constants.currentMode != Mode.REAL) {
+      return;
+    }
+    for (var module : modules) {
+      if (!module.usesOnboardControl()) {
+        return;
+      }
+    }
+    notifier.startPeriodic(1.0 / FREQUENCY_HZ);
+    running = true;
+  }
+
+  /** Returns whether the loop runs the modules, as logged (so replays take the same decisions). */
+  boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Hands the speeds over to the loop, which runs them from its next tick. The modules stop their
+   * own closed loop control first, so only this loop sends them setpoints. The speeds must not be
+   * modified afterwards.
+   *
+   * @param speeds Robot relative speeds in meters/sec.
+   * @param xLock Whether to keep the modules in an X arrangement while the speeds are zero.
+   */
+  void submit(ChassisSpeeds speeds, boolean xLock) {
+    for (var module : modules) {
+      module.releaseControl();
+    }
+    request.set(new Request(speeds, xLock));
+  }
+
+  /** Stops sending setpoints until the next submit, e.g. while disabled or characterizing. */
+  void idle() {
+    request.set(null);
+  }
+
+  /**
+   * Logs the ticks run since the last cycle, and runs them again during replay. Called by the drive
+   * in every cycle, after the modules are updated.
+   */
+  void periodic() {
+    sequence.snapshot();
+    timestamps = timestampQueue.drain();
+    vxMetersPerSec = vxQueue.drain();
+    vyMetersPerSec = vyQueue.drain();
+    omegaRadPerSec = omegaQueue.drain();
+    xLock = xLockQueue.drain();
+    for (int i = 0; i < 4; i++) {
+      tickTurnPositionsRad[i] = turnPositionQueues[i].drain();
+    }
+    Logger.processInputs("Drive/ControlLoop", inputs);
+
+    if (Constants.currentMode == Mode.REPLAY) {
+      int tickCount = Math.min(timestamps.length, xLock.length);
+      for (var positions : tickTurnPositionsRad) {
+        tickCount = Math.min(tickCount, positions.length);
+      }
+      for (int tick = 0; tick < tickCount; tick++) {
+        for (int i = 0; i < 4; i++) {
+          turnPositionsRad[i] = tickTurnPositionsRad[i][tick];
+        }
+        run(vxMetersPerSec[tick], vyMetersPerSec[tick], omegaRadPerSec[tick], xLock[tick] != 0.0);
+      }
+    }
+
+    if (running) {
+      SwerveModuleState[] setpoints = lastSetpoints.get();
+      Logger.recordOutput(
+          "SwerveStates/SetpointsOptimized",
+          setpoints != null ? setpoints : new SwerveModuleState[] {});
+    }
+  }
+
+  /** Records the inputs of one tick and runs it. Called by the notifier. */
+  private void tick() {
+    if (!prioritySet) {
+      Threads.setCurrentThreadPriority(true, THREAD_PRIORITY);
+      prioritySet = true;
+    }
+    Request request = this.request.get();
+    if (request == null) {
+      return;
+    }
+
+    for (int i = 0; i < 4; i++) {
+      turnPositionsRad[i] = modules[i].getLatestTurnPositionRad();
+    }
+    long sequenceNumber = sequence.next();
+    timestampQueue.write(sequenceNumber, Logger.getRealTimestamp() / 1e6);
+    vxQueue.write(sequenceNumber, request.speeds.vxMetersPerSecond);
+    vyQueue.write(sequenceNumber, request.speeds.vyMetersPerSecond);
+    omegaQueue.write(sequenceNumber, request.speeds.omegaRadiansPerSecond);
+    xLockQueue.write(sequenceNumber, request.xLock ? 1.0 : 0.0);
+    for (int i = 0; i < 4; i++) {
+      turnPositionQueues[i].write(sequenceNumber, turnPositionsRad[i]);
+    }
+    sequence.publish(sequenceNumber);
+
+    run(
+        request.speeds.vxMetersPerSecond,
+        request.speeds.vyMetersPerSecond,
+        request.speeds.omegaRadiansPerSecond,
+        request.xLock);
+  }
+
+  /** Converts the speeds to module setpoints and runs the modules, same as "Drive.runVelocity". */
+  private void run(double vx, double vy, double omega, boolean xLock) {
+    if (xLock) {
+      kinematics.resetHeadings(xHeadingsRad);
+    }
+    ChassisSpeeds discreteSpeeds = ChassisSpeeds.discretize(vx, vy, omega, 1.0 / FREQUENCY_HZ);
+    kinematics.toModuleStates(
+        discreteSpeeds.vxMetersPerSecond,
+        discreteSpeeds.vyMetersPerSecond,
+        discreteSpeeds.omegaRadiansPerSecond,
+        setpointSpeeds,
+        setpointAnglesRad);
+    SquareSwerveKinematics.desaturate(setpointSpeeds, maxLinearSpeed);
+
+    SwerveModuleState[] optimizedSetpointStates = new SwerveModuleState[4];
+    for (int i = 0; i < 4; i++) {
+      var setpointState =
+          new SwerveModuleState(setpointSpeeds[i], new Rotation2d(setpointAnglesRad[i]));
+      var optimizedState = modules[i].runFastSetpoint(setpointState, turnPositionsRad[i]);
+      optimizedSetpointStates[i] = optimizedState != null ? optimizedState : setpointState;
+    }
+    lastSetpoints.set(optimizedSetpointStates);
+  }
+
+  private record Request(ChassisSpeeds speeds, boolean xLock) {}
+}
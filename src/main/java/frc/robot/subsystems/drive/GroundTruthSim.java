@@ -0,0 +1,64 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.util.Units;
+
+/**
+ * The true pose of the simulated robot, integrated from the physics states of the module sims
+ * rather than from the logged inputs the pose estimator sees. Simulated sensors that observe the
+ * field (e.g. {@link frc.robot.subsystems.vision.VisionIOSim}) should use this pose, so that they
+ * correct the estimator instead of repeating its own estimate back to it.
+ *
+ * <p>The simulated wheels are slightly smaller than the odometry assumes, like worn tread, so the
+ * odometry slowly drifts from the true pose. The pose is integrated lazily up to the latest module
+ * states whenever it is read.
+ */
+public class GroundTruthSim {
+  private static final double WHEEL_RADIUS = Units.inchesToMeters(2.0) * 0.98;
+
+  private final ModuleIOSim[] modules;
+  private final SquareSwerveKinematics kinematics;
+  private final double[] lastDrivePositionsRad = new double[4];
+  private final double[] distanceDeltas = new double[4];
+  private final double[] anglesRad = new double[4];
+  private final double[] twist = new double[3];
+  private Pose2d pose = new Pose2d();
+
+  /** Creates a ground truth from the module sims, in the order FL, FR, BL, BR. */
+  public GroundTruthSim(ModuleIOSim... modules) {
+    if (modules.length != 4) {
+      throw new IllegalArgumentException("Expected 4 module sims, got " + modules.length);
+    }
+    this.modules = modules;
+    Translation2d frontLeft = Drive.getModuleTranslations()[0];
+    kinematics = new SquareSwerveKinematics(frontLeft.getX(), frontLeft.getY());
+    for (int i = 0; i < 4; i++) {
+      lastDrivePositionsRad[i] = modules[i].getTrueDrivePositionRad();
+    }
+  }
+
+  /** Returns the true pose, including every module movement so far. */
+  public Pose2d getPose() {
+    boolean moved = false;
+    for (int i = 0; i < 4; i++) {
+      double drivePositionRad = modules[i].getTrueDrivePositionRad();
+      distanceDeltas[i] = (drivePositionRad - lastDrivePositionsRad[i]) * WHEEL_RADIUS;
+      anglesRad[i] = modules[i].getTrueAngleRad();
+      lastDrivePositionsRad[i] = drivePositionRad;
+      moved |= distanceDeltas[i] != 0.0;
+    }
+    if (moved) {
+      kinematics.toTwist(distanceDeltas, anglesRad, twist);
+      pose = pose.exp(new Twist2d(twist[0], twist[1], twist[2]));
+    }
+    return pose;
+  }
+
+  /** Moves the simulated robot to a pose, e.g. when the odometry is reset to a starting pose. */
+  public void resetPose(Pose2d pose) {
+    getPose(); // Movement before the reset doesn't count
+    this.pose = pose;
+  }
+}
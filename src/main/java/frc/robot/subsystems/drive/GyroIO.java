@@ -22,11 +22,14 @@ public interface GyroIO {
     public boolean connected = false;
     public Rotation2d yawPosition = new Rotation2d();
     public double[] odometryYawTimestamps = new double[] {};
-    public Rotation2d[] odometryYawPositions = new Rotation2d[] {};
+    public double[] odometryYawPositionsRad = new double[] {};
     public double yawVelocityRadPerSec = 0.0;
   }
 
   public default void updateInputs(GyroIOInputs inputs) {}
 
   public default void setYaw(double yaw) {}
+
+  /** Set the update frequency of the odometry signals. */
+  public default void setOdometryFrequency(double frequencyHz) {}
 }
@@ -13,29 +13,33 @@
 
 package frc.robot.subsystems.drive;
 
-import com.ctre.phoenix6.BaseStatusSignal;
-import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.hardware.Pigeon2;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
-import java.util.Queue;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceConfigurator.ConfiguredDevice;
+import frc.robot.util.PhoenixSignals;
+import frc.robot.util.StatusFramePlan;
 
 /** IO implementation for Pigeon2 */
 public class GyroIOPigeon2 implements GyroIO {
   private final Pigeon2 pigeon = new Pigeon2(1);
+  private final ConfiguredDevice configuration;
   private final StatusSignal<Double> yaw = pigeon.getYaw();
-  private final Queue<Double> yawPositionQueue;
-  private final Queue<Double> yawTimestampQueue;
+  private final OdometryRingBuffer yawPositionQueue;
+  private final OdometryRingBuffer yawTimestampQueue;
   private final StatusSignal<Double> yawVelocity = pigeon.getAngularVelocityZWorld();
+  private final PhoenixSignals.SignalGroup signals;
 
   public GyroIOPigeon2(boolean phoenixDrive) {
-    pigeon.getConfigurator().apply(new Pigeon2Configuration());
-    pigeon.getConfigurator().setYaw(180.0);
-    yaw.setUpdateFrequency(Module.ODOMETRY_FREQUENCY);
-    yawVelocity.setUpdateFrequency(100.0);
-    pigeon.optimizeBusUtilization();
+    configuration = DeviceConfigurator.pigeon2(pigeon, new Pigeon2Configuration());
+    configuration.afterConfiguration(() -> pigeon.getConfigurator().setYaw(180.0));
+    StatusFramePlan.phoenix(pigeon)
+        .signals(100.0, yawVelocity)
+        .odometrySignals(Module.ODOMETRY_FREQUENCY, yaw);
+    signals = PhoenixSignals.register(pigeon, yaw, yawVelocity);
     if (phoenixDrive) {
       yawTimestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
       yawPositionQueue =
@@ -50,22 +54,22 @@ public class GyroIOPigeon2 implements GyroIO {
 
   @Override
   public void setYaw(double yaw) {
-    pigeon.setYaw(yaw);
+    configuration.afterConfiguration(() -> pigeon.setYaw(yaw, 0.0));
+  }
+
+  @Override
+  public void setOdometryFrequency(double frequencyHz) {
+    // Don't wait for confirmation, this runs in the main loop
+    yaw.setUpdateFrequency(frequencyHz, 0.0);
   }
 
   @Override
   public void updateInputs(GyroIOInputs inputs) {
-    inputs.connected = BaseStatusSignal.refreshAll(yaw, yawVelocity).equals(StatusCode.OK);
+    inputs.connected = signals.isOK();
     inputs.yawPosition = Rotation2d.fromDegrees(yaw.getValueAsDouble());
     inputs.yawVelocityRadPerSec = Units.degreesToRadians(yawVelocity.getValueAsDouble());
 
-    inputs.odometryYawTimestamps =
-        yawTimestampQueue.stream().mapToDouble((Double value) -> value).toArray();
-    inputs.odometryYawPositions =
-        yawPositionQueue.stream()
-            .map((Double value) -> Rotation2d.fromDegrees(value))
-            .toArray(Rotation2d[]::new);
-    yawTimestampQueue.clear();
-    yawPositionQueue.clear();
+    inputs.odometryYawTimestamps = yawTimestampQueue.drain();
+    inputs.odometryYawPositionsRad = yawPositionQueue.drain(Units.degreesToRadians(1.0));
   }
 }
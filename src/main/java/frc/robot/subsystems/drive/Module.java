@@ -13,31 +13,41 @@
 
 package frc.robot.subsystems.drive;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
-import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.util.Units;
 import frc.robot.Constants;
+import frc.robot.util.Gains;
 import frc.robot.util.LoggedTunableNumber;
+import org.littletonrobotics.junction.LogTable;
 import org.littletonrobotics.junction.Logger;
 
 public class Module {
   private static final double WHEEL_RADIUS = Units.inchesToMeters(2.0);
-  static final double ODOMETRY_FREQUENCY = 250.0;
+  static final double ODOMETRY_FREQUENCY = 250.0; // Initial value, adjusted at runtime
 
   private final ModuleIO io;
-  private final ModuleIOInputsAutoLogged inputs = new ModuleIOInputsAutoLogged();
+  private final ModuleIOInputsAutoLogged inputs = new ReplayCompatibleInputs();
   private final int index;
-
-  private SimpleMotorFeedforward driveFeedforward;
-  private PIDController driveFeedback;
-  private PIDController turnFeedback;
+  private final boolean onboardControl; // Loops closed on the motor controllers, not the RIO
+  private final String turnErrorKey;
+  private final String driveVelocityErrorKey;
+
+  private final PIDController driveFeedback = new PIDController(0.0, 0.0, 0.0);
+  private final PIDController turnFeedback = new PIDController(0.0, 0.0, 0.0);
+  private volatile ModuleGains gains; // Applied to the controllers at the next control step
+  private ModuleGains appliedGains = null;
   private Rotation2d angleSetpoint = null; // Setpoint for closed loop control, null for open loop
   private Double speedSetpoint = null; // Setpoint for closed loop control, null for open loop
-  private Rotation2d turnRelativeOffset = null; // Relative + Offset = Absolute
-  private SwerveModulePosition[] odometryPositions = new SwerveModulePosition[] {};
+  // Relative + Offset = Absolute, also read by the fast drive loop
+  private volatile Rotation2d turnRelativeOffset = null;
+  private double[] odometryTimestamps = new double[OdometryRingBuffer.MAX_SAMPLES_PER_CYCLE];
+  private double[] odometryDistancesMeters = new double[OdometryRingBuffer.MAX_SAMPLES_PER_CYCLE];
+  private double[] odometryAnglesRad = new double[OdometryRingBuffer.MAX_SAMPLES_PER_CYCLE];
+  private int odometrySampleCount = 0;
 
   private final LoggedTunableNumber driveKs = new LoggedTunableNumber("Drive/driveKs");
   private final LoggedTunableNumber driveKv = new LoggedTunableNumber("Drive/driveKv");
@@ -50,66 +60,58 @@ public class Module {
   public Module(ModuleIO io, int index) {
     this.io = io;
     this.index = index;
+    onboardControl = Constants.onboardModuleControl && io.supportsOnboardControl();
+    turnErrorKey = "Drive/Module" + index + "/TurnErrorRad";
+    driveVelocityErrorKey = "Drive/Module" + index + "/DriveVelocityErrorRadPerSec";
+    turnFeedback.enableContinuousInput(-Math.PI, Math.PI);
 
     // Switch constants based on mode (the physics simulator is treated as a
     // separate robot with different tuning)
     switch (Constants.currentMode) {
       case REAL:
       case REPLAY:
-        // driveKs.setDefault(0.1);
-        // driveKv.setDefault(0.17);
-        // driveKp.setDefault(0.05);
-        // driveKd.setDefault(0);
-
-        // turnKp.setDefault(4);
-        // turnKd.setDefault(0);
-
-        driveFeedforward = new SimpleMotorFeedforward(driveKs.get(), driveKv.get());
-        driveFeedback = new PIDController(driveKp.get(), 0.0, driveKd.get());
-        turnFeedback = new PIDController(turnKp.get(), 0.0, turnKd.get());
-        // driveFeedforward = new SimpleMotorFeedforward(0.1, 0.17);
-        // driveFeedback = new PIDController(0.05, 0.0, 0.0);
-        // turnFeedback = new PIDController(4.0, 0.0, 0.0);
+        driveKs.setDefault(0.1);
+        driveKv.setDefault(0.17);
+        driveKp.setDefault(0.05);
+        driveKd.setDefault(0.0);
+
+        turnKp.setDefault(4.0);
+        turnKd.setDefault(0.0);
         break;
       case SIM:
-        // driveFeedforward = new SimpleMotorFeedforward(0.0, 0.13);
-        // driveFeedback = new PIDController(0.1, 0.0, 0.0);
-        // turnFeedback = new PIDController(10.0, 0.0, 0.0);
-        driveFeedforward = new SimpleMotorFeedforward(driveKs.get(), driveKv.get());
-        driveFeedback = new PIDController(driveKp.get(), 0.0, driveKd.get());
-        turnFeedback = new PIDController(turnKp.get(), 0.0, turnKd.get());
+        driveKs.setDefault(0.0);
+        driveKv.setDefault(0.13);
+        driveKp.setDefault(0.1);
+        driveKd.setDefault(0.0);
+
+        turnKp.setDefault(10.0);
+        turnKd.setDefault(0.0);
         break;
       default:
-        driveFeedforward = new SimpleMotorFeedforward(driveKs.get(), driveKv.get());
-        driveFeedback = new PIDController(driveKp.get(), 0.0, driveKd.get());
-        turnFeedback = new PIDController(turnKp.get(), 0.0, turnKd.get());
         break;
     }
 
-    turnFeedback.enableContinuousInput(-Math.PI, Math.PI);
+    LoggedTunableNumber.onChange(
+        () ->
+            setGains(
+                new Gains(driveKp.get(), 0.0, driveKd.get(), driveKs.get(), driveKv.get()),
+                Gains.pid(turnKp.get(), 0.0, turnKd.get())),
+        driveKs,
+        driveKv,
+        driveKp,
+        driveKd,
+        turnKp,
+        turnKd);
+
     setBrakeMode(true);
   }
 
   /**
    * Update inputs without running the rest of the periodic logic. This is useful since these
-   * updates need to be properly thread-locked.
+   * updates need to read the same odometry snapshot for every module.
    */
   public void updateInputs() {
     io.updateInputs(inputs);
-
-    // TODO: REMOVE NEW PID CONTROLLERS
-
-    if (driveKp.hasChanged()
-        || driveKd.hasChanged()
-        || driveKs.hasChanged()
-        || driveKv.hasChanged()
-        || turnKp.hasChanged()
-        || turnKd.hasChanged()) {
-      driveFeedforward = new SimpleMotorFeedforward(driveKs.get(), driveKv.get());
-      driveFeedback = new PIDController(driveKp.get(), 0.0, driveKd.get());
-      turnFeedback = new PIDController(turnKp.get(), 0.0, turnKd.get());
-      turnFeedback.enableContinuousInput(-Math.PI, Math.PI);
-    }
   }
 
   public void periodic() {
@@ -121,10 +123,37 @@ public class Module {
       turnRelativeOffset = inputs.turnAbsolutePosition.minus(inputs.turnPosition);
     }
 
+    // Apply new gains between control steps, keeping the controllers' state
+    ModuleGains gains = this.gains;
+    if (gains != appliedGains) {
+      if (onboardControl) {
+        // Only reconfigure the motor controllers when their gains changed
+        if (appliedGains == null || gains.drive().pidDiffers(appliedGains.drive())) {
+          io.configureDrivePID(gains.drive().kP(), gains.drive().kI(), gains.drive().kD());
+        }
+        if (appliedGains == null || gains.turn().pidDiffers(appliedGains.turn())) {
+          io.configureTurnPID(gains.turn().kP(), gains.turn().kI(), gains.turn().kD());
+        }
+      } else {
+        gains.drive().applyTo(driveFeedback);
+        gains.turn().applyTo(turnFeedback);
+      }
+      appliedGains = gains;
+    }
+
     // Run closed loop turn control
     if (angleSetpoint != null) {
-      io.setTurnVoltage(
-          turnFeedback.calculate(getAngle().getRadians(), angleSetpoint.getRadians()));
+      double turnErrorRad =
+          MathUtil.angleModulus(angleSetpoint.getRadians() - getAngle().getRadians());
+      if (onboardControl) {
+        // The motor controller only knows the relative position, so send the target along the
+        // shortest path from it
+        io.setTurnPosition(inputs.turnPosition.getRadians() + turnErrorRad);
+      } else {
+        io.setTurnVoltage(
+            turnFeedback.calculate(getAngle().getRadians(), angleSetpoint.getRadians()));
+      }
+      Logger.recordOutput(turnErrorKey, turnErrorRad);
 
       // Run closed loop drive control
       // Only allowed if closed loop turn control is running
@@ -134,26 +163,56 @@ public class Module {
         // When the error is 90°, the velocity setpoint should be 0. As the wheel turns
         // towards the setpoint, its velocity should increase. This is achieved by
         // taking the component of the velocity in the direction of the setpoint.
-        double adjustSpeedSetpoint = speedSetpoint * Math.cos(turnFeedback.getPositionError());
+        double adjustSpeedSetpoint = speedSetpoint * Math.cos(turnErrorRad);
 
         // Run drive controller
         double velocityRadPerSec = adjustSpeedSetpoint / WHEEL_RADIUS;
-        io.setDriveVoltage(
-            driveFeedforward.calculate(velocityRadPerSec)
-                + driveFeedback.calculate(inputs.driveVelocityRadPerSec, velocityRadPerSec));
+        double ffVolts = gains.drive().feedforward(velocityRadPerSec);
+        if (onboardControl) {
+          io.setDriveVelocity(velocityRadPerSec, ffVolts);
+        } else {
+          io.setDriveVoltage(
+              ffVolts + driveFeedback.calculate(inputs.driveVelocityRadPerSec, velocityRadPerSec));
+        }
+        Logger.recordOutput(
+            driveVelocityErrorKey, velocityRadPerSec - inputs.driveVelocityRadPerSec);
       }
     }
 
-    // Calculate positions for odometry
-    int sampleCount = inputs.odometryTimestamps.length; // All signals are sampled together
-    odometryPositions = new SwerveModulePosition[sampleCount];
+    // Calculate positions for odometry, reusing the arrays from previous cycles
+    // All signals are sampled together, the lengths only differ when replaying an older log or
+    // when a stalled drain dropped its oldest samples, so the signals are lined up by their newest
+    int sampleCount =
+        Math.min(
+            inputs.odometryTimestamps.length,
+            Math.min(
+                inputs.odometryDrivePositionsRad.length, inputs.odometryTurnPositionsRad.length));
+    if (sampleCount > odometryDistancesMeters.length) {
+      // Only possible when replaying a log with more samples per cycle
+      odometryTimestamps = new double[sampleCount];
+      odometryDistancesMeters = new double[sampleCount];
+      odometryAnglesRad = new double[sampleCount];
+    }
+    int timestampOffset = inputs.odometryTimestamps.length - sampleCount;
+    int driveOffset = inputs.odometryDrivePositionsRad.length - sampleCount;
+    int turnOffset = inputs.odometryTurnPositionsRad.length - sampleCount;
+    double turnOffsetRad = turnRelativeOffset != null ? turnRelativeOffset.getRadians() : 0.0;
     for (int i = 0; i < sampleCount; i++) {
-      double positionMeters = inputs.odometryDrivePositionsRad[i] * WHEEL_RADIUS;
-      Rotation2d angle =
-          inputs.odometryTurnPositions[i].plus(
-              turnRelativeOffset != null ? turnRelativeOffset : new Rotation2d());
-      odometryPositions[i] = new SwerveModulePosition(positionMeters, angle);
+      odometryTimestamps[i] = inputs.odometryTimestamps[timestampOffset + i];
+      odometryDistancesMeters[i] =
+          inputs.odometryDrivePositionsRad[driveOffset + i] * WHEEL_RADIUS;
+      odometryAnglesRad[i] =
+          MathUtil.angleModulus(inputs.odometryTurnPositionsRad[turnOffset + i] + turnOffsetRad);
     }
+    odometrySampleCount = sampleCount;
+  }
+
+  /**
+   * Sets the drive and turn gains. Both take effect together at the next control step, and the
+   * controllers are updated in place.
+   */
+  public void setGains(Gains drive, Gains turn) {
+    gains = new ModuleGains(drive, turn);
   }
 
   /** Runs the module with the specified setpoint state. Returns the optimized state. */
@@ -169,6 +228,48 @@ public class Module {
     return optimizedState;
   }
 
+  /**
+   * Runs the module from the fast drive loop, which calls this from its own thread. Only reads
+   * state that is safe to share with the main thread, and always closes the loops on the motor
+   * controllers.
+   *
+   * @param state The setpoint state.
+   * @param turnPositionRad The latest position of the relative turn encoder.
+   * @return The optimized state, or null if the module angle is not known yet.
+   */
+  SwerveModuleState runFastSetpoint(SwerveModuleState state, double turnPositionRad) {
+    Rotation2d turnRelativeOffset = this.turnRelativeOffset;
+    if (turnRelativeOffset == null || Double.isNaN(turnPositionRad)) {
+      return null;
+    }
+    double angleRad = turnPositionRad + turnRelativeOffset.getRadians();
+    var optimizedState = SwerveModuleState.optimize(state, new Rotation2d(angleRad));
+
+    // Same as the main loop control, see "periodic"
+    double turnErrorRad = MathUtil.angleModulus(optimizedState.angle.getRadians() - angleRad);
+    io.setTurnPosition(turnPositionRad + turnErrorRad);
+    double velocityRadPerSec =
+        optimizedState.speedMetersPerSecond * Math.cos(turnErrorRad) / WHEEL_RADIUS;
+    io.setDriveVelocity(velocityRadPerSec, gains.drive().feedforward(velocityRadPerSec));
+    return optimizedState;
+  }
+
+  /** Stops the closed loop control in "periodic", leaving the outputs to the fast drive loop. */
+  void releaseControl() {
+    angleSetpoint = null;
+    speedSetpoint = null;
+  }
+
+  /** Returns the latest relative turn position sampled by the odometry thread. Thread safe. */
+  double getLatestTurnPositionRad() {
+    return io.getLatestTurnPositionRad();
+  }
+
+  /** Returns whether the loops are closed on the motor controllers. */
+  public boolean usesOnboardControl() {
+    return onboardControl;
+  }
+
   /** Runs the module with the specified voltage while controlling to zero degrees. */
   public void runCharacterization(double volts) {
     // Closed loop turn control
@@ -189,6 +290,11 @@ public class Module {
     speedSetpoint = null;
   }
 
+  /** Sets the update frequency of the odometry signals. */
+  public void setOdometryFrequency(double frequencyHz) {
+    io.setOdometryFrequency(frequencyHz);
+  }
+
   /** Sets whether brake mode is enabled. */
   public void setBrakeMode(boolean enabled) {
     io.setDriveBrakeMode(enabled);
@@ -224,18 +330,58 @@ public class Module {
     return new SwerveModuleState(getVelocityMetersPerSec(), getAngle());
   }
 
-  /** Returns the module positions received this cycle. */
-  public SwerveModulePosition[] getOdometryPositions() {
-    return odometryPositions;
+  /**
+   * Returns the drive positions in meters received this cycle. The array is reused between cycles,
+   * and only the first {@link #getOdometrySampleCount()} entries are valid.
+   */
+  public double[] getOdometryDistancesMeters() {
+    return odometryDistancesMeters;
   }
 
-  /** Returns the timestamps of the samples received this cycle. */
+  /**
+   * Returns the turn angles in radians received this cycle. The array is reused between cycles,
+   * and only the first {@link #getOdometrySampleCount()} entries are valid.
+   */
+  public double[] getOdometryAnglesRad() {
+    return odometryAnglesRad;
+  }
+
+  /** Returns the number of odometry samples received this cycle. */
+  public int getOdometrySampleCount() {
+    return odometrySampleCount;
+  }
+
+  /**
+   * Returns the timestamps of the samples received this cycle. The array is reused between cycles,
+   * and only the first {@link #getOdometrySampleCount()} entries are valid.
+   */
   public double[] getOdometryTimestamps() {
-    return inputs.odometryTimestamps;
+    return odometryTimestamps;
   }
 
   /** Returns the drive velocity in radians/sec. */
   public double getCharacterizationVelocity() {
     return inputs.driveVelocityRadPerSec;
   }
+
+  private record ModuleGains(Gains drive, Gains turn) {}
+
+  /**
+   * Inputs which also replay logs from before the odometry turn positions were logged as radians in
+   * a double array, when they were logged as a Rotation2d struct array under
+   * "OdometryTurnPositions". The angles are read from the structs, no unit conversion is needed.
+   */
+  private static class ReplayCompatibleInputs extends ModuleIOInputsAutoLogged {
+    @Override
+    public void fromLog(LogTable table) {
+      super.fromLog(table);
+      if (table.get("OdometryTurnPositionsRad") == null) {
+        Rotation2d[] positions = table.get("OdometryTurnPositions", new Rotation2d[] {});
+        odometryTurnPositionsRad = new double[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+          odometryTurnPositionsRad[i] = positions[i].getRadians();
+        }
+      }
+    }
+  }
 }
@@ -32,7 +32,7 @@ public interface ModuleIO {
 
     public double[] odometryTimestamps = new double[] {};
     public double[] odometryDrivePositionsRad = new double[] {};
-    public Rotation2d[] odometryTurnPositions = new Rotation2d[] {};
+    public double[] odometryTurnPositionsRad = new double[] {};
   }
 
   /** Updates the set of loggable inputs. */
@@ -44,9 +44,45 @@ public interface ModuleIO {
   /** Run the turn motor at the specified voltage. */
   public default void setTurnVoltage(double volts) {}
 
+  /** Returns whether the drive and turn loops can be closed on the motor controllers. */
+  public default boolean supportsOnboardControl() {
+    return false;
+  }
+
+  /**
+   * Run the drive motor at the specified velocity, closing the loop on the motor controller.
+   *
+   * @param velocityRadPerSec The wheel velocity.
+   * @param ffVolts The feedforward added to the controller output.
+   */
+  public default void setDriveVelocity(double velocityRadPerSec, double ffVolts) {}
+
+  /**
+   * Run the turn motor to the specified position of the relative encoder, closing the loop on the
+   * motor controller.
+   */
+  public default void setTurnPosition(double positionRad) {}
+
+  /**
+   * Returns the latest relative turn position sampled by the odometry thread in radians, or NaN if
+   * there is none. Called from the fast drive loop, so it must be thread safe.
+   */
+  public default double getLatestTurnPositionRad() {
+    return Double.NaN;
+  }
+
+  /** Set the gains of the onboard drive controller, in volts per radian/sec of the wheel. */
+  public default void configureDrivePID(double kP, double kI, double kD) {}
+
+  /** Set the gains of the onboard turn controller, in volts per radian of the module. */
+  public default void configureTurnPID(double kP, double kI, double kD) {}
+
   /** Enable or disable brake mode on the drive motor. */
   public default void setDriveBrakeMode(boolean enable) {}
 
   /** Enable or disable brake mode on the turn motor. */
   public default void setTurnBrakeMode(boolean enable) {}
+
+  /** Set the update frequency of the odometry signals. */
+  public default void setOdometryFrequency(double frequencyHz) {}
 }
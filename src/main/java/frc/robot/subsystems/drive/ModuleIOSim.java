@@ -14,6 +14,7 @@
 package frc.robot.subsystems.drive;
 
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.wpilibj.Timer;
@@ -25,9 +26,15 @@ import edu.wpi.first.wpilibj.simulation.DCMotorSim;
  * <p>Uses two flywheel sims for the drive and turn motors, with the absolute position initialized
  * to a random value. The flywheel sims are not physically accurate, but provide a decent
  * approximation for the behavior of the module.
+ *
+ * <p>Closing the loops on the motor controllers is simulated by running the controllers at 1 kHz
+ * between the 20 ms cycles of the robot code, which lets both control modes be compared in sim.
  */
 public class ModuleIOSim implements ModuleIO {
   private static final double LOOP_PERIOD_SECS = 0.02;
+  private static final double ONBOARD_PERIOD_SECS = 0.001;
+  private static final int ONBOARD_STEPS_PER_LOOP =
+      (int) Math.round(LOOP_PERIOD_SECS / ONBOARD_PERIOD_SECS);
 
   private DCMotorSim driveSim = new DCMotorSim(DCMotor.getNEO(1), 6.75, 0.025);
   private DCMotorSim turnSim = new DCMotorSim(DCMotor.getNEO(1), 150.0 / 7.0, 0.004);
@@ -36,10 +43,43 @@ public class ModuleIOSim implements ModuleIO {
   private double driveAppliedVolts = 0.0;
   private double turnAppliedVolts = 0.0;
 
+  private final boolean onboardControl;
+  private final PIDController driveController =
+      new PIDController(0.0, 0.0, 0.0, ONBOARD_PERIOD_SECS);
+  private final PIDController turnController =
+      new PIDController(0.0, 0.0, 0.0, ONBOARD_PERIOD_SECS);
+  private boolean driveClosedLoop = false;
+  private double driveVelocitySetpointRadPerSec = 0.0;
+  private double driveFFVolts = 0.0;
+  private boolean turnClosedLoop = false;
+  private double turnPositionSetpointRad = 0.0;
+
+  /** Creates a module sim with the loops closed on the RIO. */
+  public ModuleIOSim() {
+    this(false);
+  }
+
+  /**
+   * Creates a module sim.
+   *
+   * @param onboardControl Whether to simulate the loops closed on the motor controllers.
+   */
+  public ModuleIOSim(boolean onboardControl) {
+    this.onboardControl = onboardControl;
+  }
+
   @Override
   public void updateInputs(ModuleIOInputs inputs) {
-    driveSim.update(LOOP_PERIOD_SECS);
-    turnSim.update(LOOP_PERIOD_SECS);
+    if (onboardControl) {
+      for (int i = 0; i < ONBOARD_STEPS_PER_LOOP; i++) {
+        runOnboardControl();
+        driveSim.update(ONBOARD_PERIOD_SECS);
+        turnSim.update(ONBOARD_PERIOD_SECS);
+      }
+    } else {
+      driveSim.update(LOOP_PERIOD_SECS);
+      turnSim.update(LOOP_PERIOD_SECS);
+    }
 
     inputs.drivePositionRad = driveSim.getAngularPositionRad();
     inputs.driveVelocityRadPerSec = driveSim.getAngularVelocityRadPerSec();
@@ -55,17 +95,78 @@ public class ModuleIOSim implements ModuleIO {
 
     inputs.odometryTimestamps = new double[] {Timer.getFPGATimestamp()};
     inputs.odometryDrivePositionsRad = new double[] {inputs.drivePositionRad};
-    inputs.odometryTurnPositions = new Rotation2d[] {inputs.turnPosition};
+    inputs.odometryTurnPositionsRad = new double[] {inputs.turnPosition.getRadians()};
   }
 
   @Override
   public void setDriveVoltage(double volts) {
-    driveAppliedVolts = MathUtil.clamp(volts, -12.0, 12.0);
-    driveSim.setInputVoltage(driveAppliedVolts);
+    driveClosedLoop = false;
+    applyDriveVoltage(volts);
   }
 
   @Override
   public void setTurnVoltage(double volts) {
+    turnClosedLoop = false;
+    applyTurnVoltage(volts);
+  }
+
+  @Override
+  public boolean supportsOnboardControl() {
+    return onboardControl;
+  }
+
+  @Override
+  public void setDriveVelocity(double velocityRadPerSec, double ffVolts) {
+    driveClosedLoop = true;
+    driveVelocitySetpointRadPerSec = velocityRadPerSec;
+    driveFFVolts = ffVolts;
+  }
+
+  @Override
+  public void setTurnPosition(double positionRad) {
+    turnClosedLoop = true;
+    turnPositionSetpointRad = positionRad;
+  }
+
+  @Override
+  public void configureDrivePID(double kP, double kI, double kD) {
+    driveController.setPID(kP, kI, kD);
+  }
+
+  @Override
+  public void configureTurnPID(double kP, double kI, double kD) {
+    turnController.setPID(kP, kI, kD);
+  }
+
+  /** Returns the true position of the drive motor sim in radians. */
+  double getTrueDrivePositionRad() {
+    return driveSim.getAngularPositionRad();
+  }
+
+  /** Returns the true angle of the module relative to the robot in radians. */
+  double getTrueAngleRad() {
+    return turnSim.getAngularPositionRad() + turnAbsoluteInitPosition.getRadians();
+  }
+
+  private void runOnboardControl() {
+    if (driveClosedLoop) {
+      applyDriveVoltage(
+          driveFFVolts
+              + driveController.calculate(
+                  driveSim.getAngularVelocityRadPerSec(), driveVelocitySetpointRadPerSec));
+    }
+    if (turnClosedLoop) {
+      applyTurnVoltage(
+          turnController.calculate(turnSim.getAngularPositionRad(), turnPositionSetpointRad));
+    }
+  }
+
+  private void applyDriveVoltage(double volts) {
+    driveAppliedVolts = MathUtil.clamp(volts, -12.0, 12.0);
+    driveSim.setInputVoltage(driveAppliedVolts);
+  }
+
+  private void applyTurnVoltage(double volts) {
     turnAppliedVolts = MathUtil.clamp(volts, -12.0, 12.0);
     turnSim.setInputVoltage(turnAppliedVolts);
   }
@@ -13,18 +13,25 @@
 
 package frc.robot.subsystems.drive;
 
-import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.hardware.CANcoder;
+import com.revrobotics.CANSparkBase.ControlType;
 import com.revrobotics.CANSparkBase.IdleMode;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkPIDController;
+import com.revrobotics.SparkPIDController.ArbFFUnits;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
-import java.util.Queue;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceConfigurator.ConfiguredDevice;
+import frc.robot.util.PhoenixSignals;
+import frc.robot.util.SparkMaxConfiguration;
+import frc.robot.util.StatusFramePlan;
+import frc.robot.util.StatusFramePlan.SparkMaxSignal;
 
 /**
  * Module IO implementation for SparkMax drive motor controller, SparkMax turn motor controller (NEO
@@ -42,18 +49,24 @@ public class ModuleIOSparkMaxCancoder implements ModuleIO {
   // Gear ratios for SDS MK4i L2, adjust as necessary
   private static final double DRIVE_GEAR_RATIO = 6.75;
   private static final double TURN_GEAR_RATIO = 150.0 / 7.0;
+  private static final double NOMINAL_VOLTAGE = 12.0; // Voltage compensation
+  private static final double CONTROL_PERIOD_SECS = 0.001; // Onboard PID loop
 
   private final CANSparkMax driveSparkMax;
   private final CANSparkMax turnSparkMax;
+  private final ConfiguredDevice driveConfiguration;
+  private final ConfiguredDevice turnConfiguration;
   private final CANcoder cancoder;
 
   private final RelativeEncoder driveEncoder;
   private final RelativeEncoder turnRelativeEncoder;
+  private final SparkPIDController drivePID;
+  private final SparkPIDController turnPID;
 
-  private final Queue<Double> timestampQueue;
-  private final Queue<Double> drivePositionQueue;
+  private final OdometryRingBuffer timestampQueue;
+  private final OdometryRingBuffer drivePositionQueue;
 
-  private final Queue<Double> turnPositionQueue;
+  private final OdometryRingBuffer turnPositionQueue;
   private final StatusSignal<Double> turnAbsolutePosition;
 
   private final boolean isTurnMotorInverted = true;
@@ -89,55 +102,59 @@ public class ModuleIOSparkMaxCancoder implements ModuleIO {
         throw new RuntimeException("Invalid module index");
     }
 
-    driveSparkMax.restoreFactoryDefaults();
-    turnSparkMax.restoreFactoryDefaults();
-
-    driveSparkMax.setCANTimeout(250);
-    turnSparkMax.setCANTimeout(250);
-
-    CANcoderConfiguration cancoderConfig = new CANcoderConfiguration();
-    cancoder.getConfigurator().apply(cancoderConfig);
+    DeviceConfigurator.cancoder(cancoder, new CANcoderConfiguration());
     turnAbsolutePosition = cancoder.getAbsolutePosition();
-    BaseStatusSignal.setUpdateFrequencyForAll(50.0, turnAbsolutePosition);
+    StatusFramePlan.phoenix(cancoder).signals(50.0, turnAbsolutePosition);
+    PhoenixSignals.register(cancoder, turnAbsolutePosition);
 
     driveEncoder = driveSparkMax.getEncoder();
     turnRelativeEncoder = turnSparkMax.getEncoder();
+    drivePID = driveSparkMax.getPIDController();
+    turnPID = turnSparkMax.getPIDController();
 
-    turnSparkMax.setInverted(isTurnMotorInverted);
-    driveSparkMax.setSmartCurrentLimit(40);
-    turnSparkMax.setSmartCurrentLimit(30);
-    driveSparkMax.enableVoltageCompensation(12.0);
-    turnSparkMax.enableVoltageCompensation(12.0);
+    var driveConfig = new SparkMaxConfiguration();
+    driveConfig.idleMode = IdleMode.kBrake; // Module enables brake mode at startup
+    driveConfig.smartCurrentLimitAmps = 40;
+    driveConfig.voltageCompensationVolts = 12.0;
+    driveConfig.encoderMeasurementPeriodMs = 10;
+    driveConfig.encoderAverageDepth = 2;
+    driveConfiguration = DeviceConfigurator.sparkMax(driveSparkMax, driveConfig);
+    driveConfiguration.afterConfiguration(() -> driveEncoder.setPosition(0.0));
 
-    driveEncoder.setPosition(0.0);
-    driveEncoder.setMeasurementPeriod(10);
-    driveEncoder.setAverageDepth(2);
+    var turnConfig = new SparkMaxConfiguration();
+    turnConfig.inverted = isTurnMotorInverted;
+    turnConfig.idleMode = IdleMode.kBrake;
+    turnConfig.smartCurrentLimitAmps = 30;
+    turnConfig.voltageCompensationVolts = 12.0;
+    turnConfig.encoderMeasurementPeriodMs = 10;
+    turnConfig.encoderAverageDepth = 2;
+    turnConfiguration = DeviceConfigurator.sparkMax(turnSparkMax, turnConfig);
+    turnConfiguration.afterConfiguration(() -> turnRelativeEncoder.setPosition(0.0));
 
-    turnRelativeEncoder.setPosition(0.0);
-    turnRelativeEncoder.setMeasurementPeriod(10);
-    turnRelativeEncoder.setAverageDepth(2);
+    // Only the drive velocity is used for control, the other inputs are only logged
+    StatusFramePlan.sparkMax(driveSparkMax)
+        .signals(50.0, SparkMaxSignal.VELOCITY)
+        .lowPrioritySignals(
+            50.0, SparkMaxSignal.APPLIED_OUTPUT, SparkMaxSignal.BUS_VOLTAGE, SparkMaxSignal.CURRENT)
+        .odometrySignals(Module.ODOMETRY_FREQUENCY, SparkMaxSignal.POSITION);
+    StatusFramePlan.sparkMax(turnSparkMax)
+        .lowPrioritySignals(
+            50.0,
+            SparkMaxSignal.APPLIED_OUTPUT,
+            SparkMaxSignal.VELOCITY,
+            SparkMaxSignal.BUS_VOLTAGE,
+            SparkMaxSignal.CURRENT)
+        .odometrySignals(Module.ODOMETRY_FREQUENCY, SparkMaxSignal.POSITION);
 
-    driveSparkMax.setCANTimeout(0);
-    turnSparkMax.setCANTimeout(0);
-
-    driveSparkMax.setPeriodicFramePeriod(
-        PeriodicFrame.kStatus2, (int) (1000.0 / Module.ODOMETRY_FREQUENCY));
-    turnSparkMax.setPeriodicFramePeriod(
-        PeriodicFrame.kStatus2, (int) (1000.0 / Module.ODOMETRY_FREQUENCY));
     timestampQueue = SparkMaxOdometryThread.getInstance().makeTimestampQueue();
     drivePositionQueue =
         SparkMaxOdometryThread.getInstance().registerSignal(driveEncoder::getPosition);
     turnPositionQueue =
         SparkMaxOdometryThread.getInstance().registerSignal(turnRelativeEncoder::getPosition);
-
-    driveSparkMax.burnFlash();
-    turnSparkMax.burnFlash();
   }
 
   @Override
   public void updateInputs(ModuleIOInputs inputs) {
-    BaseStatusSignal.refreshAll(turnAbsolutePosition);
-
     inputs.drivePositionRad =
         Units.rotationsToRadians(driveEncoder.getPosition()) / DRIVE_GEAR_RATIO;
     inputs.driveVelocityRadPerSec =
@@ -156,19 +173,11 @@ public class ModuleIOSparkMaxCancoder implements ModuleIO {
     inputs.turnAppliedVolts = turnSparkMax.getAppliedOutput() * turnSparkMax.getBusVoltage();
     inputs.turnCurrentAmps = new double[] {turnSparkMax.getOutputCurrent()};
 
-    inputs.odometryTimestamps =
-        timestampQueue.stream().mapToDouble((Double value) -> value).toArray();
+    inputs.odometryTimestamps = timestampQueue.drain();
     inputs.odometryDrivePositionsRad =
-        drivePositionQueue.stream()
-            .mapToDouble((Double value) -> Units.rotationsToRadians(value) / DRIVE_GEAR_RATIO)
-            .toArray();
-    inputs.odometryTurnPositions =
-        turnPositionQueue.stream()
-            .map((Double value) -> Rotation2d.fromRotations(value / TURN_GEAR_RATIO))
-            .toArray(Rotation2d[]::new);
-    timestampQueue.clear();
-    drivePositionQueue.clear();
-    turnPositionQueue.clear();
+        drivePositionQueue.drain(Units.rotationsToRadians(1.0) / DRIVE_GEAR_RATIO);
+    inputs.odometryTurnPositionsRad =
+        turnPositionQueue.drain(Units.rotationsToRadians(1.0) / TURN_GEAR_RATIO);
   }
 
   @Override
@@ -181,13 +190,74 @@ public class ModuleIOSparkMaxCancoder implements ModuleIO {
     turnSparkMax.setVoltage(volts);
   }
 
+  @Override
+  public boolean supportsOnboardControl() {
+    return true;
+  }
+
+  @Override
+  public void setDriveVelocity(double velocityRadPerSec, double ffVolts) {
+    drivePID.setReference(
+        Units.radiansPerSecondToRotationsPerMinute(velocityRadPerSec) * DRIVE_GEAR_RATIO,
+        ControlType.kVelocity,
+        0,
+        ffVolts,
+        ArbFFUnits.kVoltage);
+  }
+
+  @Override
+  public void setTurnPosition(double positionRad) {
+    turnPID.setReference(
+        Units.radiansToRotations(positionRad) * TURN_GEAR_RATIO, ControlType.kPosition);
+  }
+
+  @Override
+  public double getLatestTurnPositionRad() {
+    return turnPositionQueue.latest() * Units.rotationsToRadians(1.0) / TURN_GEAR_RATIO;
+  }
+
+  @Override
+  public void configureDrivePID(double kP, double kI, double kD) {
+    double radPerSecPerRPM = Units.rotationsPerMinuteToRadiansPerSecond(1.0) / DRIVE_GEAR_RATIO;
+    driveConfiguration.afterConfiguration(
+        () -> configurePID(drivePID, kP, kI, kD, radPerSecPerRPM));
+  }
+
+  @Override
+  public void configureTurnPID(double kP, double kI, double kD) {
+    double radPerRotation = Units.rotationsToRadians(1.0) / TURN_GEAR_RATIO;
+    turnConfiguration.afterConfiguration(() -> configurePID(turnPID, kP, kI, kD, radPerRotation));
+  }
+
+  /**
+   * Sets gains given in volts per radian (or radian/sec) of the mechanism. The SparkMax uses duty
+   * cycle per motor rotation (or RPM), and accumulates the integral and derivative every 1 ms.
+   */
+  private static void configurePID(
+      SparkPIDController pid, double kP, double kI, double kD, double radiansPerUnit) {
+    double scale = radiansPerUnit / NOMINAL_VOLTAGE;
+    pid.setP(kP * scale, 0);
+    pid.setI(kI * scale * CONTROL_PERIOD_SECS, 0);
+    pid.setD(kD * scale / CONTROL_PERIOD_SECS, 0);
+    pid.setFF(0.0, 0);
+  }
+
   @Override
   public void setDriveBrakeMode(boolean enable) {
-    driveSparkMax.setIdleMode(enable ? IdleMode.kBrake : IdleMode.kCoast);
+    driveConfiguration.afterConfiguration(
+        () -> driveSparkMax.setIdleMode(enable ? IdleMode.kBrake : IdleMode.kCoast));
   }
 
   @Override
   public void setTurnBrakeMode(boolean enable) {
-    turnSparkMax.setIdleMode(enable ? IdleMode.kBrake : IdleMode.kCoast);
+    turnConfiguration.afterConfiguration(
+        () -> turnSparkMax.setIdleMode(enable ? IdleMode.kBrake : IdleMode.kCoast));
+  }
+
+  @Override
+  public void setOdometryFrequency(double frequencyHz) {
+    int periodMs = (int) Math.round(1000.0 / frequencyHz);
+    driveSparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus2, periodMs);
+    turnSparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus2, periodMs);
   }
 }
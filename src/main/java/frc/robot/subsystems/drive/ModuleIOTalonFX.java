@@ -13,11 +13,13 @@
 
 package frc.robot.subsystems.drive;
 
-import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.configs.MotorOutputConfigs;
+import com.ctre.phoenix6.configs.Slot0Configs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.controls.PositionVoltage;
+import com.ctre.phoenix6.controls.VelocityVoltage;
 import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.hardware.CANcoder;
 import com.ctre.phoenix6.hardware.TalonFX;
@@ -25,7 +27,10 @@ import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
-import java.util.Queue;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceConfigurator.ConfiguredDevice;
+import frc.robot.util.PhoenixSignals;
+import frc.robot.util.StatusFramePlan;
 
 /**
  * Module IO implementation for Talon FX drive motor controller, Talon FX turn motor controller, and
@@ -43,18 +48,23 @@ public class ModuleIOTalonFX implements ModuleIO {
   private final TalonFX driveTalon;
   private final TalonFX turnTalon;
   private final CANcoder cancoder;
+  private final ConfiguredDevice driveConfiguration;
+  private final ConfiguredDevice turnConfiguration;
 
-  private final Queue<Double> timestampQueue;
+  private final VelocityVoltage driveVelocityRequest = new VelocityVoltage(0.0);
+  private final PositionVoltage turnPositionRequest = new PositionVoltage(0.0);
+
+  private final OdometryRingBuffer timestampQueue;
 
   private final StatusSignal<Double> drivePosition;
-  private final Queue<Double> drivePositionQueue;
+  private final OdometryRingBuffer drivePositionQueue;
   private final StatusSignal<Double> driveVelocity;
   private final StatusSignal<Double> driveAppliedVolts;
   private final StatusSignal<Double> driveCurrent;
 
   private final StatusSignal<Double> turnAbsolutePosition;
   private final StatusSignal<Double> turnPosition;
-  private final Queue<Double> turnPositionQueue;
+  private final OdometryRingBuffer turnPositionQueue;
   private final StatusSignal<Double> turnVelocity;
   private final StatusSignal<Double> turnAppliedVolts;
   private final StatusSignal<Double> turnCurrent;
@@ -99,16 +109,21 @@ public class ModuleIOTalonFX implements ModuleIO {
     var driveConfig = new TalonFXConfiguration();
     driveConfig.CurrentLimits.StatorCurrentLimit = 40.0;
     driveConfig.CurrentLimits.StatorCurrentLimitEnable = true;
-    driveTalon.getConfigurator().apply(driveConfig);
-    setDriveBrakeMode(true);
+    driveConfig.MotorOutput.Inverted = InvertedValue.CounterClockwise_Positive;
+    driveConfig.MotorOutput.NeutralMode = NeutralModeValue.Brake;
+    driveConfiguration = DeviceConfigurator.talonFX(driveTalon, driveConfig);
 
     var turnConfig = new TalonFXConfiguration();
     turnConfig.CurrentLimits.StatorCurrentLimit = 30.0;
     turnConfig.CurrentLimits.StatorCurrentLimitEnable = true;
-    turnTalon.getConfigurator().apply(turnConfig);
-    setTurnBrakeMode(true);
+    turnConfig.MotorOutput.Inverted =
+        isTurnMotorInverted
+            ? InvertedValue.Clockwise_Positive
+            : InvertedValue.CounterClockwise_Positive;
+    turnConfig.MotorOutput.NeutralMode = NeutralModeValue.Brake;
+    turnConfiguration = DeviceConfigurator.talonFX(turnTalon, turnConfig);
 
-    cancoder.getConfigurator().apply(new CANcoderConfiguration());
+    DeviceConfigurator.cancoder(cancoder, new CANcoderConfiguration());
 
     timestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
 
@@ -127,34 +142,23 @@ public class ModuleIOTalonFX implements ModuleIO {
     turnAppliedVolts = turnTalon.getMotorVoltage();
     turnCurrent = turnTalon.getStatorCurrent();
 
-    BaseStatusSignal.setUpdateFrequencyForAll(
-        Module.ODOMETRY_FREQUENCY, drivePosition, turnPosition);
-    BaseStatusSignal.setUpdateFrequencyForAll(
-        50.0,
-        driveVelocity,
-        driveAppliedVolts,
-        driveCurrent,
-        turnAbsolutePosition,
-        turnVelocity,
-        turnAppliedVolts,
-        turnCurrent);
-    driveTalon.optimizeBusUtilization();
-    turnTalon.optimizeBusUtilization();
+    // Only the drive velocity is used for control, the other inputs are only logged
+    StatusFramePlan.phoenix(driveTalon)
+        .signals(50.0, driveVelocity)
+        .lowPrioritySignals(50.0, driveAppliedVolts, driveCurrent)
+        .odometrySignals(Module.ODOMETRY_FREQUENCY, drivePosition);
+    StatusFramePlan.phoenix(turnTalon)
+        .lowPrioritySignals(50.0, turnVelocity, turnAppliedVolts, turnCurrent)
+        .odometrySignals(Module.ODOMETRY_FREQUENCY, turnPosition);
+    StatusFramePlan.phoenix(cancoder).signals(50.0, turnAbsolutePosition);
+    PhoenixSignals.register(
+        driveTalon, drivePosition, driveVelocity, driveAppliedVolts, driveCurrent);
+    PhoenixSignals.register(turnTalon, turnPosition, turnVelocity, turnAppliedVolts, turnCurrent);
+    PhoenixSignals.register(cancoder, turnAbsolutePosition);
   }
 
   @Override
   public void updateInputs(ModuleIOInputs inputs) {
-    BaseStatusSignal.refreshAll(
-        drivePosition,
-        driveVelocity,
-        driveAppliedVolts,
-        driveCurrent,
-        turnAbsolutePosition,
-        turnPosition,
-        turnVelocity,
-        turnAppliedVolts,
-        turnCurrent);
-
     inputs.drivePositionRad =
         Units.rotationsToRadians(drivePosition.getValueAsDouble()) / DRIVE_GEAR_RATIO;
     inputs.driveVelocityRadPerSec =
@@ -172,19 +176,11 @@ public class ModuleIOTalonFX implements ModuleIO {
     inputs.turnAppliedVolts = turnAppliedVolts.getValueAsDouble();
     inputs.turnCurrentAmps = new double[] {turnCurrent.getValueAsDouble()};
 
-    inputs.odometryTimestamps =
-        timestampQueue.stream().mapToDouble((Double value) -> value).toArray();
+    inputs.odometryTimestamps = timestampQueue.drain();
     inputs.odometryDrivePositionsRad =
-        drivePositionQueue.stream()
-            .mapToDouble((Double value) -> Units.rotationsToRadians(value) / DRIVE_GEAR_RATIO)
-            .toArray();
-    inputs.odometryTurnPositions =
-        turnPositionQueue.stream()
-            .map((Double value) -> Rotation2d.fromRotations(value / TURN_GEAR_RATIO))
-            .toArray(Rotation2d[]::new);
-    timestampQueue.clear();
-    drivePositionQueue.clear();
-    turnPositionQueue.clear();
+        drivePositionQueue.drain(Units.rotationsToRadians(1.0) / DRIVE_GEAR_RATIO);
+    inputs.odometryTurnPositionsRad =
+        turnPositionQueue.drain(Units.rotationsToRadians(1.0) / TURN_GEAR_RATIO);
   }
 
   @Override
@@ -197,12 +193,59 @@ public class ModuleIOTalonFX implements ModuleIO {
     turnTalon.setControl(new VoltageOut(volts));
   }
 
+  @Override
+  public boolean supportsOnboardControl() {
+    return true;
+  }
+
+  @Override
+  public void setDriveVelocity(double velocityRadPerSec, double ffVolts) {
+    driveTalon.setControl(
+        driveVelocityRequest
+            .withVelocity(Units.radiansToRotations(velocityRadPerSec) * DRIVE_GEAR_RATIO)
+            .withFeedForward(ffVolts));
+  }
+
+  @Override
+  public void setTurnPosition(double positionRad) {
+    turnTalon.setControl(
+        turnPositionRequest.withPosition(Units.radiansToRotations(positionRad) * TURN_GEAR_RATIO));
+  }
+
+  @Override
+  public double getLatestTurnPositionRad() {
+    return turnPositionQueue.latest() * Units.rotationsToRadians(1.0) / TURN_GEAR_RATIO;
+  }
+
+  @Override
+  public void configureDrivePID(double kP, double kI, double kD) {
+    // The Talon uses volts per rotor rotation/sec
+    var config = makeSlot0Configs(kP, kI, kD, Units.rotationsToRadians(1.0) / DRIVE_GEAR_RATIO);
+    driveConfiguration.afterConfiguration(() -> driveTalon.getConfigurator().apply(config, 0.0));
+  }
+
+  @Override
+  public void configureTurnPID(double kP, double kI, double kD) {
+    // The Talon uses volts per rotor rotation
+    var config = makeSlot0Configs(kP, kI, kD, Units.rotationsToRadians(1.0) / TURN_GEAR_RATIO);
+    turnConfiguration.afterConfiguration(() -> turnTalon.getConfigurator().apply(config, 0.0));
+  }
+
+  private static Slot0Configs makeSlot0Configs(
+      double kP, double kI, double kD, double radiansPerRotation) {
+    var config = new Slot0Configs();
+    config.kP = kP * radiansPerRotation;
+    config.kI = kI * radiansPerRotation;
+    config.kD = kD * radiansPerRotation;
+    return config;
+  }
+
   @Override
   public void setDriveBrakeMode(boolean enable) {
     var config = new MotorOutputConfigs();
     config.Inverted = InvertedValue.CounterClockwise_Positive;
     config.NeutralMode = enable ? NeutralModeValue.Brake : NeutralModeValue.Coast;
-    driveTalon.getConfigurator().apply(config);
+    driveConfiguration.afterConfiguration(() -> driveTalon.getConfigurator().apply(config, 0.0));
   }
 
   @Override
@@ -213,6 +256,13 @@ public class ModuleIOTalonFX implements ModuleIO {
             ? InvertedValue.Clockwise_Positive
             : InvertedValue.CounterClockwise_Positive;
     config.NeutralMode = enable ? NeutralModeValue.Brake : NeutralModeValue.Coast;
-    turnTalon.getConfigurator().apply(config);
+    turnConfiguration.afterConfiguration(() -> turnTalon.getConfigurator().apply(config, 0.0));
+  }
+
+  @Override
+  public void setOdometryFrequency(double frequencyHz) {
+    // Don't wait for confirmation, this runs in the main loop
+    drivePosition.setUpdateFrequency(frequencyHz, 0.0);
+    turnPosition.setUpdateFrequency(frequencyHz, 0.0);
   }
 }
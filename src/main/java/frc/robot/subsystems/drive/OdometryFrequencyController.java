@@ -0,0 +1,128 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.util.StatusFramePlan;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.inputs.LoggableInputs;
+
+/**
+ * Selects the odometry sampling frequency at runtime. The frequency steps up while the CAN bus has
+ * spare capacity and samples arrive on time, and steps down as soon as the bus is congested or the
+ * sample timing becomes irregular. Every step down doubles the time required before the next step
+ * up, so the frequency settles instead of oscillating around the bus limit.
+ *
+ * <p>The frequency never exceeds the maximum allowed by the status frame plan's utilization budget.
+ * Decisions only depend on the logged odometry timestamps, the CAN bus utilization and the maximum
+ * frequency, which are logged as inputs, so replays select the same frequencies as the real robot.
+ */
+public class OdometryFrequencyController {
+  // Every frequency has a whole millisecond period, as required for SparkMax status frames
+  private static final double[] FREQUENCIES = {100.0, 125.0, 200.0, 250.0, 500.0};
+  private static final double INCREASE_MAX_BUS_UTILIZATION = 0.5;
+  private static final double DECREASE_MIN_BUS_UTILIZATION = 0.8;
+  private static final double MAX_JITTER_PERIODS = 0.5;
+  private static final int DECREASE_CYCLES = 10;
+  private static final int MIN_INCREASE_CYCLES = 250;
+  private static final int MAX_INCREASE_CYCLES = 6000;
+
+  private int frequencyIndex;
+  private int overloadedCycles = 0;
+  private int idleCycles = 0;
+  private int increaseCycles = MIN_INCREASE_CYCLES;
+  private double lastTimestamp = Double.NaN;
+  private double busUtilization = 0.0;
+  private double maxFrequency = Double.POSITIVE_INFINITY;
+
+  private final LoggableInputs inputs =
+      new LoggableInputs() {
+        public void toLog(LogTable table) {
+          table.put("CANBusUtilization", busUtilization);
+          table.put("MaxFrequencyHz", maxFrequency);
+        }
+
+        public void fromLog(LogTable table) {
+          busUtilization = table.get("CANBusUtilization", busUtilization);
+          maxFrequency = table.get("MaxFrequencyHz", maxFrequency);
+        }
+      };
+
+  /** Creates a controller starting at the supported frequency closest to the one specified. */
+  public OdometryFrequencyController(double initialFrequency) {
+    frequencyIndex = 0;
+    for (int i = 1; i < FREQUENCIES.length; i++) {
+      if (Math.abs(FREQUENCIES[i] - initialFrequency)
+          < Math.abs(FREQUENCIES[frequencyIndex] - initialFrequency)) {
+        frequencyIndex = i;
+      }
+    }
+  }
+
+  /** Returns the current odometry frequency in Hz. */
+  public double getFrequency() {
+    return FREQUENCIES[frequencyIndex];
+  }
+
+  /**
+   * Measures the timing of this cycle's odometry samples and updates the frequency.
+   *
+   * @param timestamps The timestamps of the samples received this cycle, in seconds.
+   * @param sampleCount The number of valid timestamps.
+   * @return Whether the frequency changed.
+   */
+  public boolean update(double[] timestamps, int sampleCount) {
+    if (!Logger.hasReplaySource()) {
+      busUtilization = RobotController.getCANStatus().percentBusUtilization;
+      maxFrequency = StatusFramePlan.getMaxOdometryFrequency();
+    }
+    Logger.processInputs("Drive/OdometryFrequency", inputs);
+
+    // Largest deviation from the expected period between consecutive samples
+    double period = 1.0 / getFrequency();
+    double jitter = 0.0;
+    for (int i = 0; i < sampleCount; i++) {
+      if (!Double.isNaN(lastTimestamp)) {
+        jitter = Math.max(jitter, Math.abs(timestamps[i] - lastTimestamp - period));
+      }
+      lastTimestamp = timestamps[i];
+    }
+    Logger.recordOutput("Odometry/FrequencyHz", getFrequency());
+    Logger.recordOutput("Odometry/JitterMS", jitter * 1000.0);
+
+    boolean overloaded =
+        busUtilization > DECREASE_MIN_BUS_UTILIZATION || jitter > MAX_JITTER_PERIODS * period;
+    boolean idle =
+        busUtilization < INCREASE_MAX_BUS_UTILIZATION
+            && jitter < MAX_JITTER_PERIODS * period / 2.0;
+    overloadedCycles = overloaded ? overloadedCycles + 1 : 0;
+    idleCycles = idle ? idleCycles + 1 : 0;
+
+    if (getFrequency() > maxFrequency && frequencyIndex > 0) {
+      // Over the status frame budget, not congested, so stepping up again isn't delayed
+      frequencyIndex--;
+      reset();
+      return true;
+    }
+    if (overloadedCycles >= DECREASE_CYCLES && frequencyIndex > 0) {
+      frequencyIndex--;
+      increaseCycles = Math.min(increaseCycles * 2, MAX_INCREASE_CYCLES);
+      reset();
+      return true;
+    }
+    if (idleCycles >= increaseCycles
+        && frequencyIndex < FREQUENCIES.length - 1
+        && FREQUENCIES[frequencyIndex + 1] <= maxFrequency) {
+      frequencyIndex++;
+      reset();
+      return true;
+    }
+    return false;
+  }
+
+  private void reset() {
+    overloadedCycles = 0;
+    idleCycles = 0;
+    // The first interval after a change spans both periods
+    lastTimestamp = Double.NaN;
+  }
+}
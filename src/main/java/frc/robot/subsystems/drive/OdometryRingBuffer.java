@@ -0,0 +1,128 @@
+package frc.robot.subsystems.drive;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of primitive doubles, used to pass
+ * high-frequency samples from the odometry threads to the main robot thread.
+ *
+ * <p>All of the buffers filled by one odometry thread share a {@link Sequence}. The producer writes
+ * one value to every buffer under the same sequence number and then publishes that number, so a new
+ * sample becomes visible in every buffer at once. Once per cycle the consumer takes a snapshot of
+ * the published sequence, and every buffer drains up to that snapshot. Signals that are sampled
+ * together therefore always return the same samples, without either side taking a lock.
+ *
+ * <p>The producer doesn't wait for the consumer, so a consumer that stalls long enough can have the
+ * oldest slots it is reading overwritten. Each drain checks the published sequence again after
+ * copying, and drops the samples whose slots may have been reused. The buffers drained after it in
+ * the same cycle drop them too, but those drained before keep them, so consumers should line up
+ * signals by their newest samples.
+ */
+public class OdometryRingBuffer {
+  /** Number of samples held by each buffer. Must be a power of two. */
+  public static final int CAPACITY = 128;
+
+  private static final int MASK = CAPACITY - 1;
+  private static final double[] EMPTY = new double[] {};
+
+  /**
+   * Maximum number of samples returned by a single drain. Older samples are dropped, which leaves
+   * the producer a large margin before it can overwrite a slot that is still being read.
+   */
+  public static final int MAX_SAMPLES_PER_CYCLE = CAPACITY / 2;
+
+  private final Sequence sequence;
+  private final double[] samples = new double[CAPACITY];
+  private long readSequence;
+
+  OdometryRingBuffer(Sequence sequence) {
+    this.sequence = sequence;
+    this.readSequence = sequence.getPublished();
+  }
+
+  /** Stores a value for the specified sequence number. Only called by the producer. */
+  void write(long sequenceNumber, double value) {
+    samples[(int) sequenceNumber & MASK] = value;
+  }
+
+  /**
+   * Returns the most recently published sample without consuming it, or NaN if none was published
+   * yet. Unlike the drains, this can be called from any thread (e.g. the fast drive loop).
+   */
+  public double latest() {
+    long published = sequence.getPublished();
+    return published > 0 ? samples[(int) (published - 1) & MASK] : Double.NaN;
+  }
+
+  /** Returns every sample published before the last snapshot, oldest first. */
+  public double[] drain() {
+    return drain(1.0);
+  }
+
+  /**
+   * Returns every sample published before the last snapshot, oldest first, multiplied by the
+   * specified factor (e.g. to convert motor rotations to mechanism radians). Only called by the
+   * consumer.
+   *
+   * <p>A new array is returned for each drain, since the logger may still hold the previous one.
+   */
+  public double[] drain(double factor) {
+    long end = sequence.snapshot;
+    long start =
+        Math.max(Math.max(readSequence, end - MAX_SAMPLES_PER_CYCLE), sequence.snapshotIntact);
+    int count = (int) Math.max(end - start, 0);
+    readSequence = Math.max(readSequence, end);
+    if (count == 0) {
+      return EMPTY;
+    }
+    double[] values = new double[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = samples[(int) (start + i) & MASK] * factor;
+    }
+
+    // The producer writes the slot of the next sequence number before publishing it, so only the
+    // slots after the last lap are certainly intact. The fence keeps the copies above before the
+    // read of the sequence.
+    VarHandle.acquireFence();
+    long intact = sequence.getPublished() + 1 - CAPACITY;
+    if (intact > start) {
+      sequence.snapshotIntact = Math.max(sequence.snapshotIntact, intact);
+      return intact >= end ? EMPTY : Arrays.copyOfRange(values, (int) (intact - start), count);
+    }
+    return values;
+  }
+
+  /** Sequence number shared by all buffers that are sampled together. */
+  public static class Sequence {
+    private final AtomicLong published = new AtomicLong();
+    private long snapshot = 0;
+    private long snapshotIntact = 0; // Raised when a drain finds slots the producer may have reused
+
+    /** Returns the sequence number of the next sample. Only called by the producer. */
+    long next() {
+      return published.getPlain();
+    }
+
+    /**
+     * Makes the sample written under the specified sequence number visible to the consumer. Only
+     * called by the producer.
+     */
+    void publish(long sequenceNumber) {
+      published.setRelease(sequenceNumber + 1);
+    }
+
+    long getPublished() {
+      return published.getAcquire();
+    }
+
+    /**
+     * Captures the samples published so far. Every buffer using this sequence will drain up to this
+     * point until the next snapshot. Only called by the consumer.
+     */
+    public void snapshot() {
+      snapshot = published.getAcquire();
+    }
+  }
+}
@@ -17,12 +17,6 @@ import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.CANBus;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.hardware.ParentDevice;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import org.littletonrobotics.junction.Logger;
 
 /**
@@ -32,14 +26,18 @@ import org.littletonrobotics.junction.Logger;
  * a CANivore, the thread uses the "waitForAll" blocking method to enable more consistent sampling.
  * This also allows Phoenix Pro users to benefit from lower latency between devices using CANivore
  * time synchronization.
+ *
+ * <p>Samples are handed to the main thread through {@link OdometryRingBuffer}s, so the sampling
+ * loop never allocates or waits on a lock held by the main thread.
  */
 public class PhoenixOdometryThread extends Thread {
-  private final Lock signalsLock =
-      new ReentrantLock(); // Prevents conflicts when registering signals
-  private BaseStatusSignal[] signals = new BaseStatusSignal[0];
-  private final List<Queue<Double>> queues = new ArrayList<>();
-  private final List<Queue<Double>> timestampQueues = new ArrayList<>();
-  private boolean isCANFD = false;
+  private final OdometryRingBuffer.Sequence sequence = new OdometryRingBuffer.Sequence();
+  // Replaced (never modified) when registering, queues are always updated before signals
+  private volatile BaseStatusSignal[] signals = new BaseStatusSignal[0];
+  private volatile OdometryRingBuffer[] queues = new OdometryRingBuffer[0];
+  private volatile OdometryRingBuffer[] timestampQueues = new OdometryRingBuffer[0];
+  private volatile boolean isCANFD = false;
+  private volatile double frequency = Module.ODOMETRY_FREQUENCY;
 
   private static PhoenixOdometryThread instance = null;
 
@@ -57,82 +55,89 @@ public class PhoenixOdometryThread extends Thread {
 
   @Override
   public void start() {
-    if (timestampQueues.size() > 0) {
+    if (timestampQueues.length > 0) {
       super.start();
     }
   }
 
-  public Queue<Double> registerSignal(ParentDevice device, StatusSignal<Double> signal) {
-    Queue<Double> queue = new ArrayDeque<>(100);
-    signalsLock.lock();
-    Drive.odometryLock.lock();
-    try {
-      isCANFD = CANBus.isNetworkFD(device.getNetwork());
-      BaseStatusSignal[] newSignals = new BaseStatusSignal[signals.length + 1];
-      System.arraycopy(signals, 0, newSignals, 0, signals.length);
-      newSignals[signals.length] = signal;
-      signals = newSignals;
-      queues.add(queue);
-    } finally {
-      signalsLock.unlock();
-      Drive.odometryLock.unlock();
-    }
+  public synchronized OdometryRingBuffer registerSignal(
+      ParentDevice device, StatusSignal<Double> signal) {
+    OdometryRingBuffer queue = new OdometryRingBuffer(sequence);
+    isCANFD = CANBus.isNetworkFD(device.getNetwork());
+    queues = append(queues, queue);
+    BaseStatusSignal[] newSignals = new BaseStatusSignal[signals.length + 1];
+    System.arraycopy(signals, 0, newSignals, 0, signals.length);
+    newSignals[signals.length] = signal;
+    signals = newSignals;
     return queue;
   }
 
-  public Queue<Double> makeTimestampQueue() {
-    Queue<Double> queue = new ArrayDeque<>(100);
-    Drive.odometryLock.lock();
-    try {
-      timestampQueues.add(queue);
-    } finally {
-      Drive.odometryLock.unlock();
-    }
+  public synchronized OdometryRingBuffer makeTimestampQueue() {
+    OdometryRingBuffer queue = new OdometryRingBuffer(sequence);
+    timestampQueues = append(timestampQueues, queue);
     return queue;
   }
 
+  /** Changes the sampling frequency. Samples already in the queues keep their timestamps. */
+  public void setFrequency(double frequencyHz) {
+    frequency = frequencyHz;
+  }
+
+  /**
+   * Captures the samples received so far. Every queue drains up to this point until the next call,
+   * so this must be called once per cycle before any inputs are updated.
+   */
+  public void snapshot() {
+    sequence.snapshot();
+  }
+
+  private static OdometryRingBuffer[] append(
+      OdometryRingBuffer[] array, OdometryRingBuffer queue) {
+    OdometryRingBuffer[] newArray = new OdometryRingBuffer[array.length + 1];
+    System.arraycopy(array, 0, newArray, 0, array.length);
+    newArray[array.length] = queue;
+    return newArray;
+  }
+
   @Override
   public void run() {
     while (true) {
       // Wait for updates from all signals
-      signalsLock.lock();
+      BaseStatusSignal[] signals = this.signals;
       try {
         if (isCANFD) {
-          BaseStatusSignal.waitForAll(2.0 / Module.ODOMETRY_FREQUENCY, signals);
+          BaseStatusSignal.waitForAll(2.0 / frequency, signals);
         } else {
           // "waitForAll" does not support blocking on multiple
           // signals with a bus that is not CAN FD, regardless
           // of Pro licensing. No reasoning for this behavior
           // is provided by the documentation.
-          Thread.sleep((long) (1000.0 / Module.ODOMETRY_FREQUENCY));
+          Thread.sleep((long) (1000.0 / frequency));
           if (signals.length > 0) BaseStatusSignal.refreshAll(signals);
         }
       } catch (InterruptedException e) {
         e.printStackTrace();
-      } finally {
-        signalsLock.unlock();
       }
 
       // Save new data to queues
-      Drive.odometryLock.lock();
-      try {
-        double timestamp = Logger.getRealTimestamp() / 1e6;
-        double totalLatency = 0.0;
-        for (BaseStatusSignal signal : signals) {
-          totalLatency += signal.getTimestamp().getLatency();
-        }
-        if (signals.length > 0) {
-          timestamp -= totalLatency / signals.length;
-        }
-        for (int i = 0; i < signals.length; i++) {
-          queues.get(i).offer(signals[i].getValueAsDouble());
-        }
-        for (int i = 0; i < timestampQueues.size(); i++) {
-          timestampQueues.get(i).offer(timestamp);
-        }
-      } finally {
-        Drive.odometryLock.unlock();
+      OdometryRingBuffer[] queues = this.queues;
+      OdometryRingBuffer[] timestampQueues = this.timestampQueues;
+      double timestamp = Logger.getRealTimestamp() / 1e6;
+      double totalLatency = 0.0;
+      for (BaseStatusSignal signal : signals) {
+        totalLatency += signal.getTimestamp().getLatency();
+      }
+      if (signals.length > 0) {
+        timestamp -= totalLatency / signals.length;
+      }
+      long sequenceNumber = sequence.next();
+      for (int i = 0; i < signals.length; i++) {
+        queues[i].write(sequenceNumber, signals[i].getValueAsDouble());
+      }
+      for (int i = 0; i < timestampQueues.length; i++) {
+        timestampQueues[i].write(sequenceNumber, timestamp);
       }
+      sequence.publish(sequenceNumber);
     }
   }
 }
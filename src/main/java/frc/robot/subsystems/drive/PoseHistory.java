@@ -0,0 +1,215 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+
+/**
+ * Fixed-capacity history of timestamped robot poses and module positions, for looking up where
+ * the robot was at a past time (e.g. for latency compensation or shot timing).
+ *
+ * <p>Samples are stored in a ring of primitive arrays and found with a binary search, so adding and
+ * looking up samples never allocates. Lookups between two samples are linearly interpolated, and
+ * lookups outside the stored range return the nearest sample. Only used from the main thread.
+ */
+public class PoseHistory {
+  private final int capacity;
+  private final double[] timestamps;
+  private final double[] posesX;
+  private final double[] posesY;
+  private final double[] posesRotation;
+  private final double[][] moduleDistances;
+  private final double[][] moduleAngles;
+  private int start = 0;
+  private int size = 0;
+
+  /**
+   * Creates a new PoseHistory.
+   *
+   * @param capacity The maximum number of samples held. The oldest samples are replaced when full.
+   * @param moduleCount The number of modules stored with each pose.
+   */
+  public PoseHistory(int capacity, int moduleCount) {
+    this.capacity = capacity;
+    timestamps = new double[capacity];
+    posesX = new double[capacity];
+    posesY = new double[capacity];
+    posesRotation = new double[capacity];
+    moduleDistances = new double[moduleCount][capacity];
+    moduleAngles = new double[moduleCount][capacity];
+  }
+
+  /** Removes every sample. */
+  public void clear() {
+    start = 0;
+    size = 0;
+  }
+
+  /** Returns the number of samples held. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the timestamp of the oldest sample held, or negative infinity if empty. */
+  public double getOldestTimestamp() {
+    return size > 0 ? timestamps[index(0)] : Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Adds a sample. Samples must be added in timestamp order, and samples that are not newer than
+   * the latest one are ignored.
+   */
+  public void add(double timestamp, Pose2d pose, SwerveModulePosition[] modulePositions) {
+    add(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians(), modulePositions);
+  }
+
+  /**
+   * Adds a sample from the components of its pose. Samples must be added in timestamp order, and
+   * samples that are not newer than the latest one are ignored.
+   */
+  public void add(
+      double timestamp,
+      double xMeters,
+      double yMeters,
+      double rotationRad,
+      SwerveModulePosition[] modulePositions) {
+    int index = addPose(timestamp, xMeters, yMeters, rotationRad);
+    if (index < 0) {
+      return;
+    }
+    for (int module = 0; module < moduleDistances.length; module++) {
+      moduleDistances[module][index] = modulePositions[module].distanceMeters;
+      moduleAngles[module][index] = modulePositions[module].angle.getRadians();
+    }
+  }
+
+  /**
+   * Adds a sample from the components of its pose and module positions. Samples must be added in
+   * timestamp order, and samples that are not newer than the latest one are ignored.
+   *
+   * @param moduleDistancesMeters The drive position of each module, which is copied.
+   * @param moduleAnglesRad The turn angle of each module, which is copied.
+   */
+  public void add(
+      double timestamp,
+      double xMeters,
+      double yMeters,
+      double rotationRad,
+      double[] moduleDistancesMeters,
+      double[] moduleAnglesRad) {
+    int index = addPose(timestamp, xMeters, yMeters, rotationRad);
+    if (index < 0) {
+      return;
+    }
+    for (int module = 0; module < moduleDistances.length; module++) {
+      moduleDistances[module][index] = moduleDistancesMeters[module];
+      moduleAngles[module][index] = moduleAnglesRad[module];
+    }
+  }
+
+  /** Stores the pose of a new sample, returning its index or -1 if it isn't newer. */
+  private int addPose(double timestamp, double xMeters, double yMeters, double rotationRad) {
+    if (size > 0 && timestamp <= timestamps[index(size - 1)]) {
+      return -1;
+    }
+    int index;
+    if (size < capacity) {
+      index = index(size);
+      size++;
+    } else {
+      index = start;
+      start = (start + 1) % capacity;
+    }
+    timestamps[index] = timestamp;
+    posesX[index] = xMeters;
+    posesY[index] = yMeters;
+    posesRotation[index] = rotationRad;
+    return index;
+  }
+
+  /**
+   * Finds the interpolated sample at the specified time.
+   *
+   * @param timestamp The timestamp to look up in seconds.
+   * @param sample The sample to store the result in.
+   * @return Whether a sample was found, false if the history is empty.
+   */
+  public boolean getSampleAt(double timestamp, Sample sample) {
+    if (size == 0) {
+      return false;
+    }
+
+    // Find the first sample at or after the timestamp, interpolating from the one before it
+    int after;
+    if (timestamp <= timestamps[index(0)]) {
+      after = 0;
+    } else if (timestamp >= timestamps[index(size - 1)]) {
+      after = size - 1;
+    } else {
+      int low = 1;
+      int high = size - 1;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (timestamps[index(middle)] < timestamp) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      after = low;
+    }
+    int afterIndex = index(after);
+    int beforeIndex = index(Math.max(after - 1, 0));
+    double t =
+        afterIndex != beforeIndex
+            ? MathUtil.clamp(
+                (timestamp - timestamps[beforeIndex])
+                    / (timestamps[afterIndex] - timestamps[beforeIndex]),
+                0.0,
+                1.0)
+            : 1.0;
+
+    sample.timestamp = timestamp;
+    sample.xMeters = MathUtil.interpolate(posesX[beforeIndex], posesX[afterIndex], t);
+    sample.yMeters = MathUtil.interpolate(posesY[beforeIndex], posesY[afterIndex], t);
+    sample.rotationRad =
+        interpolateAngle(posesRotation[beforeIndex], posesRotation[afterIndex], t);
+    for (int module = 0; module < moduleDistances.length; module++) {
+      sample.moduleDistancesMeters[module] =
+          MathUtil.interpolate(
+              moduleDistances[module][beforeIndex], moduleDistances[module][afterIndex], t);
+      sample.moduleAnglesRad[module] =
+          interpolateAngle(moduleAngles[module][beforeIndex], moduleAngles[module][afterIndex], t);
+    }
+    return true;
+  }
+
+  private int index(int offset) {
+    return (start + offset) % capacity;
+  }
+
+  private static double interpolateAngle(double startRad, double endRad, double t) {
+    return MathUtil.angleModulus(startRad + MathUtil.angleModulus(endRad - startRad) * t);
+  }
+
+  /** Mutable result of a lookup, reused between lookups to avoid allocation. */
+  public static class Sample {
+    public double timestamp = 0.0;
+    public double xMeters = 0.0;
+    public double yMeters = 0.0;
+    public double rotationRad = 0.0;
+    public final double[] moduleDistancesMeters;
+    public final double[] moduleAnglesRad;
+
+    public Sample(int moduleCount) {
+      moduleDistancesMeters = new double[moduleCount];
+      moduleAnglesRad = new double[moduleCount];
+    }
+
+    /** Returns the robot pose of this sample. */
+    public Pose2d getPose() {
+      return new Pose2d(xMeters, yMeters, new Rotation2d(rotationRad));
+    }
+  }
+}
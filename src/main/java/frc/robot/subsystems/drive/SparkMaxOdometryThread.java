@@ -14,10 +14,6 @@
 package frc.robot.subsystems.drive;
 
 import edu.wpi.first.wpilibj.Notifier;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Queue;
 import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.Logger;
 
@@ -26,11 +22,17 @@ import org.littletonrobotics.junction.Logger;
  *
  * <p>This version is intended for devices like the SparkMax that require polling rather than a
  * blocking thread. A Notifier thread is used to gather samples with consistent timing.
+ *
+ * <p>Samples are handed to the main thread through {@link OdometryRingBuffer}s, so the sampling
+ * loop never allocates or waits on a lock held by the main thread.
  */
 public class SparkMaxOdometryThread {
-  private List<DoubleSupplier> signals = new ArrayList<>();
-  private List<Queue<Double>> queues = new ArrayList<>();
-  private List<Queue<Double>> timestampQueues = new ArrayList<>();
+  private final OdometryRingBuffer.Sequence sequence = new OdometryRingBuffer.Sequence();
+  // Replaced (never modified) when registering, queues are always updated before signals
+  private volatile DoubleSupplier[] signals = new DoubleSupplier[0];
+  private volatile OdometryRingBuffer[] queues = new OdometryRingBuffer[0];
+  private volatile OdometryRingBuffer[] timestampQueues = new OdometryRingBuffer[0];
+  private boolean started = false;
 
   private final Notifier notifier;
   private static SparkMaxOdometryThread instance = null;
@@ -48,46 +50,63 @@ public class SparkMaxOdometryThread {
   }
 
   public void start() {
-    if (timestampQueues.size() > 0) {
+    if (timestampQueues.length > 0) {
       notifier.startPeriodic(1.0 / Module.ODOMETRY_FREQUENCY);
+      started = true;
     }
   }
 
-  public Queue<Double> registerSignal(DoubleSupplier signal) {
-    Queue<Double> queue = new ArrayDeque<>(100);
-    Drive.odometryLock.lock();
-    try {
-      signals.add(signal);
-      queues.add(queue);
-    } finally {
-      Drive.odometryLock.unlock();
+  /** Changes the sampling frequency. Samples already in the queues keep their timestamps. */
+  public void setFrequency(double frequencyHz) {
+    if (started) {
+      notifier.startPeriodic(1.0 / frequencyHz);
     }
+  }
+
+  public synchronized OdometryRingBuffer registerSignal(DoubleSupplier signal) {
+    OdometryRingBuffer queue = new OdometryRingBuffer(sequence);
+    queues = append(queues, queue);
+    DoubleSupplier[] newSignals = new DoubleSupplier[signals.length + 1];
+    System.arraycopy(signals, 0, newSignals, 0, signals.length);
+    newSignals[signals.length] = signal;
+    signals = newSignals;
     return queue;
   }
 
-  public Queue<Double> makeTimestampQueue() {
-    Queue<Double> queue = new ArrayDeque<>(100);
-    Drive.odometryLock.lock();
-    try {
-      timestampQueues.add(queue);
-    } finally {
-      Drive.odometryLock.unlock();
-    }
+  public synchronized OdometryRingBuffer makeTimestampQueue() {
+    OdometryRingBuffer queue = new OdometryRingBuffer(sequence);
+    timestampQueues = append(timestampQueues, queue);
     return queue;
   }
 
+  /**
+   * Captures the samples received so far. Every queue drains up to this point until the next call,
+   * so this must be called once per cycle before any inputs are updated.
+   */
+  public void snapshot() {
+    sequence.snapshot();
+  }
+
+  private static OdometryRingBuffer[] append(
+      OdometryRingBuffer[] array, OdometryRingBuffer queue) {
+    OdometryRingBuffer[] newArray = new OdometryRingBuffer[array.length + 1];
+    System.arraycopy(array, 0, newArray, 0, array.length);
+    newArray[array.length] = queue;
+    return newArray;
+  }
+
   private void periodic() {
-    Drive.odometryLock.lock();
+    DoubleSupplier[] signals = this.signals;
+    OdometryRingBuffer[] queues = this.queues;
+    OdometryRingBuffer[] timestampQueues = this.timestampQueues;
     double timestamp = Logger.getRealTimestamp() / 1e6;
-    try {
-      for (int i = 0; i < signals.size(); i++) {
-        queues.get(i).offer(signals.get(i).getAsDouble());
-      }
-      for (int i = 0; i < timestampQueues.size(); i++) {
-        timestampQueues.get(i).offer(timestamp);
-      }
-    } finally {
-      Drive.odometryLock.unlock();
+    long sequenceNumber = sequence.next();
+    for (int i = 0; i < signals.length; i++) {
+      queues[i].write(sequenceNumber, signals[i].getAsDouble());
+    }
+    for (int i = 0; i < timestampQueues.length; i++) {
+      timestampQueues[i].write(sequenceNumber, timestamp);
     }
+    sequence.publish(sequenceNumber);
   }
 }
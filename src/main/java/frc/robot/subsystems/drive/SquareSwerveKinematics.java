@@ -0,0 +1,132 @@
+package frc.robot.subsystems.drive;
+
+/**
+ * Closed form kinematics for four swerve modules placed at the corners of a rectangle centered on
+ * the robot, in the order front left, front right, back left, back right (see {@link
+ * Drive#getModuleTranslations()}). Equivalent to WPILib's SwerveDriveKinematics with the center of
+ * rotation at the robot center, without matrix multiplies or allocations.
+ *
+ * <p>Results are written to arrays supplied by the caller. Module angles are in radians, and like
+ * SwerveDriveKinematics, zero chassis speeds keep the module headings from the last nonzero speeds
+ * (or from {@link #resetHeadings(double...)}).
+ *
+ * <p>Since the modules are symmetric around the center, the least squares solution of the forward
+ * kinematics separates: the translation is the mean of the module vectors, and the rotation only
+ * depends on their tangential components.
+ */
+public class SquareSwerveKinematics {
+  private final double[] moduleX;
+  private final double[] moduleY;
+  private final double radiusSquaredSum;
+  private final double[] headingsRad = new double[4];
+
+  /**
+   * Creates the kinematics for modules at the specified distances from the robot center.
+   *
+   * @param halfTrackWidthX The distance from the center to the front and back modules in meters.
+   * @param halfTrackWidthY The distance from the center to the left and right modules in meters.
+   */
+  public SquareSwerveKinematics(double halfTrackWidthX, double halfTrackWidthY) {
+    moduleX = new double[] {halfTrackWidthX, halfTrackWidthX, -halfTrackWidthX, -halfTrackWidthX};
+    moduleY = new double[] {halfTrackWidthY, -halfTrackWidthY, halfTrackWidthY, -halfTrackWidthY};
+    radiusSquaredSum =
+        4.0 * (halfTrackWidthX * halfTrackWidthX + halfTrackWidthY * halfTrackWidthY);
+  }
+
+  /**
+   * Converts chassis speeds to module speeds and angles.
+   *
+   * @param vxMetersPerSec The forward speed.
+   * @param vyMetersPerSec The speed to the left.
+   * @param omegaRadPerSec The counterclockwise angular speed.
+   * @param speedsMetersPerSec The module speeds, written by this method.
+   * @param anglesRad The module angles, written by this method.
+   */
+  public void toModuleStates(
+      double vxMetersPerSec,
+      double vyMetersPerSec,
+      double omegaRadPerSec,
+      double[] speedsMetersPerSec,
+      double[] anglesRad) {
+    if (vxMetersPerSec == 0.0 && vyMetersPerSec == 0.0 && omegaRadPerSec == 0.0) {
+      for (int i = 0; i < 4; i++) {
+        speedsMetersPerSec[i] = 0.0;
+        anglesRad[i] = headingsRad[i];
+      }
+      return;
+    }
+
+    for (int i = 0; i < 4; i++) {
+      double x = vxMetersPerSec - omegaRadPerSec * moduleY[i];
+      double y = vyMetersPerSec + omegaRadPerSec * moduleX[i];
+      speedsMetersPerSec[i] = Math.hypot(x, y);
+      anglesRad[i] = Math.atan2(y, x);
+      headingsRad[i] = anglesRad[i];
+    }
+  }
+
+  /**
+   * Converts module speeds and angles to chassis speeds, using the least squares solution.
+   *
+   * @param speedsMetersPerSec The module speeds.
+   * @param anglesRad The module angles.
+   * @param chassisSpeeds The forward, left and counterclockwise angular speeds, written by this
+   *     method.
+   */
+  public void toChassisSpeeds(
+      double[] speedsMetersPerSec, double[] anglesRad, double[] chassisSpeeds) {
+    solve(speedsMetersPerSec, anglesRad, chassisSpeeds);
+  }
+
+  /**
+   * Converts module position deltas to the twist of the robot, using the least squares solution.
+   *
+   * @param distanceDeltasMeters The distance driven by each module.
+   * @param anglesRad The module angles.
+   * @param twist The forward, left and counterclockwise components of the twist, written by this
+   *     method.
+   */
+  public void toTwist(double[] distanceDeltasMeters, double[] anglesRad, double[] twist) {
+    solve(distanceDeltasMeters, anglesRad, twist);
+  }
+
+  /** Sets the module headings used for zero chassis speeds. */
+  public void resetHeadings(double... anglesRad) {
+    System.arraycopy(anglesRad, 0, headingsRad, 0, 4);
+  }
+
+  /**
+   * Scales down the module speeds so none exceeds the maximum, keeping their ratios.
+   *
+   * @param speedsMetersPerSec The module speeds, modified in place.
+   * @param maxSpeedMetersPerSec The maximum module speed.
+   */
+  public static void desaturate(double[] speedsMetersPerSec, double maxSpeedMetersPerSec) {
+    double realMaxSpeed = 0.0;
+    for (double speed : speedsMetersPerSec) {
+      realMaxSpeed = Math.max(realMaxSpeed, Math.abs(speed));
+    }
+    if (realMaxSpeed > maxSpeedMetersPerSec) {
+      double scale = maxSpeedMetersPerSec / realMaxSpeed;
+      for (int i = 0; i < speedsMetersPerSec.length; i++) {
+        speedsMetersPerSec[i] *= scale;
+      }
+    }
+  }
+
+  private void solve(double[] magnitudes, double[] anglesRad, double[] result) {
+    double xSum = 0.0;
+    double ySum = 0.0;
+    double tangentialSum = 0.0;
+    for (int i = 0; i < 4; i++) {
+      double x = magnitudes[i] * Math.cos(anglesRad[i]);
+      double y = magnitudes[i] * Math.sin(anglesRad[i]);
+      xSum += x;
+      ySum += y;
+      tangentialSum += moduleX[i] * y - moduleY[i] * x;
+    }
+    result[0] = xSum / 4.0;
+    result[1] = ySum / 4.0;
+    result[2] = tangentialSum / radiusSquaredSum;
+  }
+}
@@ -0,0 +1,426 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+/**
+ * Pose estimator fusing swerve odometry with vision measurements, a replacement for WPILib's
+ * SwerveDrivePoseEstimator with the same gains and defaults.
+ *
+ * <p>WPILib's estimator replays every odometry sample after the timestamp of each vision
+ * measurement. This one keeps the odometry poses in a {@link PoseHistory} instead, and stores each
+ * vision correction as a pair of the corrected pose and the odometry pose at its timestamp. The
+ * estimate is the latest corrected pose moved by the odometry since its timestamp, so a measurement
+ * costs two binary searches however old it is. A measurement older than earlier corrections is
+ * applied to the estimate at its own time, and drops the corrections after it.
+ *
+ * <p>Everything is stored in preallocated arrays, and only the estimated pose is allocated, when it
+ * is read after a change. Only used from the main thread.
+ */
+public class SwervePoseEstimator {
+  private static final double[] NO_MODULES = new double[] {};
+
+  private final SquareSwerveKinematics kinematics;
+  private final double[] stateVariances = new double[] {0.1 * 0.1, 0.1 * 0.1, 0.1 * 0.1};
+  private final double[] visionGains = new double[3];
+
+  // Odometry
+  private final double[] lastModuleDistances = new double[4];
+  private final double[] sampleDistancesMeters = new double[4];
+  private final double[] sampleAnglesRad = new double[4];
+  private final double[] moduleDistanceDeltas = new double[4];
+  private final double[] twist = new double[3];
+  private double gyroOffsetRad = 0.0;
+  private double odometryX = 0.0;
+  private double odometryY = 0.0;
+  private double odometryRotationRad = 0.0;
+  private final PoseHistory odometryHistory;
+  private final PoseHistory.Sample odometrySample = new PoseHistory.Sample(0);
+
+  // Vision corrections in timestamp order: the odometry pose at each, and the corrected pose
+  private final int correctionCapacity;
+  private final double[] correctionTimestamps;
+  private final double[] odometryPosesX;
+  private final double[] odometryPosesY;
+  private final double[] odometryPosesRotation;
+  private final double[] correctedPosesX;
+  private final double[] correctedPosesY;
+  private final double[] correctedPosesRotation;
+  private int correctionStart = 0;
+  private int correctionCount = 0;
+
+  private double estimatedX = 0.0;
+  private double estimatedY = 0.0;
+  private double estimatedRotationRad = 0.0;
+  private Pose2d estimatedPose = new Pose2d();
+  private boolean estimatedPoseStale = false;
+  private final double[] result = new double[3];
+
+  /**
+   * Creates a new SwervePoseEstimator, with standard deviations of 0.1 for the odometry and 0.9 for
+   * vision measurements (meters and radians), like WPILib's.
+   *
+   * @param kinematics The kinematics of the drive.
+   * @param gyroAngle The current gyro angle.
+   * @param modulePositions The current module positions.
+   * @param initialPose The starting pose estimate.
+   * @param capacity The number of odometry samples held, which limits the age of vision
+   *     measurements.
+   */
+  public SwervePoseEstimator(
+      SquareSwerveKinematics kinematics,
+      Rotation2d gyroAngle,
+      SwerveModulePosition[] modulePositions,
+      Pose2d initialPose,
+      int capacity) {
+    this.kinematics = kinematics;
+    odometryHistory = new PoseHistory(capacity, 0);
+    correctionCapacity = capacity;
+    correctionTimestamps = new double[capacity];
+    odometryPosesX = new double[capacity];
+    odometryPosesY = new double[capacity];
+    odometryPosesRotation = new double[capacity];
+    correctedPosesX = new double[capacity];
+    correctedPosesY = new double[capacity];
+    correctedPosesRotation = new double[capacity];
+    setVisionMeasurementStdDevs(0.9, 0.9, 0.9);
+    resetPosition(gyroAngle, modulePositions, initialPose);
+  }
+
+  /** Sets the default standard deviations of vision measurements (meters and radians). */
+  public void setVisionMeasurementStdDevs(double xStdDev, double yStdDev, double rotationStdDev) {
+    setVisionGain(0, xStdDev);
+    setVisionGain(1, yStdDev);
+    setVisionGain(2, rotationStdDev);
+  }
+
+  /** Sets the default standard deviations of vision measurements (meters and radians). */
+  public void setVisionMeasurementStdDevs(Matrix<N3, N1> visionMeasurementStdDevs) {
+    setVisionMeasurementStdDevs(
+        visionMeasurementStdDevs.get(0, 0),
+        visionMeasurementStdDevs.get(1, 0),
+        visionMeasurementStdDevs.get(2, 0));
+  }
+
+  /** Steady state Kalman gain of one component, for a constant state and measurement variance. */
+  private void setVisionGain(int component, double stdDev) {
+    double stateVariance = stateVariances[component];
+    double measurementVariance = stdDev * stdDev;
+    visionGains[component] =
+        stateVariance == 0.0
+            ? 0.0
+            : stateVariance / (stateVariance + Math.sqrt(stateVariance * measurementVariance));
+  }
+
+  /** Resets the estimate and odometry to a pose, and forgets all odometry and vision history. */
+  public void resetPosition(
+      Rotation2d gyroAngle, SwerveModulePosition[] modulePositions, Pose2d pose) {
+    odometryX = pose.getX();
+    odometryY = pose.getY();
+    odometryRotationRad = pose.getRotation().getRadians();
+    gyroOffsetRad = odometryRotationRad - gyroAngle.getRadians();
+    for (int i = 0; i < 4; i++) {
+      lastModuleDistances[i] = modulePositions[i].distanceMeters;
+    }
+    odometryHistory.clear();
+    correctionStart = 0;
+    correctionCount = 0;
+    estimatedX = odometryX;
+    estimatedY = odometryY;
+    estimatedRotationRad = odometryRotationRad;
+    estimatedPose = pose;
+    estimatedPoseStale = false;
+  }
+
+  /** Returns the estimated pose. */
+  public Pose2d getEstimatedPosition() {
+    if (estimatedPoseStale) {
+      estimatedPose = new Pose2d(estimatedX, estimatedY, new Rotation2d(estimatedRotationRad));
+      estimatedPoseStale = false;
+    }
+    return estimatedPose;
+  }
+
+  /** Returns the x coordinate of the estimated pose, without creating the pose. */
+  public double getEstimatedX() {
+    return estimatedX;
+  }
+
+  /** Returns the y coordinate of the estimated pose, without creating the pose. */
+  public double getEstimatedY() {
+    return estimatedY;
+  }
+
+  /** Returns the rotation of the estimated pose in radians, without creating the pose. */
+  public double getEstimatedRotationRad() {
+    return estimatedRotationRad;
+  }
+
+  /**
+   * Integrates an odometry sample and updates the estimate.
+   *
+   * @param timestamp The time of the sample in seconds, increasing with every sample.
+   * @param gyroAngle The gyro angle of the sample.
+   * @param modulePositions The module positions of the sample, which are not kept.
+   */
+  public void updateWithTime(
+      double timestamp, Rotation2d gyroAngle, SwerveModulePosition[] modulePositions) {
+    for (int i = 0; i < 4; i++) {
+      sampleDistancesMeters[i] = modulePositions[i].distanceMeters;
+      sampleAnglesRad[i] = modulePositions[i].angle.getRadians();
+    }
+    updateWithTime(timestamp, gyroAngle.getRadians(), sampleDistancesMeters, sampleAnglesRad);
+  }
+
+  /**
+   * Integrates an odometry sample and updates the estimate, without allocating.
+   *
+   * @param timestamp The time of the sample in seconds, increasing with every sample.
+   * @param gyroAngleRad The gyro angle of the sample.
+   * @param moduleDistancesMeters The drive position of each module, which is not kept.
+   * @param moduleAnglesRad The turn angle of each module, which is not kept.
+   */
+  public void updateWithTime(
+      double timestamp,
+      double gyroAngleRad,
+      double[] moduleDistancesMeters,
+      double[] moduleAnglesRad) {
+    for (int i = 0; i < 4; i++) {
+      moduleDistanceDeltas[i] = moduleDistancesMeters[i] - lastModuleDistances[i];
+      lastModuleDistances[i] = moduleDistancesMeters[i];
+    }
+    kinematics.toTwist(moduleDistanceDeltas, moduleAnglesRad, twist);
+    double rotationRad = MathUtil.angleModulus(gyroAngleRad + gyroOffsetRad);
+    twist[2] = MathUtil.angleModulus(rotationRad - odometryRotationRad);
+    exp(odometryX, odometryY, odometryRotationRad, twist[0], twist[1], twist[2], result);
+    odometryX = result[0];
+    odometryY = result[1];
+    odometryRotationRad = rotationRad; // Use the gyro angle exactly
+    odometryHistory.add(
+        timestamp, odometryX, odometryY, odometryRotationRad, NO_MODULES, NO_MODULES);
+
+    if (correctionCount > 0) {
+      compensate(correctionCount - 1, odometryX, odometryY, odometryRotationRad, result);
+      setEstimate(result[0], result[1], result[2]);
+    } else {
+      setEstimate(odometryX, odometryY, odometryRotationRad);
+    }
+  }
+
+  /**
+   * Adds a vision measurement with the default standard deviations.
+   *
+   * @param visionPose The pose of the robot as measured by vision.
+   * @param timestamp The time of the measurement in seconds, on the same clock as the odometry.
+   */
+  public void addVisionMeasurement(Pose2d visionPose, double timestamp) {
+    addVisionMeasurement(
+        timestamp,
+        visionPose.getX(),
+        visionPose.getY(),
+        visionPose.getRotation().getRadians(),
+        visionGains[0],
+        visionGains[1],
+        visionGains[2]);
+  }
+
+  /**
+   * Adds a vision measurement with its own standard deviations, which become the defaults.
+   *
+   * @param visionPose The pose of the robot as measured by vision.
+   * @param timestamp The time of the measurement in seconds, on the same clock as the odometry.
+   * @param visionMeasurementStdDevs The standard deviations of the measurement (x and y in meters,
+   *     rotation in radians).
+   */
+  public void addVisionMeasurement(
+      Pose2d visionPose, double timestamp, Matrix<N3, N1> visionMeasurementStdDevs) {
+    // Like WPILib's estimator, the standard deviations become the new defaults
+    setVisionMeasurementStdDevs(visionMeasurementStdDevs);
+    addVisionMeasurement(visionPose, timestamp);
+  }
+
+  private void addVisionMeasurement(
+      double timestamp,
+      double visionX,
+      double visionY,
+      double visionRotationRad,
+      double xGain,
+      double yGain,
+      double rotationGain) {
+    // Ignore measurements older than the odometry history
+    if (odometryHistory.size() == 0 || timestamp < odometryHistory.getOldestTimestamp()) {
+      return;
+    }
+    discardExpiredCorrections();
+
+    // Find the odometry pose and the estimate at the time of the measurement
+    odometryHistory.getSampleAt(timestamp, odometrySample);
+    int before = findCorrectionBefore(timestamp);
+    double sampleX;
+    double sampleY;
+    double sampleRotationRad;
+    if (before >= 0) {
+      compensate(
+          before,
+          odometrySample.xMeters,
+          odometrySample.yMeters,
+          odometrySample.rotationRad,
+          result);
+      sampleX = result[0];
+      sampleY = result[1];
+      sampleRotationRad = result[2];
+    } else {
+      sampleX = odometrySample.xMeters;
+      sampleY = odometrySample.yMeters;
+      sampleRotationRad = odometrySample.rotationRad;
+    }
+
+    // Move the estimate towards the measurement along the twist between them
+    log(sampleX, sampleY, sampleRotationRad, visionX, visionY, visionRotationRad, twist);
+    exp(
+        sampleX,
+        sampleY,
+        sampleRotationRad,
+        twist[0] * xGain,
+        twist[1] * yGain,
+        twist[2] * rotationGain,
+        result);
+
+    // Corrections after the measurement were relative to the old estimate, so they are dropped
+    correctionCount = before + 1;
+    if (correctionCount == correctionCapacity) {
+      correctionStart = (correctionStart + 1) % correctionCapacity;
+      correctionCount--;
+    }
+    int index = correctionIndex(correctionCount);
+    correctionTimestamps[index] = timestamp;
+    odometryPosesX[index] = odometrySample.xMeters;
+    odometryPosesY[index] = odometrySample.yMeters;
+    odometryPosesRotation[index] = odometrySample.rotationRad;
+    correctedPosesX[index] = result[0];
+    correctedPosesY[index] = result[1];
+    correctedPosesRotation[index] = result[2];
+    correctionCount++;
+
+    compensate(correctionCount - 1, odometryX, odometryY, odometryRotationRad, result);
+    setEstimate(result[0], result[1], result[2]);
+  }
+
+  /**
+   * Removes the corrections older than the odometry history, except the newest of them, which
+   * still applies to the oldest odometry samples.
+   */
+  private void discardExpiredCorrections() {
+    double oldestTimestamp = odometryHistory.getOldestTimestamp();
+    while (correctionCount > 1 && correctionTimestamps[correctionIndex(1)] <= oldestTimestamp) {
+      correctionStart = (correctionStart + 1) % correctionCapacity;
+      correctionCount--;
+    }
+  }
+
+  /** Returns the offset of the newest correction at or before a timestamp, or -1 if none. */
+  private int findCorrectionBefore(double timestamp) {
+    int low = 0;
+    int high = correctionCount;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (correctionTimestamps[correctionIndex(middle)] <= timestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low - 1;
+  }
+
+  private int correctionIndex(int offset) {
+    return (correctionStart + offset) % correctionCapacity;
+  }
+
+  /**
+   * Applies the odometry motion since a correction to its corrected pose, i.e. the corrected pose
+   * plus the transform from the odometry pose at the correction to the specified odometry pose.
+   */
+  private void compensate(int offset, double x, double y, double rotationRad, double[] pose) {
+    int index = correctionIndex(offset);
+    double fromRotationRad = odometryPosesRotation[index];
+    double dx = x - odometryPosesX[index];
+    double dy = y - odometryPosesY[index];
+    double fromCos = Math.cos(fromRotationRad);
+    double fromSin = Math.sin(fromRotationRad);
+    double relativeX = fromCos * dx + fromSin * dy;
+    double relativeY = -fromSin * dx + fromCos * dy;
+
+    double toRotationRad = correctedPosesRotation[index];
+    double toCos = Math.cos(toRotationRad);
+    double toSin = Math.sin(toRotationRad);
+    pose[0] = correctedPosesX[index] + toCos * relativeX - toSin * relativeY;
+    pose[1] = correctedPosesY[index] + toSin * relativeX + toCos * relativeY;
+    pose[2] = MathUtil.angleModulus(toRotationRad + rotationRad - fromRotationRad);
+  }
+
+  private void setEstimate(double x, double y, double rotationRad) {
+    estimatedX = x;
+    estimatedY = y;
+    estimatedRotationRad = rotationRad;
+    estimatedPoseStale = true;
+  }
+
+  /** Same as "Pose2d.exp", the pose after driving along a twist from the start pose. */
+  private static void exp(
+      double x, double y, double rotationRad, double dx, double dy, double dtheta, double[] pose) {
+    double sinTheta = Math.sin(dtheta);
+    double cosTheta = Math.cos(dtheta);
+    double s;
+    double c;
+    if (Math.abs(dtheta) < 1e-9) {
+      s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+      c = 0.5 * dtheta;
+    } else {
+      s = sinTheta / dtheta;
+      c = (1.0 - cosTheta) / dtheta;
+    }
+    double relativeX = dx * s - dy * c;
+    double relativeY = dx * c + dy * s;
+    double cos = Math.cos(rotationRad);
+    double sin = Math.sin(rotationRad);
+    pose[0] = x + cos * relativeX - sin * relativeY;
+    pose[1] = y + sin * relativeX + cos * relativeY;
+    pose[2] = MathUtil.angleModulus(rotationRad + dtheta);
+  }
+
+  /** Same as "Pose2d.log", the twist that drives from the start pose to the end pose. */
+  private static void log(
+      double startX,
+      double startY,
+      double startRotationRad,
+      double endX,
+      double endY,
+      double endRotationRad,
+      double[] twist) {
+    double cos = Math.cos(startRotationRad);
+    double sin = Math.sin(startRotationRad);
+    double dx = endX - startX;
+    double dy = endY - startY;
+    double relativeX = cos * dx + sin * dy;
+    double relativeY = -sin * dx + cos * dy;
+    double dtheta = MathUtil.angleModulus(endRotationRad - startRotationRad);
+
+    double halfDtheta = dtheta / 2.0;
+    double cosMinusOne = Math.cos(dtheta) - 1.0;
+    double halfThetaByTanOfHalfDtheta;
+    if (Math.abs(cosMinusOne) < 1e-9) {
+      halfThetaByTanOfHalfDtheta = 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+    } else {
+      halfThetaByTanOfHalfDtheta = -(halfDtheta * Math.sin(dtheta)) / cosMinusOne;
+    }
+    twist[0] = relativeX * halfThetaByTanOfHalfDtheta + relativeY * halfDtheta;
+    twist[1] = relativeY * halfThetaByTanOfHalfDtheta - relativeX * halfDtheta;
+    twist[2] = dtheta;
+  }
+}
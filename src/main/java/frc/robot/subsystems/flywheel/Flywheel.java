@@ -15,12 +15,13 @@ package frc.robot.subsystems.flywheel;
 
 import static edu.wpi.first.units.Units.*;
 
-import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import frc.robot.Constants;
+import frc.robot.util.Gains;
+import frc.robot.util.LoopProfiler;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
@@ -29,7 +30,8 @@ public class Flywheel extends SubsystemBase {
   private final FlywheelIO ioBottom;
   private final FlywheelIOInputsAutoLogged inputsTop = new FlywheelIOInputsAutoLogged();
   private final FlywheelIOInputsAutoLogged inputsBottom = new FlywheelIOInputsAutoLogged();
-  private final SimpleMotorFeedforward ffModel;
+  private volatile FlywheelGains gains; // Applied at the next control step
+  private FlywheelGains appliedGains = null;
   private final SysIdRoutine sysId;
 
   /** Creates a new Flywheel. */
@@ -42,17 +44,13 @@ public class Flywheel extends SubsystemBase {
     switch (Constants.currentMode) {
       case REAL:
       case REPLAY:
-        ffModel = new SimpleMotorFeedforward(0.3, 0.019);
-        ioTop.configurePID(0.1, 0.0, 0);
-        ioBottom.configurePID(0.0003, 0.0, 0);
+        setGains(new Gains(0.1, 0.0, 0.0, 0.3, 0.019), new Gains(0.0003, 0.0, 0.0, 0.3, 0.019));
         break;
       case SIM:
-        ffModel = new SimpleMotorFeedforward(0.0, 0.03);
-        ioTop.configurePID(0.5, 0.0, 0.0);
-        ioBottom.configurePID(1.0, 0.0, 0.0);
+        setGains(new Gains(0.5, 0.0, 0.0, 0.0, 0.03), new Gains(1.0, 0.0, 0.0, 0.0, 0.03));
         break;
       default:
-        ffModel = new SimpleMotorFeedforward(0.0, 0.0);
+        setGains(new Gains(0.0, 0.0, 0.0, 0.0, 0.0), new Gains(0.0, 0.0, 0.0, 0.0, 0.0));
         break;
     }
 
@@ -69,11 +67,14 @@ public class Flywheel extends SubsystemBase {
 
   @Override
   public void periodic() {
+    applyGains();
     ioTop.updateInputs(inputsTop);
     ioBottom.updateInputs(inputsBottom);
 
     Logger.processInputs("Flywheel Top", inputsTop);
     Logger.processInputs("Flywheel Bottom", inputsBottom);
+
+    LoopProfiler.recordSubsystem(this);
   }
 
   /** Run open loop at the specified voltage. */
@@ -89,11 +90,13 @@ public class Flywheel extends SubsystemBase {
 
   /** Run closed loop at the specified velocity. */
   public void runVelocity(double velocityRPMTop, double velocityRPMBottom) {
+    applyGains();
     var velocityRadPerSecTop = Units.rotationsPerMinuteToRadiansPerSecond(velocityRPMTop);
-    ioTop.setVelocity(velocityRadPerSecTop, ffModel.calculate(velocityRadPerSecTop));
+    ioTop.setVelocity(velocityRadPerSecTop, appliedGains.top().feedforward(velocityRadPerSecTop));
 
     var velocityRadPerSecBottom = Units.rotationsPerMinuteToRadiansPerSecond(velocityRPMBottom);
-    ioBottom.setVelocity(velocityRadPerSecBottom, ffModel.calculate(velocityRadPerSecBottom));
+    ioBottom.setVelocity(
+        velocityRadPerSecBottom, appliedGains.bottom().feedforward(velocityRadPerSecBottom));
 
     // Log flywheel setpoint
     Logger.recordOutput("FlywheelTop/SetpointRPM", velocityRPMTop);
@@ -106,6 +109,28 @@ public class Flywheel extends SubsystemBase {
     ioBottom.stop();
   }
 
+  /**
+   * Sets the gains of both flywheels, which take effect together at the next control step. Each
+   * onboard controller is only reconfigured if its PID gains changed.
+   */
+  public void setGains(Gains top, Gains bottom) {
+    gains = new FlywheelGains(top, bottom);
+  }
+
+  private void applyGains() {
+    FlywheelGains gains = this.gains;
+    if (gains == appliedGains) {
+      return;
+    }
+    if (appliedGains == null || gains.top().pidDiffers(appliedGains.top())) {
+      ioTop.configurePID(gains.top().kP(), gains.top().kI(), gains.top().kD());
+    }
+    if (appliedGains == null || gains.bottom().pidDiffers(appliedGains.bottom())) {
+      ioBottom.configurePID(gains.bottom().kP(), gains.bottom().kI(), gains.bottom().kD());
+    }
+    appliedGains = gains;
+  }
+
   /** Returns a command to run a quasistatic test in the specified direction. */
   public Command sysIdQuasistatic(SysIdRoutine.Direction direction) {
     return sysId.quasistatic(direction);
@@ -132,4 +157,6 @@ public class Flywheel extends SubsystemBase {
   public double getBottomCharacterizationVelocity() {
     return inputsBottom.velocityRadPerSec;
   }
+
+  private record FlywheelGains(Gains top, Gains bottom) {}
 }
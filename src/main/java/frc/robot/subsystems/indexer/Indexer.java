@@ -15,19 +15,21 @@ package frc.robot.subsystems.indexer;
 
 import static edu.wpi.first.units.Units.*;
 
-import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import frc.robot.Constants;
+import frc.robot.util.Gains;
+import frc.robot.util.LoopProfiler;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
 public class Indexer extends SubsystemBase {
   private final IndexerIO io;
   private final IndexerIOInputsAutoLogged inputs = new IndexerIOInputsAutoLogged();
-  private final SimpleMotorFeedforward ffModel;
+  private volatile Gains gains; // Applied at the next control step
+  private Gains appliedGains = null;
   private final SysIdRoutine sysId;
 
   /** Creates a new Indexer. */
@@ -39,15 +41,13 @@ public class Indexer extends SubsystemBase {
     switch (Constants.currentMode) {
       case REAL:
       case REPLAY:
-        ffModel = new SimpleMotorFeedforward(0.1, 0.05);
-        io.configurePID(1.0, 0.0, 0.0);
+        setGains(new Gains(1.0, 0.0, 0.0, 0.1, 0.05));
         break;
       case SIM:
-        ffModel = new SimpleMotorFeedforward(0.0, 0.03);
-        io.configurePID(0.5, 0.0, 0.0);
+        setGains(new Gains(0.5, 0.0, 0.0, 0.0, 0.03));
         break;
       default:
-        ffModel = new SimpleMotorFeedforward(0.0, 0.0);
+        setGains(new Gains(0.0, 0.0, 0.0, 0.0, 0.0));
         break;
     }
 
@@ -64,8 +64,11 @@ public class Indexer extends SubsystemBase {
 
   @Override
   public void periodic() {
+    applyGains();
     io.updateInputs(inputs);
     Logger.processInputs("Indexer", inputs);
+
+    LoopProfiler.recordSubsystem(this);
   }
 
   /** Run open loop at the specified voltage. */
@@ -75,8 +78,9 @@ public class Indexer extends SubsystemBase {
 
   /** Run closed loop at the specified velocity. */
   public void runVelocity(double velocityRPM) {
+    applyGains();
     var velocityRadPerSec = Units.rotationsPerMinuteToRadiansPerSecond(velocityRPM);
-    io.setVelocity(velocityRadPerSec, ffModel.calculate(velocityRadPerSec));
+    io.setVelocity(velocityRadPerSec, appliedGains.feedforward(velocityRadPerSec));
 
     // Log Indexer setpoint
     Logger.recordOutput("Indexer/SetpointRPM", velocityRPM);
@@ -87,6 +91,25 @@ public class Indexer extends SubsystemBase {
     io.stop();
   }
 
+  /**
+   * Sets the PID and feedforward gains, which take effect together at the next control step. The
+   * onboard controller is only reconfigured if the PID gains changed.
+   */
+  public void setGains(Gains gains) {
+    this.gains = gains;
+  }
+
+  private void applyGains() {
+    Gains gains = this.gains;
+    if (gains == appliedGains) {
+      return;
+    }
+    if (gains.pidDiffers(appliedGains)) {
+      io.configurePID(gains.kP(), gains.kI(), gains.kD());
+    }
+    appliedGains = gains;
+  }
+
   /** Returns a command to run a quasistatic test in the specified direction. */
   public Command sysIdQuasistatic(SysIdRoutine.Direction direction) {
     return sysId.quasistatic(direction);
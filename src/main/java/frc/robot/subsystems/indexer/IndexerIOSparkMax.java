@@ -20,6 +20,10 @@ import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkPIDController;
 import com.revrobotics.SparkPIDController.ArbFFUnits;
 import edu.wpi.first.math.util.Units;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceConfigurator.ConfiguredDevice;
+import frc.robot.util.SparkMaxConfiguration;
+import frc.robot.util.StatusFramePlan;
 
 /**
  * NOTE: To use the Spark Flex / NEO Vortex, replace all instances of "CANSparkMax" with
@@ -29,20 +33,18 @@ public class IndexerIOSparkMax implements IndexerIO {
   private static final double GEAR_RATIO = 5;
 
   private final CANSparkMax leader = new CANSparkMax(51, MotorType.kBrushless);
+  private final ConfiguredDevice leaderConfiguration;
   private final RelativeEncoder encoder = leader.getEncoder();
   private final SparkPIDController pid = leader.getPIDController();
 
   public IndexerIOSparkMax() {
-    leader.restoreFactoryDefaults();
+    var config = new SparkMaxConfiguration();
+    config.inverted = true;
+    config.voltageCompensationVolts = 12.0;
+    config.smartCurrentLimitAmps = 30;
+    leaderConfiguration = DeviceConfigurator.sparkMax(leader, config);
 
-    leader.setCANTimeout(250);
-
-    leader.setInverted(true);
-
-    leader.enableVoltageCompensation(12.0);
-    leader.setSmartCurrentLimit(30);
-
-    leader.burnFlash();
+    StatusFramePlan.simpleMotor(leader);
   }
 
   @Override
@@ -76,9 +78,12 @@ public class IndexerIOSparkMax implements IndexerIO {
 
   @Override
   public void configurePID(double kP, double kI, double kD) {
-    pid.setP(kP, 0);
-    pid.setI(kI, 0);
-    pid.setD(kD, 0);
-    pid.setFF(0, 0);
+    leaderConfiguration.afterConfiguration(
+        () -> {
+          pid.setP(kP, 0);
+          pid.setI(kI, 0);
+          pid.setD(kD, 0);
+          pid.setFF(0, 0);
+        });
   }
 }
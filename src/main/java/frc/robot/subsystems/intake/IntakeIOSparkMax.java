@@ -20,6 +20,10 @@ import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkPIDController;
 import com.revrobotics.SparkPIDController.ArbFFUnits;
 import edu.wpi.first.math.util.Units;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceConfigurator.ConfiguredDevice;
+import frc.robot.util.SparkMaxConfiguration;
+import frc.robot.util.StatusFramePlan;
 
 /**
  * NOTE: To use the Spark Flex / NEO Vortex, replace all instances of "CANSparkMax" with
@@ -29,20 +33,17 @@ public class IntakeIOSparkMax implements IntakeIO {
   private static final double GEAR_RATIO = 1.5;
 
   private final CANSparkMax leader = new CANSparkMax(50, MotorType.kBrushless);
+  private final ConfiguredDevice leaderConfiguration;
   private final RelativeEncoder encoder = leader.getEncoder();
   private final SparkPIDController pid = leader.getPIDController();
 
   public IntakeIOSparkMax() {
-    leader.restoreFactoryDefaults();
+    var config = new SparkMaxConfiguration();
+    config.voltageCompensationVolts = 12.0;
+    config.smartCurrentLimitAmps = 40; // TODO: MAKE SURE WE DONT BLOW FUSE
+    leaderConfiguration = DeviceConfigurator.sparkMax(leader, config);
 
-    leader.setCANTimeout(250);
-
-    leader.setInverted(false);
-
-    leader.enableVoltageCompensation(12.0);
-    leader.setSmartCurrentLimit(40); // TODO: MAKE SURE WE DONT BLOW FUSE
-
-    leader.burnFlash();
+    StatusFramePlan.simpleMotor(leader);
   }
 
   @Override
@@ -76,9 +77,12 @@ public class IntakeIOSparkMax implements IntakeIO {
 
   @Override
   public void configurePID(double kP, double kI, double kD) {
-    pid.setP(kP, 0);
-    pid.setI(kI, 0);
-    pid.setD(kD, 0);
-    pid.setFF(0, 0);
+    leaderConfiguration.afterConfiguration(
+        () -> {
+          pid.setP(kP, 0);
+          pid.setI(kI, 0);
+          pid.setD(kD, 0);
+          pid.setFF(0, 0);
+        });
   }
 }
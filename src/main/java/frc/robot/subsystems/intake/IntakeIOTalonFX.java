@@ -13,7 +13,6 @@
 
 package frc.robot.subsystems.intake;
 
-import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.Slot0Configs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
@@ -22,11 +21,16 @@ import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 import edu.wpi.first.math.util.Units;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceConfigurator.ConfiguredDevice;
+import frc.robot.util.PhoenixSignals;
+import frc.robot.util.StatusFramePlan;
 
 public class IntakeIOTalonFX implements IntakeIO {
   private static final double GEAR_RATIO = 4;
 
   private final TalonFX leader = new TalonFX(50);
+  private final ConfiguredDevice leaderConfiguration;
 
   private final StatusSignal<Double> leaderPosition = leader.getPosition();
   private final StatusSignal<Double> leaderVelocity = leader.getVelocity();
@@ -39,16 +43,17 @@ public class IntakeIOTalonFX implements IntakeIO {
     config.CurrentLimits.StatorCurrentLimitEnable = true;
     config.MotorOutput.NeutralMode = NeutralModeValue.Coast;
     leader.setInverted(true);
-    leader.getConfigurator().apply(config);
+    leaderConfiguration = DeviceConfigurator.talonFX(leader, config);
 
-    BaseStatusSignal.setUpdateFrequencyForAll(
-        50.0, leaderPosition, leaderVelocity, leaderAppliedVolts, leaderCurrent);
-    leader.optimizeBusUtilization();
+    StatusFramePlan.phoenix(leader)
+        .signals(50.0, leaderPosition, leaderVelocity)
+        .lowPrioritySignals(50.0, leaderAppliedVolts, leaderCurrent);
+    PhoenixSignals.register(
+        leader, leaderPosition, leaderVelocity, leaderAppliedVolts, leaderCurrent);
   }
 
   @Override
   public void updateInputs(IntakeIOInputs inputs) {
-    BaseStatusSignal.refreshAll(leaderPosition, leaderVelocity, leaderAppliedVolts, leaderCurrent);
     inputs.positionRad = Units.rotationsToRadians(leaderPosition.getValueAsDouble()) / GEAR_RATIO;
     inputs.velocityRadPerSec =
         Units.rotationsToRadians(leaderVelocity.getValueAsDouble()) / GEAR_RATIO;
@@ -86,6 +91,6 @@ public class IntakeIOTalonFX implements IntakeIO {
     config.kP = kP;
     config.kI = kI;
     config.kD = kD;
-    leader.getConfigurator().apply(config);
+    leaderConfiguration.afterConfiguration(() -> leader.getConfigurator().apply(config, 0.0));
   }
 }
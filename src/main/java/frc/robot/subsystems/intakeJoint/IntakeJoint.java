@@ -18,10 +18,14 @@ import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.math.trajectory.TrapezoidProfile.State;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.ProfiledPIDSubsystem;
+import frc.robot.util.Gains;
+import frc.robot.util.LoopProfiler;
 
 public class IntakeJoint extends ProfiledPIDSubsystem {
   private final IntakeJointIO io;
   private final IntakeJointIOInputsAutoLogged inputs = new IntakeJointIOInputsAutoLogged();
+  private volatile Gains gains = null; // Applied at the next control step
+  private Gains appliedGains = null;
 
   /** Creates a new Intake Joint. */
   public IntakeJoint(IntakeJointIO io) {
@@ -41,9 +45,19 @@ public class IntakeJoint extends ProfiledPIDSubsystem {
   public void periodic() {
     SmartDashboard.putNumber("Current Intake Position", getMeasurement());
     SmartDashboard.putNumber("Target Intake Position", this.getController().getGoal().position);
+
+    // Apply new gains before the controller runs, keeping its state and profile
+    Gains gains = this.gains;
+    if (gains != appliedGains) {
+      gains.applyTo(getController());
+      appliedGains = gains;
+    }
+
     super.periodic();
 
     io.updateInputs(inputs);
+
+    LoopProfiler.recordSubsystem(this);
   }
 
   /** Run open loop at the specified voltage. */
@@ -57,6 +71,14 @@ public class IntakeJoint extends ProfiledPIDSubsystem {
     io.setSpeed(0);
   }
 
+  /**
+   * Sets the PID gains, which take effect at the next control step. The feedforward gains are
+   * unused, the output is a duty cycle.
+   */
+  public void setGains(Gains gains) {
+    this.gains = gains;
+  }
+
   @Override
   protected void useOutput(double output, State setpoint) {
     io.setSpeed(output);
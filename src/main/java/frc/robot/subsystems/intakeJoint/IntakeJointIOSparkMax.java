@@ -17,6 +17,10 @@ import com.revrobotics.CANSparkLowLevel.MotorType;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.RelativeEncoder;
 import edu.wpi.first.math.util.Units;
+import frc.robot.util.DeviceConfigurator;
+import frc.robot.util.DeviceConfigurator.ConfiguredDevice;
+import frc.robot.util.SparkMaxConfiguration;
+import frc.robot.util.StatusFramePlan;
 
 /**
  * NOTE: To use the Spark Flex / NEO Vortex, replace all instances of "CANSparkMax" with
@@ -26,21 +30,18 @@ public class IntakeJointIOSparkMax implements IntakeJointIO {
   private static final double GEAR_RATIO = 48;
 
   private final CANSparkMax leader = new CANSparkMax(53, MotorType.kBrushless);
+  private final ConfiguredDevice leaderConfiguration;
   private final RelativeEncoder encoder = leader.getEncoder();
 
   public IntakeJointIOSparkMax() {
-    leader.restoreFactoryDefaults();
+    var config = new SparkMaxConfiguration();
+    config.inverted = true;
+    config.voltageCompensationVolts = 12.0;
+    config.smartCurrentLimitAmps = 30;
+    leaderConfiguration = DeviceConfigurator.sparkMax(leader, config);
+    leaderConfiguration.afterConfiguration(() -> encoder.setPosition(0));
 
-    leader.setCANTimeout(250);
-
-    leader.enableVoltageCompensation(12.0);
-    leader.setSmartCurrentLimit(30);
-
-    leader.setInverted(true);
-
-    encoder.setPosition(0);
-
-    leader.burnFlash();
+    StatusFramePlan.simpleMotor(leader);
   }
 
   @Override
@@ -59,7 +60,7 @@ public class IntakeJointIOSparkMax implements IntakeJointIO {
 
   @Override
   public void zeroPosition() {
-    encoder.setPosition(0);
+    leaderConfiguration.afterConfiguration(() -> encoder.setPosition(0));
   }
 
   @Override
@@ -0,0 +1,126 @@
+package frc.robot.subsystems.vision;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.util.LoopProfiler;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Collects pose observations from every camera and applies them to the pose estimator once per
+ * cycle, oldest first.
+ *
+ * <p>Observations are rejected when they have no tags, lie outside the field, are older than the
+ * estimator's useful history, or are not newer than the last accepted observation. Standard
+ * deviations grow with the square of the average tag distance and shrink with the number of tags.
+ * Rotation from a single tag is too noisy to use, so it is effectively ignored.
+ */
+public class Vision extends SubsystemBase {
+  private static final double MAX_AGE_SECS = 0.5;
+  private static final double FIELD_LENGTH_METERS = Units.inchesToMeters(651.223);
+  private static final double FIELD_WIDTH_METERS = Units.inchesToMeters(323.277);
+  private static final double LINEAR_STD_DEV_BASELINE = 0.02; // Meters at 1 meter with one tag
+  private static final double ANGULAR_STD_DEV_BASELINE = 0.06; // Radians at 1 meter with one tag
+  private static final double SINGLE_TAG_ANGULAR_STD_DEV = 1e6;
+
+  private final VisionConsumer consumer;
+  private final VisionIO[] io;
+  private final VisionIOInputsAutoLogged[] inputs;
+  private final List<Observation> observations = new ArrayList<>();
+  private final List<Pose2d> acceptedPoses = new ArrayList<>();
+  private final List<Pose2d> rejectedPoses = new ArrayList<>();
+  private double lastAcceptedTimestamp = Double.NEGATIVE_INFINITY;
+
+  public Vision(VisionConsumer consumer, VisionIO... io) {
+    this.consumer = consumer;
+    this.io = io;
+    inputs = new VisionIOInputsAutoLogged[io.length];
+    for (int i = 0; i < io.length; i++) {
+      inputs[i] = new VisionIOInputsAutoLogged();
+    }
+  }
+
+  @Override
+  public void periodic() {
+    for (int i = 0; i < io.length; i++) {
+      io[i].updateInputs(inputs[i]);
+      Logger.processInputs("Vision/Camera" + Integer.toString(i), inputs[i]);
+    }
+
+    // Merge the observations from every camera in timestamp order
+    observations.clear();
+    for (var cameraInputs : inputs) {
+      for (int i = 0; i < cameraInputs.timestamps.length; i++) {
+        observations.add(
+            new Observation(
+                cameraInputs.timestamps[i],
+                new Pose2d(
+                    cameraInputs.posesXMeters[i],
+                    cameraInputs.posesYMeters[i],
+                    new Rotation2d(cameraInputs.posesRotationRad[i])),
+                cameraInputs.tagCounts[i],
+                cameraInputs.averageTagDistancesMeters[i]));
+      }
+    }
+    observations.sort(Comparator.comparingDouble(Observation::timestamp));
+
+    double now = Logger.getTimestamp() / 1e6;
+    acceptedPoses.clear();
+    rejectedPoses.clear();
+    for (var observation : observations) {
+      if (!isValid(observation, now)) {
+        rejectedPoses.add(observation.pose());
+        continue;
+      }
+
+      double distanceFactor =
+          observation.averageTagDistance() * observation.averageTagDistance()
+              / observation.tagCount();
+      double linearStdDev = LINEAR_STD_DEV_BASELINE * distanceFactor;
+      double angularStdDev =
+          observation.tagCount() > 1
+              ? ANGULAR_STD_DEV_BASELINE * distanceFactor
+              : SINGLE_TAG_ANGULAR_STD_DEV;
+      consumer.accept(
+          observation.pose(),
+          observation.timestamp(),
+          VecBuilder.fill(linearStdDev, linearStdDev, angularStdDev));
+      lastAcceptedTimestamp = observation.timestamp();
+      acceptedPoses.add(observation.pose());
+    }
+
+    Logger.recordOutput("Vision/AcceptedPoses", acceptedPoses.toArray(new Pose2d[0]));
+    Logger.recordOutput("Vision/RejectedPoses", rejectedPoses.toArray(new Pose2d[0]));
+
+    LoopProfiler.recordSubsystem(this);
+  }
+
+  private boolean isValid(Observation observation, double now) {
+    Pose2d pose = observation.pose();
+    return observation.tagCount() > 0
+        && observation.timestamp() > lastAcceptedTimestamp
+        && observation.timestamp() >= now - MAX_AGE_SECS
+        && observation.timestamp() <= now
+        && pose.getX() >= 0.0
+        && pose.getX() <= FIELD_LENGTH_METERS
+        && pose.getY() >= 0.0
+        && pose.getY() <= FIELD_WIDTH_METERS;
+  }
+
+  private record Observation(
+      double timestamp, Pose2d pose, long tagCount, double averageTagDistance) {}
+
+  /** Receives the accepted observations, e.g. {@code Drive::addVisionMeasurement}. */
+  @FunctionalInterface
+  public interface VisionConsumer {
+    void accept(Pose2d visionPose, double timestampSecs, Matrix<N3, N1> visionStdDevs);
+  }
+}
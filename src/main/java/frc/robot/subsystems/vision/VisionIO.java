@@ -0,0 +1,20 @@
+package frc.robot.subsystems.vision;
+
+import org.littletonrobotics.junction.AutoLog;
+
+public interface VisionIO {
+  @AutoLog
+  public static class VisionIOInputs {
+    public boolean connected = false;
+    public double[] timestamps = new double[] {};
+    public double[] posesXMeters = new double[] {};
+    public double[] posesYMeters = new double[] {};
+    public double[] posesRotationRad = new double[] {};
+    public long[] tagCounts = new long[] {};
+    public double[] averageTagDistancesMeters = new double[] {};
+    public long droppedObservations = 0;
+  }
+
+  /** Updates the set of loggable inputs with the observations received since the last call. */
+  public default void updateInputs(VisionIOInputs inputs) {}
+}
@@ -0,0 +1,65 @@
+package frc.robot.subsystems.vision;
+
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableValue;
+import edu.wpi.first.wpilibj.RobotController;
+import java.util.EnumSet;
+
+/**
+ * IO implementation for a Limelight running AprilTag localization, read directly from
+ * NetworkTables.
+ *
+ * <p>Each new "botpose_wpiblue" value is received on the NetworkTables listener thread and pushed
+ * into a {@link VisionObservationQueue}, so no frame is missed between robot cycles and the main
+ * thread never waits on the listener.
+ */
+public class VisionIOLimelight implements VisionIO {
+  private static final double DISCONNECTED_TIMEOUT_SECS = 0.25;
+
+  private final DoubleArraySubscriber botposeSubscriber;
+  private final VisionObservationQueue queue = new VisionObservationQueue(32);
+
+  /**
+   * Creates a new VisionIOLimelight.
+   *
+   * @param name The name of the camera's NetworkTables table, e.g. "limelight".
+   */
+  public VisionIOLimelight(String name) {
+    botposeSubscriber =
+        NetworkTableInstance.getDefault()
+            .getTable(name)
+            .getDoubleArrayTopic("botpose_wpiblue")
+            .subscribe(new double[] {});
+    NetworkTableInstance.getDefault()
+        .addListener(
+            botposeSubscriber, EnumSet.of(NetworkTableEvent.Kind.kValueAll), this::onBotpose);
+  }
+
+  /** Called on the NetworkTables listener thread for every new pose. */
+  private void onBotpose(NetworkTableEvent event) {
+    NetworkTableValue value = event.valueData.value;
+    double[] botpose = value.getDoubleArray();
+    // [x, y, z, roll, pitch, yaw, latency (ms), tag count, tag span, average tag distance, ...]
+    if (botpose.length < 10 || botpose[7] < 1) {
+      return;
+    }
+    queue.offer(
+        value.getServerTime() / 1e6 - botpose[6] / 1000.0,
+        botpose[0],
+        botpose[1],
+        Units.degreesToRadians(botpose[5]),
+        (long) botpose[7],
+        botpose[9]);
+  }
+
+  @Override
+  public void updateInputs(VisionIOInputs inputs) {
+    inputs.connected =
+        RobotController.getFPGATime() - botposeSubscriber.getLastChange()
+            < DISCONNECTED_TIMEOUT_SECS * 1e6;
+    queue.drainTo(inputs);
+  }
+}
@@ -0,0 +1,88 @@
+package frc.robot.subsystems.vision;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
+import edu.wpi.first.wpilibj.Timer;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Physics sim implementation of vision IO.
+ *
+ * <p>Observes the simulated robot pose at a fixed frame rate whenever AprilTags are within range,
+ * adding noise that grows with tag distance. Frames are timestamped at capture and delivered after
+ * a fixed latency through the same queue used by real cameras. The noise uses a fixed seed, so sim
+ * runs are repeatable.
+ */
+public class VisionIOSim implements VisionIO {
+  private static final double FRAME_PERIOD_SECS = 1.0 / 30.0;
+  private static final double LATENCY_SECS = 0.035;
+  private static final double MAX_TAG_DISTANCE_METERS = 4.0;
+  private static final int MAX_TAG_COUNT = 4;
+  private static final double LINEAR_NOISE_METERS = 0.02; // Per square meter of tag distance
+  private static final double ANGULAR_NOISE_RAD = 0.03; // Per square meter of tag distance
+
+  private final Supplier<Pose2d> poseSupplier;
+  private final AprilTagFieldLayout fieldLayout =
+      AprilTagFields.k2024Crescendo.loadAprilTagLayoutField();
+  private final TimeInterpolatableBuffer<Pose2d> poseHistory =
+      TimeInterpolatableBuffer.createBuffer(1.0);
+  private final VisionObservationQueue queue = new VisionObservationQueue(32);
+  private final Random random = new Random(3374);
+  private double nextFrameTimestamp = Double.NaN;
+
+  /**
+   * Creates a new VisionIOSim.
+   *
+   * @param poseSupplier Supplies the simulated robot pose.
+   */
+  public VisionIOSim(Supplier<Pose2d> poseSupplier) {
+    this.poseSupplier = poseSupplier;
+  }
+
+  @Override
+  public void updateInputs(VisionIOInputs inputs) {
+    double timestamp = Timer.getFPGATimestamp();
+    poseHistory.addSample(timestamp, poseSupplier.get());
+    if (Double.isNaN(nextFrameTimestamp)) {
+      nextFrameTimestamp = timestamp;
+    }
+
+    // Deliver every frame whose latency has elapsed
+    while (nextFrameTimestamp <= timestamp - LATENCY_SECS) {
+      poseHistory.getSample(nextFrameTimestamp).ifPresent(this::captureFrame);
+      nextFrameTimestamp += FRAME_PERIOD_SECS;
+    }
+
+    inputs.connected = true;
+    queue.drainTo(inputs);
+  }
+
+  private void captureFrame(Pose2d pose) {
+    int tagCount = 0;
+    double totalDistance = 0.0;
+    for (AprilTag tag : fieldLayout.getTags()) {
+      double distance = tag.pose.toPose2d().getTranslation().getDistance(pose.getTranslation());
+      if (distance < MAX_TAG_DISTANCE_METERS && tagCount < MAX_TAG_COUNT) {
+        tagCount++;
+        totalDistance += distance;
+      }
+    }
+    if (tagCount == 0) {
+      return;
+    }
+
+    double averageDistance = totalDistance / tagCount;
+    double noiseScale = averageDistance * averageDistance / tagCount;
+    queue.offer(
+        nextFrameTimestamp,
+        pose.getX() + random.nextGaussian() * LINEAR_NOISE_METERS * noiseScale,
+        pose.getY() + random.nextGaussian() * LINEAR_NOISE_METERS * noiseScale,
+        pose.getRotation().getRadians() + random.nextGaussian() * ANGULAR_NOISE_RAD * noiseScale,
+        tagCount,
+        averageDistance);
+  }
+}
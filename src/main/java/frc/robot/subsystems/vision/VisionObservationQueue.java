@@ -0,0 +1,99 @@
+package frc.robot.subsystems.vision;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded lock-free single-producer/single-consumer queue of pose observations, used to pass
+ * observations from a camera thread to the main robot thread.
+ *
+ * <p>Observations are stored in primitive arrays, so the producer never allocates. When the queue
+ * is full, new observations are dropped and counted rather than blocking the camera thread.
+ */
+public class VisionObservationQueue {
+  private final int mask;
+  private final double[] timestamps;
+  private final double[] posesX;
+  private final double[] posesY;
+  private final double[] posesRotation;
+  private final long[] tagCounts;
+  private final double[] averageTagDistances;
+
+  private final AtomicLong writeSequence = new AtomicLong();
+  private final AtomicLong readSequence = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+
+  /**
+   * Creates a new queue.
+   *
+   * @param capacity The maximum number of observations held, must be a power of two.
+   */
+  public VisionObservationQueue(int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two");
+    }
+    mask = capacity - 1;
+    timestamps = new double[capacity];
+    posesX = new double[capacity];
+    posesY = new double[capacity];
+    posesRotation = new double[capacity];
+    tagCounts = new long[capacity];
+    averageTagDistances = new double[capacity];
+  }
+
+  /**
+   * Adds an observation. Only called by the producer.
+   *
+   * @return Whether the observation was added, false if the queue was full.
+   */
+  public boolean offer(
+      double timestamp,
+      double xMeters,
+      double yMeters,
+      double rotationRad,
+      long tagCount,
+      double averageTagDistanceMeters) {
+    long sequence = writeSequence.getPlain();
+    if (sequence - readSequence.getAcquire() > mask) {
+      dropped.incrementAndGet();
+      return false;
+    }
+    int index = (int) sequence & mask;
+    timestamps[index] = timestamp;
+    posesX[index] = xMeters;
+    posesY[index] = yMeters;
+    posesRotation[index] = rotationRad;
+    tagCounts[index] = tagCount;
+    averageTagDistances[index] = averageTagDistanceMeters;
+    writeSequence.setRelease(sequence + 1);
+    return true;
+  }
+
+  /**
+   * Moves every queued observation into the inputs, oldest first. Only called by the consumer.
+   *
+   * <p>New arrays are created for each drain, since the logger may still hold the previous ones.
+   */
+  public void drainTo(VisionIO.VisionIOInputs inputs) {
+    long start = readSequence.getPlain();
+    long end = writeSequence.getAcquire();
+    int count = (int) (end - start);
+
+    inputs.timestamps = new double[count];
+    inputs.posesXMeters = new double[count];
+    inputs.posesYMeters = new double[count];
+    inputs.posesRotationRad = new double[count];
+    inputs.tagCounts = new long[count];
+    inputs.averageTagDistancesMeters = new double[count];
+    for (int i = 0; i < count; i++) {
+      int index = (int) (start + i) & mask;
+      inputs.timestamps[i] = timestamps[index];
+      inputs.posesXMeters[i] = posesX[index];
+      inputs.posesYMeters[i] = posesY[index];
+      inputs.posesRotationRad[i] = posesRotation[index];
+      inputs.tagCounts[i] = tagCounts[index];
+      inputs.averageTagDistancesMeters[i] = averageTagDistances[index];
+    }
+    readSequence.setRelease(end);
+    inputs.droppedObservations = dropped.get();
+  }
+}
@@ -0,0 +1,498 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.littletonrobotics.junction.LogDataReceiver;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.LogTable.LogValue;
+
+/**
+ * Writes WPILOG files like AdvantageKit's WPILOGWriter, but never waits for the disk.
+ *
+ * <p>Each cycle's changed values are encoded into an off-heap ring buffer, and a writer thread
+ * drains the ring to the file in large sequential writes, with an fsync every {@link
+ * #FSYNC_PERIOD_SECS}. The file is created and renamed on the writer thread too. When the disk
+ * falls behind and the ring is more than half full, outputs ("/RealOutputs/") are left out, since
+ * replay regenerates them from the inputs. When even the inputs don't fit, the whole cycle is
+ * dropped. Values that were left out are written again in the next cycle that has room for them, if
+ * they are still different from what the file last recorded.
+ *
+ * <p>The queue depth, the longest write and the longest fsync of each cycle, and the dropped cycles
+ * are written to the file under "/AsyncLogWriter/".
+ */
+public class AsyncWPILOGWriter implements LogDataReceiver {
+  private static final int RING_CAPACITY = 8 * 1024 * 1024;
+  private static final int INITIAL_CYCLE_CAPACITY = 64 * 1024;
+  private static final double FSYNC_PERIOD_SECS = 1.0;
+  private static final long IDLE_WAIT_NANOS = 100_000_000; // Batches about five cycles per write
+  private static final String LOW_PRIORITY_PREFIX = "/RealOutputs/";
+  private static final String METRICS_PREFIX = "/AsyncLogWriter/";
+  private static final String EXTRA_HEADER = "AdvantageKit";
+  private static final byte[] ENTRY_METADATA =
+      "{\"source\":\"AdvantageKit\"}".getBytes(StandardCharsets.UTF_8);
+  private static final long MIN_VALID_TIME_MILLIS = 1638334800000L; // December 1, 2021
+  private static final DateTimeFormatter FILENAME_FORMATTER =
+      DateTimeFormatter.ofPattern("yy-MM-dd_HH-mm-ss");
+
+  private final Path directory;
+  private final boolean autoRename;
+
+  // Ring shared with the writer thread, positions only ever increase
+  private final int ringCapacity;
+  private final ByteBuffer ring;
+  private final AtomicLong readPosition = new AtomicLong();
+  private final AtomicLong writePosition = new AtomicLong();
+  private final AtomicLong maxWriteNanos = new AtomicLong();
+  private final AtomicLong maxFsyncNanos = new AtomicLong();
+  private volatile String pendingFilename = null;
+  private volatile boolean running = false;
+  private Thread writerThread;
+
+  // Encoder state, only used by the thread calling putTable
+  private final ByteBuffer producerRing;
+  private ByteBuffer cycle =
+      ByteBuffer.allocateDirect(INITIAL_CYCLE_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final List<Entry> changedEntries = new ArrayList<>();
+  private final List<LogValue> changedValues = new ArrayList<>();
+  private int nextEntryId = 1;
+  private final int timestampId = nextEntryId++;
+  private final int queueDepthId = nextEntryId++;
+  private final int writeLatencyId = nextEntryId++;
+  private final int fsyncLatencyId = nextEntryId++;
+  private final int droppedCyclesId = nextEntryId++;
+  private final int droppedOutputCyclesId = nextEntryId++;
+  private long droppedCycles = 0;
+  private long droppedOutputCycles = 0;
+  private String filename;
+  private LocalDateTime logDate = null;
+
+  /**
+   * Creates a writer for a log file, or for a new log in a directory. Logs in a directory are
+   * renamed after the date, and the match once connected to the FMS, like AdvantageKit's.
+   */
+  public AsyncWPILOGWriter(String path) {
+    this(path, RING_CAPACITY);
+  }
+
+  /** Creates a writer with a smaller ring, so tests can fill it. */
+  AsyncWPILOGWriter(String path, int ringCapacity) {
+    this.ringCapacity = ringCapacity;
+    ring = ByteBuffer.allocateDirect(ringCapacity).order(ByteOrder.LITTLE_ENDIAN);
+    producerRing = ring.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    Path logPath = Path.of(path);
+    autoRename = !path.endsWith(".wpilog");
+    if (autoRename) {
+      directory = logPath;
+      filename = String.format("akit_%08x.wpilog", ThreadLocalRandom.current().nextInt());
+    } else {
+      directory = logPath.toAbsolutePath().getParent();
+      filename = logPath.getFileName().toString();
+    }
+  }
+
+  @Override
+  public void start() {
+    putHeader();
+    startWriter();
+  }
+
+  /** Queues the header, then the entries that are written every cycle. */
+  void putHeader() {
+    reserve(64);
+    cycle.put("WPILOG".getBytes(StandardCharsets.US_ASCII)).putShort((short) 0x0100);
+    byte[] extraHeader = EXTRA_HEADER.getBytes(StandardCharsets.UTF_8);
+    cycle.putInt(extraHeader.length).put(extraHeader);
+    putStart(timestampId, "/Timestamp", "int64", 0);
+    putStart(queueDepthId, METRICS_PREFIX + "QueueDepthBytes", "int64", 0);
+    putStart(writeLatencyId, METRICS_PREFIX + "MaxWriteMs", "double", 0);
+    putStart(fsyncLatencyId, METRICS_PREFIX + "MaxFsyncMs", "double", 0);
+    putStart(droppedCyclesId, METRICS_PREFIX + "DroppedCycles", "int64", 0);
+    putStart(droppedOutputCyclesId, METRICS_PREFIX + "DroppedOutputCycles", "int64", 0);
+    cycle.flip();
+    copyToRing(cycle.limit());
+  }
+
+  /** Starts draining the ring. Until then, cycles only queue up, as if the disk had stalled. */
+  void startWriter() {
+    running = true;
+    writerThread = new Thread(this::runWriter, "AsyncWPILOGWriter");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  @Override
+  public void end() {
+    running = false;
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void putTable(LogTable table) {
+    if (autoRename) {
+      updateFilename();
+    }
+
+    // Encode the values written every cycle, then the changed inputs, then the changed outputs
+    long timestamp = table.getTimestamp();
+    long queueDepth = writePosition.get() - readPosition.get();
+    cycle.clear();
+    putInt64(timestampId, timestamp, timestamp);
+    putInt64(queueDepthId, timestamp, queueDepth);
+    putDouble(writeLatencyId, timestamp, maxWriteNanos.getAndSet(0) / 1e6);
+    putDouble(fsyncLatencyId, timestamp, maxFsyncNanos.getAndSet(0) / 1e6);
+    putInt64(droppedCyclesId, timestamp, droppedCycles);
+    putInt64(droppedOutputCyclesId, timestamp, droppedOutputCycles);
+    changedEntries.clear();
+    changedValues.clear();
+    Map<String, LogValue> values = table.getAll(false);
+    for (var field : values.entrySet()) {
+      if (!field.getKey().startsWith(LOW_PRIORITY_PREFIX)) {
+        putIfChanged(field.getKey(), field.getValue(), timestamp);
+      }
+    }
+    int inputsSize = cycle.position();
+    int inputsChangedCount = changedEntries.size();
+    for (var field : values.entrySet()) {
+      if (field.getKey().startsWith(LOW_PRIORITY_PREFIX)) {
+        putIfChanged(field.getKey(), field.getValue(), timestamp);
+      }
+    }
+
+    // Only fill the second half of the ring with inputs, leaving the outputs out
+    int size = cycle.position();
+    int committedCount;
+    if (queueDepth + size <= ringCapacity / 2) {
+      committedCount = changedEntries.size();
+    } else if (queueDepth + inputsSize <= ringCapacity) {
+      size = inputsSize;
+      committedCount = inputsChangedCount;
+      droppedOutputCycles++;
+    } else {
+      droppedCycles++;
+      return;
+    }
+    cycle.flip();
+    copyToRing(size);
+    for (int i = 0; i < committedCount; i++) {
+      Entry entry = changedEntries.get(i);
+      entry.started = true;
+      entry.lastValue = changedValues.get(i);
+    }
+  }
+
+  /** Encodes a value if it differs from the last one in the file, starting its entry if needed. */
+  private void putIfChanged(String key, LogValue value, long timestamp) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      entry = new Entry(nextEntryId++);
+      entries.put(key, entry);
+    }
+    if (entry.started && value.equals(entry.lastValue)) {
+      return;
+    }
+    if (!entry.started) {
+      putStart(entry.id, key, value.getWPILOGType(), timestamp);
+    }
+    putValue(entry.id, timestamp, value);
+    changedEntries.add(entry);
+    changedValues.add(value);
+  }
+
+  private void putValue(int id, long timestamp, LogValue value) {
+    switch (value.type) {
+      case Raw:
+        byte[] raw = value.getRaw();
+        putRecordHeader(id, raw.length, timestamp);
+        cycle.put(raw);
+        break;
+      case Boolean:
+        putRecordHeader(id, 1, timestamp);
+        cycle.put((byte) (value.getBoolean() ? 1 : 0));
+        break;
+      case Integer:
+        putInt64(id, timestamp, value.getInteger());
+        break;
+      case Float:
+        putRecordHeader(id, 4, timestamp);
+        cycle.putFloat(value.getFloat());
+        break;
+      case Double:
+        putDouble(id, timestamp, value.getDouble());
+        break;
+      case String:
+        byte[] string = value.getString().getBytes(StandardCharsets.UTF_8);
+        putRecordHeader(id, string.length, timestamp);
+        cycle.put(string);
+        break;
+      case BooleanArray:
+        boolean[] booleans = value.getBooleanArray();
+        putRecordHeader(id, booleans.length, timestamp);
+        for (boolean element : booleans) {
+          cycle.put((byte) (element ? 1 : 0));
+        }
+        break;
+      case IntegerArray:
+        long[] integers = value.getIntegerArray();
+        putRecordHeader(id, integers.length * 8, timestamp);
+        cycle.asLongBuffer().put(integers);
+        cycle.position(cycle.position() + integers.length * 8);
+        break;
+      case FloatArray:
+        float[] floats = value.getFloatArray();
+        putRecordHeader(id, floats.length * 4, timestamp);
+        cycle.asFloatBuffer().put(floats);
+        cycle.position(cycle.position() + floats.length * 4);
+        break;
+      case DoubleArray:
+        double[] doubles = value.getDoubleArray();
+        putRecordHeader(id, doubles.length * 8, timestamp);
+        cycle.asDoubleBuffer().put(doubles);
+        cycle.position(cycle.position() + doubles.length * 8);
+        break;
+      case StringArray:
+        String[] strings = value.getStringArray();
+        byte[][] encoded = new byte[strings.length][];
+        int size = 4;
+        for (int i = 0; i < strings.length; i++) {
+          encoded[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+          size += 4 + encoded[i].length;
+        }
+        putRecordHeader(id, size, timestamp);
+        cycle.putInt(strings.length);
+        for (byte[] element : encoded) {
+          cycle.putInt(element.length).put(element);
+        }
+        break;
+    }
+  }
+
+  private void putInt64(int id, long timestamp, long value) {
+    putRecordHeader(id, 8, timestamp);
+    cycle.putLong(value);
+  }
+
+  private void putDouble(int id, long timestamp, double value) {
+    putRecordHeader(id, 8, timestamp);
+    cycle.putDouble(value);
+  }
+
+  /** Encodes the control record that starts an entry. */
+  private void putStart(int id, String key, String type, long timestamp) {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+    int size = 1 + 4 + 4 + keyBytes.length + 4 + typeBytes.length + 4 + ENTRY_METADATA.length;
+    putRecordHeader(0, size, timestamp);
+    cycle.put((byte) 0).putInt(id);
+    cycle.putInt(keyBytes.length).put(keyBytes);
+    cycle.putInt(typeBytes.length).put(typeBytes);
+    cycle.putInt(ENTRY_METADATA.length).put(ENTRY_METADATA);
+  }
+
+  /**
+   * Encodes a record header with the fewest bytes for each field, and makes room for the payload.
+   */
+  private void putRecordHeader(int id, int payloadSize, long timestamp) {
+    int idLength = byteLength(id & 0xffffffffL);
+    int sizeLength = byteLength(payloadSize & 0xffffffffL);
+    int timestampLength = byteLength(timestamp);
+    reserve(1 + idLength + sizeLength + timestampLength + payloadSize);
+    cycle.put((byte) ((idLength - 1) | (sizeLength - 1) << 2 | (timestampLength - 1) << 4));
+    putVariableLength(id, idLength);
+    putVariableLength(payloadSize, sizeLength);
+    putVariableLength(timestamp, timestampLength);
+  }
+
+  private void putVariableLength(long value, int length) {
+    for (int i = 0; i < length; i++) {
+      cycle.put((byte) (value >>> (i * 8)));
+    }
+  }
+
+  private static int byteLength(long value) {
+    int length = 1;
+    while (length < 8 && (value >>> (length * 8)) != 0) {
+      length++;
+    }
+    return length;
+  }
+
+  /** Grows the cycle buffer if it can't hold another number of bytes. */
+  private void reserve(int bytes) {
+    if (cycle.remaining() >= bytes) {
+      return;
+    }
+    int capacity = cycle.capacity();
+    while (capacity - cycle.position() < bytes) {
+      capacity *= 2;
+    }
+    ByteBuffer grown = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    cycle.flip();
+    grown.put(cycle);
+    cycle = grown;
+  }
+
+  /** Copies the start of the flipped cycle buffer to the ring, which must have room for it. */
+  private void copyToRing(int size) {
+    long position = writePosition.get();
+    int offset = (int) (position % ringCapacity);
+    int firstPart = Math.min(size, ringCapacity - offset);
+    cycle.limit(firstPart);
+    producerRing.position(offset);
+    producerRing.put(cycle);
+    if (firstPart < size) {
+      cycle.limit(size);
+      producerRing.position(0);
+      producerRing.put(cycle);
+    }
+    writePosition.set(position + size);
+    if (position + size - readPosition.get() > ringCapacity / 4) {
+      LockSupport.unpark(writerThread);
+    }
+  }
+
+  /** Names the log after the date once it is known, then after the match. */
+  private void updateFilename() {
+    if (logDate == null) {
+      if (!DriverStation.isDSAttached() || System.currentTimeMillis() < MIN_VALID_TIME_MILLIS) {
+        return;
+      }
+      logDate = LocalDateTime.now();
+    }
+    String name = "akit_" + logDate.format(FILENAME_FORMATTER);
+    if (DriverStation.isFMSAttached()) {
+      name +=
+          "_"
+              + DriverStation.getEventName()
+              + "_"
+              + DriverStation.getMatchType().name().charAt(0)
+              + DriverStation.getMatchNumber();
+    }
+    name += ".wpilog";
+    if (!name.equals(filename)) {
+      filename = name;
+      pendingFilename = name;
+    }
+  }
+
+  /**
+   * Drains the ring to the file until the writer is ended and the ring is empty. The writer sleeps
+   * between writes unless the ring is filling up, so each write covers several cycles.
+   */
+  private void runWriter() {
+    ByteBuffer consumerRing = ring.duplicate();
+    String currentFilename = filename;
+    FileChannel channel = null;
+    try {
+      Files.createDirectories(directory);
+      channel =
+          FileChannel.open(
+              directory.resolve(currentFilename),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException e) {
+      DriverStation.reportError("Failed to open log in " + directory + ": " + e, false);
+    }
+
+    long lastSyncNanos = System.nanoTime();
+    while (true) {
+      boolean wasRunning = running;
+      long position = readPosition.get();
+      long available = writePosition.get() - position;
+      if (available > 0) {
+        int offset = (int) (position % ringCapacity);
+        int size = (int) Math.min(available, ringCapacity - offset);
+        consumerRing.limit(offset + size).position(offset);
+        if (channel != null) {
+          long startNanos = System.nanoTime();
+          try {
+            while (consumerRing.hasRemaining()) {
+              channel.write(consumerRing);
+            }
+          } catch (IOException e) {
+            DriverStation.reportError("Failed to write log, logging stopped: " + e, false);
+            channel = close(channel);
+          }
+          maxWriteNanos.accumulateAndGet(System.nanoTime() - startNanos, Math::max);
+        }
+        readPosition.set(position + size);
+        available -= size;
+      }
+
+      boolean finished = !wasRunning && available == 0;
+      if (channel != null) {
+        String newFilename = pendingFilename;
+        if (newFilename != null && !newFilename.equals(currentFilename)) {
+          try {
+            Files.move(directory.resolve(currentFilename), directory.resolve(newFilename));
+            currentFilename = newFilename;
+          } catch (IOException e) {
+            DriverStation.reportError("Failed to rename log: " + e, false);
+            pendingFilename = null;
+          }
+        }
+        if (finished || System.nanoTime() - lastSyncNanos > FSYNC_PERIOD_SECS * 1e9) {
+          long startNanos = System.nanoTime();
+          try {
+            channel.force(false);
+          } catch (IOException e) {
+            DriverStation.reportError("Failed to sync log: " + e, false);
+          }
+          lastSyncNanos = System.nanoTime();
+          maxFsyncNanos.accumulateAndGet(lastSyncNanos - startNanos, Math::max);
+        }
+      }
+      if (finished) {
+        close(channel);
+        return;
+      }
+      if (available == 0) {
+        LockSupport.parkNanos(IDLE_WAIT_NANOS);
+      }
+    }
+  }
+
+  private static FileChannel close(FileChannel channel) {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // Nothing left to write to
+      }
+    }
+    return null;
+  }
+
+  /** A log entry, which is started in the file the first time one of its values is written. */
+  private static class Entry {
+    private final int id;
+    private boolean started = false;
+    private LogValue lastValue = null;
+
+    private Entry(int id) {
+      this.id = id;
+    }
+  }
+}
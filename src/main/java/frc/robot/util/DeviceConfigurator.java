@@ -0,0 +1,227 @@
+package frc.robot.util;
+
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.configs.CANcoderConfiguration;
+import com.ctre.phoenix6.configs.ParentConfiguration;
+import com.ctre.phoenix6.configs.Pigeon2Configuration;
+import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.hardware.CANcoder;
+import com.ctre.phoenix6.hardware.ParentDevice;
+import com.ctre.phoenix6.hardware.Pigeon2;
+import com.ctre.phoenix6.hardware.TalonFX;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Preferences;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Configures motor controllers and sensors at startup, several devices at a time, instead of one
+ * after another in the IO constructors.
+ *
+ * <p>The current settings of every device are read back first, and devices that already match
+ * their configuration are left untouched. SparkMax settings are only partly readable, so a
+ * fingerprint of the last configuration burned to each SparkMax is also kept in {@link
+ * Preferences}. Unchanged SparkMaxes skip "restoreFactoryDefaults" and "burnFlash", which are the
+ * slowest steps.
+ *
+ * <p>Calls that change device settings after startup (brake mode, gains, sensor positions) must go
+ * through {@link ConfiguredDevice#afterConfiguration(Runnable)}, so they are never overwritten by
+ * a configuration still in progress. {@link #awaitAll()} is called once after every IO is created,
+ * and logs the time spent on each device.
+ */
+public final class DeviceConfigurator {
+  private static final int THREAD_COUNT = 8;
+  private static final int SPARK_MAX_CAN_TIMEOUT_MS = 250;
+
+  private static final ExecutorService executor =
+      Executors.newFixedThreadPool(
+          THREAD_COUNT,
+          runnable -> {
+            Thread thread = new Thread(runnable, "DeviceConfigurator");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private static final List<ConfiguredDevice> devices = new ArrayList<>();
+  private static long startNanos = 0;
+
+  private DeviceConfigurator() {}
+
+  /** Configures a SparkMax, restoring the factory defaults first if anything changed. */
+  public static ConfiguredDevice sparkMax(CANSparkMax sparkMax, SparkMaxConfiguration config) {
+    return submit(
+        "SparkMax" + sparkMax.getDeviceId(), () -> configureSparkMax(sparkMax, config));
+  }
+
+  /** Configures a TalonFX, replacing every setting. */
+  public static ConfiguredDevice talonFX(TalonFX talon, TalonFXConfiguration config) {
+    var configurator = talon.getConfigurator();
+    return phoenix(
+        talon, config, new TalonFXConfiguration(), configurator::refresh, configurator::apply);
+  }
+
+  /** Configures a CANcoder, replacing every setting. */
+  public static ConfiguredDevice cancoder(CANcoder cancoder, CANcoderConfiguration config) {
+    var configurator = cancoder.getConfigurator();
+    return phoenix(
+        cancoder, config, new CANcoderConfiguration(), configurator::refresh, configurator::apply);
+  }
+
+  /** Configures a Pigeon 2, replacing every setting. */
+  public static ConfiguredDevice pigeon2(Pigeon2 pigeon, Pigeon2Configuration config) {
+    var configurator = pigeon.getConfigurator();
+    return phoenix(
+        pigeon, config, new Pigeon2Configuration(), configurator::refresh, configurator::apply);
+  }
+
+  /**
+   * Waits for every device to be configured and logs the time spent on each under
+   * "DeviceConfiguration/". Failures are reported to the driver station, the robot starts anyway.
+   */
+  public static void awaitAll() {
+    if (devices.isEmpty()) {
+      return;
+    }
+
+    double deviceMsSum = 0.0;
+    for (var device : devices) {
+      String result;
+      try {
+        result = device.configuration.join() ? "applied" : "unchanged";
+      } catch (CompletionException e) {
+        result = "failed";
+        DriverStation.reportError(
+            "Failed to configure " + device.name + ": " + e.getCause(),
+            e.getCause().getStackTrace());
+      }
+      device.pending.join();
+      deviceMsSum += device.durationMs;
+      Logger.recordOutput("DeviceConfiguration/" + device.name + "/DurationMs", device.durationMs);
+      Logger.recordOutput("DeviceConfiguration/" + device.name + "/Result", result);
+    }
+    Logger.recordOutput("DeviceConfiguration/TotalMs", (System.nanoTime() - startNanos) / 1e6);
+    Logger.recordOutput("DeviceConfiguration/SequentialMs", deviceMsSum);
+  }
+
+  private static boolean configureSparkMax(CANSparkMax sparkMax, SparkMaxConfiguration config) {
+    String key = "DeviceConfig/SparkMax" + sparkMax.getDeviceId();
+    String fingerprint = config.toString();
+    RelativeEncoder encoder = sparkMax.getEncoder();
+    sparkMax.setCANTimeout(SPARK_MAX_CAN_TIMEOUT_MS);
+    try {
+      // The idle mode isn't read back, since brake mode is also switched at runtime without
+      // burning it. The fingerprint still covers it.
+      boolean unchanged =
+          fingerprint.equals(Preferences.getString(key, ""))
+              && sparkMax.getInverted() == config.inverted
+              && sparkMax.getVoltageCompensationNominalVoltage()
+                  == config.voltageCompensationVolts
+              && encoder.getMeasurementPeriod() == config.encoderMeasurementPeriodMs
+              && encoder.getAverageDepth() == config.encoderAverageDepth;
+      if (unchanged) {
+        return false;
+      }
+
+      sparkMax.restoreFactoryDefaults();
+      sparkMax.setInverted(config.inverted);
+      sparkMax.setIdleMode(config.idleMode);
+      sparkMax.setSmartCurrentLimit(config.smartCurrentLimitAmps);
+      if (config.voltageCompensationVolts > 0.0) {
+        sparkMax.enableVoltageCompensation(config.voltageCompensationVolts);
+      } else {
+        sparkMax.disableVoltageCompensation();
+      }
+      encoder.setMeasurementPeriod(config.encoderMeasurementPeriodMs);
+      encoder.setAverageDepth(config.encoderAverageDepth);
+      sparkMax.burnFlash();
+      Preferences.setString(key, fingerprint);
+      return true;
+    } finally {
+      // Calls from the main loop shouldn't wait for confirmation
+      sparkMax.setCANTimeout(0);
+    }
+  }
+
+  private static <T extends ParentConfiguration> ConfiguredDevice phoenix(
+      ParentDevice device,
+      T config,
+      T current,
+      Function<T, StatusCode> refresh,
+      Function<T, StatusCode> apply) {
+    return submit(
+        device.getClass().getSimpleName() + device.getDeviceID(),
+        () -> {
+          if (refresh.apply(current).isOK() && current.serialize().equals(config.serialize())) {
+            return false;
+          }
+          StatusCode status = apply.apply(config);
+          if (!status.isOK()) {
+            throw new IllegalStateException("Configuration not applied: " + status);
+          }
+          return true;
+        });
+  }
+
+  private static ConfiguredDevice submit(String name, Supplier<Boolean> configure) {
+    if (devices.isEmpty()) {
+      startNanos = System.nanoTime();
+    }
+    var device = new ConfiguredDevice(name);
+    device.configuration =
+        CompletableFuture.supplyAsync(
+            () -> {
+              long deviceStartNanos = System.nanoTime();
+              try {
+                return configure.get();
+              } finally {
+                device.durationMs = (System.nanoTime() - deviceStartNanos) / 1e6;
+              }
+            },
+            executor);
+    device.pending = device.configuration.handle((changed, error) -> null);
+    devices.add(device);
+    return device;
+  }
+
+  /** A device whose configuration may still be in progress. */
+  public static class ConfiguredDevice {
+    private final String name;
+    private CompletableFuture<Boolean> configuration;
+    private CompletableFuture<Void> pending;
+    private double durationMs = 0.0;
+
+    private ConfiguredDevice(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Runs an action that changes the device settings. The action runs immediately once the
+     * configuration is done, and is queued after it until then. Since it then runs on the calling
+     * thread, usually the main loop, the action shouldn't wait for the device to confirm (Phoenix
+     * timeouts of 0).
+     */
+    public synchronized void afterConfiguration(Runnable action) {
+      if (pending.isDone()) {
+        action.run();
+        return;
+      }
+      pending =
+          pending
+              .thenRun(action)
+              .exceptionally(
+                  error -> {
+                    DriverStation.reportError(
+                        "Failed to update " + name + ": " + error.getCause(), false);
+                    return null;
+                  });
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+
+/**
+ * Immutable set of PID and feedforward gains. Subsystems replace the whole set at once, so a
+ * control step never uses a mix of old and new gains, and update their controllers in place.
+ */
+public record Gains(double kP, double kI, double kD, double kS, double kV) {
+  /** Creates gains without feedforward. */
+  public static Gains pid(double kP, double kI, double kD) {
+    return new Gains(kP, kI, kD, 0.0, 0.0);
+  }
+
+  /** Returns the feedforward for a velocity, like a SimpleMotorFeedforward without kA. */
+  public double feedforward(double velocity) {
+    return kS * Math.signum(velocity) + kV * velocity;
+  }
+
+  /** Returns whether the PID gains differ from another set, which may be null. */
+  public boolean pidDiffers(Gains other) {
+    return other == null || kP != other.kP || kI != other.kI || kD != other.kD;
+  }
+
+  /** Updates the PID gains of a controller, keeping its integrator and previous error. */
+  public void applyTo(PIDController controller) {
+    controller.setPID(kP, kI, kD);
+  }
+
+  /** Updates the PID gains of a controller, keeping its integrator, previous error and profile. */
+  public void applyTo(ProfiledPIDController controller) {
+    controller.setPID(kP, kI, kD);
+  }
+}
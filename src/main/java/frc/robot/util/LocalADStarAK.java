@@ -7,8 +7,13 @@ import com.pathplanner.lib.path.PathPoint;
 import com.pathplanner.lib.pathfinding.LocalADStar;
 import com.pathplanner.lib.pathfinding.Pathfinder;
 import edu.wpi.first.math.Pair;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.littletonrobotics.junction.LogTable;
@@ -18,8 +23,44 @@ import org.littletonrobotics.junction.inputs.LoggableInputs;
 // NOTE: This file is available at
 // https://gist.github.com/mjansen4857/a8024b55eb427184dbd10ae8923bd57d
 
+/**
+ * Pathfinder that logs its results, so replays follow the same paths without running the search.
+ *
+ * <p>Goals in {@link NavGrid#COMMON_GOALS} use the precomputed cost-to-go fields of the compiled
+ * navgrid, so their paths are ready as soon as the goal is set. Other goals use PathPlanner's
+ * LocalADStar on its own thread.
+ *
+ * <p>Dynamic obstacles are logged, and only cause a replan when they cover different grid cells.
+ * The fields of cached goals are then repaired around the changed cells instead of being searched
+ * again.
+ */
 public class LocalADStarAK implements Pathfinder {
   private final ADStarIO io = new ADStarIO();
+  private final NavGrid navGrid = Logger.hasReplaySource() ? null : loadNavGrid();
+
+  private Translation2d startPosition = new Translation2d();
+  private Translation2d goalPosition = new Translation2d();
+  private final long[] dynamicObstacleCells = navGrid != null ? navGrid.createCellSet() : null;
+  private final long[] newDynamicObstacleCells = navGrid != null ? navGrid.createCellSet() : null;
+  private final NavGrid.DynamicField[] dynamicFields =
+      new NavGrid.DynamicField[NavGrid.COMMON_GOALS.size()];
+  private int cachedGoal = -1;
+  private List<Translation2d> cachedRoute = List.of();
+  private boolean isNewCachedRouteAvailable = false;
+  private long goalSetNanos = 0;
+  private boolean timeToPathRecorded = true;
+
+  private static NavGrid loadNavGrid() {
+    long startNanos = System.nanoTime();
+    try {
+      NavGrid navGrid = NavGrid.load();
+      Logger.recordOutput("LocalADStarAK/NavGridLoadMs", (System.nanoTime() - startNanos) / 1e6);
+      return navGrid;
+    } catch (IOException e) {
+      DriverStation.reportError("Failed to load navgrid, no goals are cached: " + e, false);
+      return null;
+    }
+  }
 
   /**
    * Get if a new path has been calculated since the last time a path was retrieved
@@ -28,8 +69,12 @@ public class LocalADStarAK implements Pathfinder {
    */
   @Override
   public boolean isNewPathAvailable() {
-    if (Logger.hasReplaySource()) {
-      io.updateIsNewPathAvailable();
+    if (!Logger.hasReplaySource()) {
+      if (cachedGoal >= 0) {
+        io.isNewPathAvailable = isNewCachedRouteAvailable;
+      } else {
+        io.updateIsNewPathAvailable();
+      }
     }
 
     Logger.processInputs("LocalADStarAK", io);
@@ -46,8 +91,13 @@ public class LocalADStarAK implements Pathfinder {
    */
   @Override
   public PathPlannerPath getCurrentPath(PathConstraints constraints, GoalEndState goalEndState) {
-    if (Logger.hasReplaySource()) {
-      io.updateCurrentPathPoints(constraints, goalEndState);
+    if (!Logger.hasReplaySource()) {
+      if (cachedGoal >= 0) {
+        io.currentPathPoints = createPathPoints(cachedRoute, constraints, goalEndState);
+        isNewCachedRouteAvailable = false;
+      } else {
+        io.updateCurrentPathPoints(constraints, goalEndState);
+      }
     }
 
     Logger.processInputs("LocalADStarAK", io);
@@ -56,6 +106,11 @@ public class LocalADStarAK implements Pathfinder {
       return null;
     }
 
+    if (!timeToPathRecorded && !Logger.hasReplaySource()) {
+      Logger.recordOutput("LocalADStarAK/TimeToPathMs", (System.nanoTime() - goalSetNanos) / 1e6);
+      timeToPathRecorded = true;
+    }
+
     return PathPlannerPath.fromPathPoints(io.currentPathPoints, constraints, goalEndState);
   }
 
@@ -67,8 +122,13 @@ public class LocalADStarAK implements Pathfinder {
    */
   @Override
   public void setStartPosition(Translation2d startPosition) {
-    if (Logger.hasReplaySource()) {
-      io.adStar.setStartPosition(startPosition);
+    if (!Logger.hasReplaySource()) {
+      this.startPosition = startPosition;
+      if (cachedGoal >= 0) {
+        planCachedRoute();
+      } else {
+        io.adStar.setStartPosition(startPosition);
+      }
     }
   }
 
@@ -80,8 +140,17 @@ public class LocalADStarAK implements Pathfinder {
    */
   @Override
   public void setGoalPosition(Translation2d goalPosition) {
-    if (Logger.hasReplaySource()) {
-      io.adStar.setGoalPosition(goalPosition);
+    if (!Logger.hasReplaySource()) {
+      this.goalPosition = goalPosition;
+      goalSetNanos = System.nanoTime();
+      timeToPathRecorded = false;
+      cachedGoal = navGrid != null ? navGrid.findGoal(goalPosition) : -1;
+      if (cachedGoal >= 0) {
+        planCachedRoute();
+      } else {
+        io.adStar.setStartPosition(startPosition);
+        io.adStar.setGoalPosition(goalPosition);
+      }
     }
   }
 
@@ -96,13 +165,71 @@ public class LocalADStarAK implements Pathfinder {
   @Override
   public void setDynamicObstacles(
       List<Pair<Translation2d, Translation2d>> obs, Translation2d currentRobotPos) {
+    if (Logger.hasReplaySource()) {
+      Logger.processInputs("LocalADStarAK", io);
+      return;
+    }
+    io.updateDynamicObstacles(obs);
+    Logger.processInputs("LocalADStarAK", io);
+
+    // Only replan when an obstacle covers different cells
+    if (navGrid != null) {
+      navGrid.markBoxes(obs, newDynamicObstacleCells);
+      if (Arrays.equals(newDynamicObstacleCells, dynamicObstacleCells)) {
+        return;
+      }
+      System.arraycopy(
+          newDynamicObstacleCells, 0, dynamicObstacleCells, 0, dynamicObstacleCells.length);
+    }
     io.adStar.setDynamicObstacles(obs, currentRobotPos);
+    if (cachedGoal >= 0) {
+      startPosition = currentRobotPos;
+      planCachedRoute();
+    }
+  }
+
+  /**
+   * Follows the cost-to-go field of the cached goal from the start position, after repairing it
+   * for the obstacles that changed since it was last used.
+   */
+  private void planCachedRoute() {
+    if (dynamicFields[cachedGoal] == null) {
+      dynamicFields[cachedGoal] = navGrid.createDynamicField(cachedGoal);
+    }
+    NavGrid.DynamicField field = dynamicFields[cachedGoal];
+    long startNanos = System.nanoTime();
+    int changedCells = field.setDynamicObstacles(dynamicObstacleCells);
+    if (changedCells > 0) {
+      Logger.recordOutput("LocalADStarAK/ChangedObstacleCells", changedCells);
+      Logger.recordOutput("LocalADStarAK/RepairMs", (System.nanoTime() - startNanos) / 1e6);
+    }
+    cachedRoute = field.findRoute(startPosition, goalPosition);
+    isNewCachedRouteAvailable = true;
+  }
+
+  /** Creates a smooth path through the waypoints, facing along the route at each one. */
+  private static List<PathPoint> createPathPoints(
+      List<Translation2d> route, PathConstraints constraints, GoalEndState goalEndState) {
+    if (route.size() < 2) {
+      return Collections.emptyList();
+    }
+    List<Pose2d> poses = new ArrayList<>();
+    for (int i = 0; i < route.size(); i++) {
+      Translation2d direction =
+          i < route.size() - 1
+              ? route.get(i + 1).minus(route.get(i))
+              : route.get(i).minus(route.get(i - 1));
+      poses.add(new Pose2d(route.get(i), new Rotation2d(direction.getX(), direction.getY())));
+    }
+    return new PathPlannerPath(PathPlannerPath.bezierFromPoses(poses), constraints, goalEndState)
+        .getAllPathPoints();
   }
 
   private static class ADStarIO implements LoggableInputs {
     public LocalADStar adStar = new LocalADStar();
     public boolean isNewPathAvailable = false;
     public List<PathPoint> currentPathPoints = Collections.emptyList();
+    public double[] dynamicObstacles = new double[0]; // Opposite corners of each box
 
     @Override
     public void toLog(LogTable table) {
@@ -117,6 +244,7 @@ public class LocalADStarAK implements Pathfinder {
       }
 
       table.put("CurrentPathPoints", pointsLogged);
+      table.put("DynamicObstacles", dynamicObstacles);
     }
 
     @Override
@@ -132,6 +260,19 @@ public class LocalADStarAK implements Pathfinder {
       }
 
       currentPathPoints = pathPoints;
+      dynamicObstacles = table.get("DynamicObstacles", new double[0]);
+    }
+
+    public void updateDynamicObstacles(List<Pair<Translation2d, Translation2d>> obs) {
+      dynamicObstacles = new double[obs.size() * 4];
+      int idx = 0;
+      for (var obstacle : obs) {
+        dynamicObstacles[idx] = obstacle.getFirst().getX();
+        dynamicObstacles[idx + 1] = obstacle.getFirst().getY();
+        dynamicObstacles[idx + 2] = obstacle.getSecond().getX();
+        dynamicObstacles[idx + 3] = obstacle.getSecond().getY();
+        idx += 4;
+      }
     }
 
     public void updateIsNewPathAvailable() {
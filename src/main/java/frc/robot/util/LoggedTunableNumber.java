@@ -13,28 +13,42 @@
 
 package frc.robot.util;
 
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.networktables.DoubleEntry;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableListenerPoller;
+import frc.robot.Constants;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.littletonrobotics.junction.LogTable;
 import org.littletonrobotics.junction.Logger;
 import org.littletonrobotics.junction.inputs.LoggableInputs;
 import org.littletonrobotics.junction.networktables.LoggedDashboardInput;
 
-public class LoggedTunableNumber implements LoggedDashboardInput {
-  private final String key;
-  private double defaultValue;
-  private double value;
-  private double lastHasChangedValue;
+/**
+ * Number input sent via NetworkTables, for tuning constants without redeploying.
+ *
+ * <p>Every tunable number is read by one central registry once per cycle: a single NetworkTables
+ * poller returns only the values changed since the last cycle, and all values are logged as one
+ * input table. Consumers register callbacks with {@link #onChange(Runnable,
+ * LoggedTunableNumber...)} instead of polling. Tunable numbers with the same key share one value.
+ *
+ * <p>When {@link Constants#tuningMode} is disabled, nothing is published or logged and every
+ * tunable number keeps its default value.
+ */
+public class LoggedTunableNumber {
+  private static final String TABLE_NAME = "SmartDashboard";
 
-  private final LoggableInputs inputs =
-      new LoggableInputs() {
-        public void toLog(LogTable table) {
-          table.put(key, value);
-        }
+  private static final Map<String, Value> values = new LinkedHashMap<>();
+  private static final Map<Integer, Value> valuesByListener = new HashMap<>();
+  private static final List<Callback> callbacks = new ArrayList<>();
+  private static NetworkTableListenerPoller poller = null;
 
-        public void fromLog(LogTable table) {
-          value = table.get(key, defaultValue);
-        }
-      };
+  private final Value value;
 
   /**
    * Creates a new LoggedTunableNumber, for handling a number input sent via NetworkTables.
@@ -54,17 +68,24 @@ public class LoggedTunableNumber implements LoggedDashboardInput {
    * @param defaultValue The default value if no value in NT is found.
    */
   public LoggedTunableNumber(String key, double defaultValue) {
-    this.key = key;
-    this.defaultValue = defaultValue;
-    this.value = defaultValue;
-    SmartDashboard.putNumber(key, SmartDashboard.getNumber(key, defaultValue));
-    periodic();
-    Logger.registerDashboardInput(this);
+    value = values.computeIfAbsent(key, k -> new Value(k, defaultValue));
   }
 
-  /** Updates the default value, which is used if no value in NT is found. */
+  /**
+   * Updates the default value. When tuning, the published value is also updated unless it was
+   * already changed from the previous default. Callbacks are not run.
+   */
   public void setDefault(double defaultValue) {
-    this.defaultValue = defaultValue;
+    double previousDefault = value.defaultValue;
+    value.defaultValue = defaultValue;
+    if (!Constants.tuningMode) {
+      value.value = defaultValue;
+      value.lastNotifiedValue = defaultValue;
+    } else if (value.entry.get(previousDefault) == previousDefault) {
+      value.entry.set(defaultValue);
+      value.value = defaultValue;
+      value.lastNotifiedValue = defaultValue;
+    }
   }
 
   /**
@@ -72,34 +93,111 @@ public class LoggedTunableNumber implements LoggedDashboardInput {
    * next cycle.
    */
   public void set(double value) {
-    SmartDashboard.putNumber(key, value);
+    if (Constants.tuningMode) {
+      this.value.entry.set(value);
+    }
   }
 
   /** Returns the current value. */
   public double get() {
-    return value;
-  }
-
-  public void periodic() {
-    if (!Logger.hasReplaySource()) {
-      value = SmartDashboard.getNumber(key, defaultValue);
-    }
-    Logger.processInputs(prefix, inputs);
+    return value.value;
   }
 
   /**
-   * Checks whether the number has changed since our last check
-   *
-   * @return True if the number has changed since the last time this method was called, false
-   *     otherwise
+   * Runs an action now, and again at the start of every cycle in which any of the tunable numbers
+   * changed. The action runs once per cycle, however many of them changed.
    */
-  public boolean hasChanged() {
-    double currentValue = get();
-    if (currentValue != lastHasChangedValue) {
-      lastHasChangedValue = currentValue;
-      return true;
+  public static void onChange(Runnable action, LoggedTunableNumber... tunableNumbers) {
+    action.run();
+    if (Constants.tuningMode) {
+      Value[] callbackValues = new Value[tunableNumbers.length];
+      for (int i = 0; i < tunableNumbers.length; i++) {
+        callbackValues[i] = tunableNumbers[i].value;
+      }
+      callbacks.add(new Callback(action, callbackValues));
     }
+  }
+
+  /** The value of one key, shared by every tunable number with that key. */
+  private static class Value {
+    private final String key;
+    private final DoubleEntry entry;
+    private double defaultValue;
+    private double value;
+    private double lastNotifiedValue;
+    private boolean changed = false;
 
-    return false;
+    private Value(String key, double defaultValue) {
+      this.key = key;
+      this.defaultValue = defaultValue;
+      if (!Constants.tuningMode) {
+        entry = null;
+        value = defaultValue;
+        lastNotifiedValue = defaultValue;
+        return;
+      }
+
+      if (poller == null) {
+        poller = new NetworkTableListenerPoller(NetworkTableInstance.getDefault());
+        Logger.registerDashboardInput(registry);
+      }
+      entry =
+          NetworkTableInstance.getDefault()
+              .getTable(TABLE_NAME)
+              .getDoubleTopic(key)
+              .getEntry(defaultValue);
+      entry.set(entry.get(defaultValue));
+      value = entry.get(defaultValue);
+      lastNotifiedValue = value;
+      valuesByListener.put(
+          poller.addListener(entry, EnumSet.of(NetworkTableEvent.Kind.kValueAll)), this);
+    }
   }
+
+  private record Callback(Runnable action, Value[] values) {}
+
+  private static final LoggableInputs inputs =
+      new LoggableInputs() {
+        public void toLog(LogTable table) {
+          for (var value : values.values()) {
+            table.put(value.key, value.value);
+          }
+        }
+
+        public void fromLog(LogTable table) {
+          for (var value : values.values()) {
+            value.value = table.get(value.key, value.defaultValue);
+          }
+        }
+      };
+
+  /** Reads every changed value, logs them and runs the callbacks. Only used when tuning. */
+  private static final LoggedDashboardInput registry =
+      new LoggedDashboardInput() {
+        public void periodic() {
+          if (!Logger.hasReplaySource()) {
+            for (var event : poller.readQueue()) {
+              Value value = valuesByListener.get(event.listener);
+              if (value != null && event.valueData != null) {
+                value.value = event.valueData.value.getDouble();
+              }
+            }
+          }
+          Logger.processInputs(prefix, inputs);
+
+          // Compare after logging, so replays run the same callbacks
+          for (var value : values.values()) {
+            value.changed = value.value != value.lastNotifiedValue;
+            value.lastNotifiedValue = value.value;
+          }
+          for (var callback : callbacks) {
+            for (var value : callback.values()) {
+              if (value.changed) {
+                callback.action().run();
+                break;
+              }
+            }
+          }
+        }
+      };
 }
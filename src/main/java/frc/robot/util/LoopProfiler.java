@@ -0,0 +1,162 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+import frc.robot.Constants;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Records how long each part of the robot loop takes and logs the rolling median, 99th percentile
+ * and maximum under "LoopProfile/".
+ *
+ * <p>Sections are timed back to back from a single running mark, so each measurement costs one
+ * clock read. Subsystems record themselves at the end of their periodic methods, and commands are
+ * recorded after their execute methods through the scheduler. Only one section's statistics are
+ * computed per cycle to keep the overhead of the profiler itself small and constant.
+ *
+ * <p>Everything is skipped when {@link Constants#profilingMode} is false.
+ */
+public final class LoopProfiler {
+  private static final int WINDOW_SIZE = 250; // 5 seconds of cycles
+  private static final int MAX_SECTIONS = 64;
+
+  private static final Map<Object, Section> sections = new IdentityHashMap<>();
+  private static final List<Section> sectionList = new ArrayList<>();
+  private static final Set<String> sectionNames = new HashSet<>();
+  private static final long[] sortBuffer = new long[WINDOW_SIZE];
+
+  private static final Section loggerSection = makeSection("Logger");
+  private static final Section buttonsSection = makeSection("Scheduler/Buttons");
+  private static final Section schedulerOtherSection = makeSection("Scheduler/Other");
+  private static final Section otherCommandsSection = makeSection("Commands/Other");
+  private static final Section totalSection = makeSection("Total");
+
+  private static long cycleStart = 0;
+  private static long mark = 0;
+  private static int reportIndex = 0;
+
+  private LoopProfiler() {}
+
+  /** Registers the scheduler callbacks. Call once after all button bindings are configured. */
+  public static void install() {
+    if (!Constants.profilingMode) {
+      return;
+    }
+    CommandScheduler.getInstance().onCommandExecute(LoopProfiler::recordCommand);
+    // Bound last, so this runs after every other binding has been polled
+    CommandScheduler.getInstance().getDefaultButtonLoop().bind(() -> record(buttonsSection));
+  }
+
+  /** Starts a new cycle. Call at the start of "robotPeriodic". */
+  public static void startCycle() {
+    if (!Constants.profilingMode) {
+      return;
+    }
+    if (!Logger.hasReplaySource()) {
+      // Time spent by AdvantageKit reading inputs since the start of the cycle
+      loggerSection.add((Logger.getRealTimestamp() - Logger.getTimestamp()) * 1000);
+    }
+    cycleStart = System.nanoTime();
+    mark = cycleStart;
+  }
+
+  /** Ends the cycle and logs statistics for one section. Call at the end of "robotPeriodic". */
+  public static void endCycle() {
+    if (!Constants.profilingMode) {
+      return;
+    }
+    record(schedulerOtherSection);
+    totalSection.add(mark - cycleStart);
+
+    report(sectionList.get(reportIndex));
+    reportIndex = (reportIndex + 1) % sectionList.size();
+  }
+
+  /** Records the time since the previous section for a subsystem's periodic method. */
+  public static void recordSubsystem(Subsystem subsystem) {
+    if (!Constants.profilingMode) {
+      return;
+    }
+    Section section = sections.get(subsystem);
+    if (section == null) {
+      section = getSection(subsystem, "Subsystems/" + subsystem.getName());
+    }
+    record(section);
+  }
+
+  private static void recordCommand(Command command) {
+    Section section = sections.get(command);
+    if (section == null) {
+      section = getSection(command, "Commands/" + command.getName());
+    }
+    record(section);
+  }
+
+  private static void record(Section section) {
+    long now = System.nanoTime();
+    section.add(now - mark);
+    mark = now;
+  }
+
+  private static Section getSection(Object owner, String name) {
+    if (sectionList.size() >= MAX_SECTIONS) {
+      // Not kept in the map, which would otherwise hold on to every command ever scheduled
+      return otherCommandsSection;
+    }
+    Section section = makeSection(name);
+    sections.put(owner, section);
+    return section;
+  }
+
+  private static Section makeSection(String name) {
+    // Instances sharing a name (e.g. both climbers) get separate sections
+    String uniqueName = name;
+    for (int i = 2; !sectionNames.add(uniqueName); i++) {
+      uniqueName = name + i;
+    }
+    Section section = new Section(uniqueName);
+    sectionList.add(section);
+    return section;
+  }
+
+  private static void report(Section section) {
+    if (section.count == 0) {
+      return;
+    }
+    System.arraycopy(section.samples, 0, sortBuffer, 0, section.count);
+    Arrays.sort(sortBuffer, 0, section.count);
+    Logger.recordOutput(section.p50Key, sortBuffer[(section.count - 1) / 2] / 1e6);
+    Logger.recordOutput(section.p99Key, sortBuffer[(section.count - 1) * 99 / 100] / 1e6);
+    Logger.recordOutput(section.maxKey, sortBuffer[section.count - 1] / 1e6);
+  }
+
+  /** Rolling window of durations in nanoseconds. */
+  private static class Section {
+    private final String p50Key;
+    private final String p99Key;
+    private final String maxKey;
+    private final long[] samples = new long[WINDOW_SIZE];
+    private int count = 0;
+    private int index = 0;
+
+    private Section(String name) {
+      p50Key = "LoopProfile/" + name + "/P50MS";
+      p99Key = "LoopProfile/" + name + "/P99MS";
+      maxKey = "LoopProfile/" + name + "/MaxMS";
+    }
+
+    private void add(long durationNanos) {
+      samples[index] = durationNanos;
+      index = (index + 1) % WINDOW_SIZE;
+      count = Math.min(count + 1, WINDOW_SIZE);
+    }
+  }
+}
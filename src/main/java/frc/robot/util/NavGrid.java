@@ -0,0 +1,784 @@
+package frc.robot.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.wpi.first.math.Pair;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Compiled form of the PathPlanner navgrid ("deploy/pathplanner/navgrid.json"): the obstacles as a
+ * bitset, the distance from every cell to the nearest obstacle, and a cost-to-go field for each of
+ * the {@link #COMMON_GOALS}.
+ *
+ * <p>"./gradlew navGrid" compiles the JSON into "navgrid.bin" next to it, and deploying does so
+ * automatically. {@link #load()} reads the binary when it was compiled from the current JSON and
+ * goals, and otherwise compiles the JSON itself.
+ *
+ * <p>Routes to a cached goal follow its cost-to-go field downhill from the start, which gives a
+ * shortest path on the same grid as LocalADStar (eight neighbors, without cutting the corners of
+ * obstacles). Waypoints that the previous waypoint can see directly are then dropped, using the
+ * distance field to skip across open space. {@link DynamicField} keeps a goal's field up to date
+ * with dynamic obstacles.
+ */
+public final class NavGrid {
+  /**
+   * Pathfinding goals with a precomputed cost-to-go field, in blue alliance coordinates. Each is
+   * the closest free cell of the navgrid to the scoring or pickup position.
+   */
+  public static final List<Goal> COMMON_GOALS =
+      List.of(
+          new Goal("BlueSpeaker", new Translation2d(1.65, 5.55)),
+          new Goal("RedSpeaker", new Translation2d(14.89, 5.55)),
+          new Goal("BlueAmp", new Translation2d(1.84, 7.30)),
+          new Goal("RedAmp", new Translation2d(14.70, 7.30)),
+          new Goal("BlueSource", new Translation2d(14.94, 1.00)),
+          new Goal("RedSource", new Translation2d(1.60, 1.00)));
+
+  private static final int MAGIC = 0x4e415647; // "NAVG"
+  private static final int VERSION = 1;
+  private static final double SQRT_2 = Math.sqrt(2.0);
+
+  private final long sourceChecksum;
+  private final int columns;
+  private final int rows;
+  private final double nodeSizeMeters;
+  private final double fieldLengthMeters;
+  private final double fieldWidthMeters;
+  private final long[] obstacles;
+  private final float[] obstacleDistancesMeters;
+  private final List<Goal> goals;
+  private final int[] goalCells;
+  private final float[][] costsToGo;
+
+  private NavGrid(
+      long sourceChecksum,
+      int columns,
+      int rows,
+      double nodeSizeMeters,
+      double fieldLengthMeters,
+      double fieldWidthMeters,
+      long[] obstacles,
+      float[] obstacleDistancesMeters,
+      List<Goal> goals,
+      float[][] costsToGo) {
+    this.sourceChecksum = sourceChecksum;
+    this.columns = columns;
+    this.rows = rows;
+    this.nodeSizeMeters = nodeSizeMeters;
+    this.fieldLengthMeters = fieldLengthMeters;
+    this.fieldWidthMeters = fieldWidthMeters;
+    this.obstacles = obstacles;
+    this.obstacleDistancesMeters = obstacleDistancesMeters;
+    this.goals = goals;
+    this.costsToGo = costsToGo;
+    goalCells = new int[goals.size()];
+    for (int i = 0; i < goals.size(); i++) {
+      goalCells[i] = findFreeCell(obstacles, goals.get(i).position());
+    }
+  }
+
+  /** Compiles "navgrid.json" into "navgrid.bin", with the paths of both files as arguments. */
+  public static void main(String... args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: navGrid <navgrid.json> <navgrid.bin>");
+      System.exit(2);
+    }
+    long startNanos = System.nanoTime();
+    NavGrid navGrid = compile(Files.readAllBytes(Path.of(args[0])), COMMON_GOALS);
+    Files.write(Path.of(args[1]), navGrid.toBytes());
+    System.out.printf(
+        "Compiled %dx%d navgrid with %d goals in %.1f ms%n",
+        navGrid.columns, navGrid.rows, COMMON_GOALS.size(), (System.nanoTime() - startNanos) / 1e6);
+  }
+
+  /**
+   * Loads the navgrid from the deploy directory, reading the compiled binary if it matches the JSON
+   * and the common goals.
+   *
+   * @throws IOException If the JSON can't be read or parsed.
+   */
+  public static NavGrid load() throws IOException {
+    Path directory = Filesystem.getDeployDirectory().toPath().resolve("pathplanner");
+    byte[] json = Files.readAllBytes(directory.resolve("navgrid.json"));
+    Path binaryPath = directory.resolve("navgrid.bin");
+    if (Files.exists(binaryPath)) {
+      try {
+        NavGrid navGrid = fromBytes(Files.readAllBytes(binaryPath));
+        if (navGrid.sourceChecksum == checksum(json) && navGrid.goals.equals(COMMON_GOALS)) {
+          return navGrid;
+        }
+      } catch (IOException e) {
+        // Compile the JSON instead
+      }
+    }
+    System.out.println("Compiled navgrid missing or out of date, compiling navgrid.json");
+    return compile(json, COMMON_GOALS);
+  }
+
+  /** Parses a navgrid JSON file and computes the distance and cost-to-go fields. */
+  public static NavGrid compile(byte[] json, List<Goal> goals) throws IOException {
+    JsonNode root = new ObjectMapper().readTree(json);
+    JsonNode grid = root.get("grid");
+    int rows = grid.size();
+    int columns = rows > 0 ? grid.get(0).size() : 0;
+    long[] obstacles = new long[(rows * columns + 63) / 64];
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        if (grid.get(row).get(column).asBoolean()) {
+          int cell = row * columns + column;
+          obstacles[cell >>> 6] |= 1L << cell;
+        }
+      }
+    }
+
+    NavGrid navGrid =
+        new NavGrid(
+            checksum(json),
+            columns,
+            rows,
+            root.get("nodeSizeMeters").asDouble(),
+            root.get("field_size").get("x").asDouble(),
+            root.get("field_size").get("y").asDouble(),
+            obstacles,
+            new float[rows * columns],
+            goals,
+            new float[goals.size()][]);
+
+    int[] obstacleCells = new int[rows * columns];
+    int obstacleCount = 0;
+    for (int cell = 0; cell < rows * columns; cell++) {
+      if (navGrid.isObstacle(cell)) {
+        obstacleCells[obstacleCount++] = cell;
+      }
+    }
+    navGrid.searchFrom(
+        Arrays.copyOf(obstacleCells, obstacleCount),
+        true,
+        obstacles,
+        navGrid.obstacleDistancesMeters);
+    for (int i = 0; i < goals.size(); i++) {
+      navGrid.costsToGo[i] = new float[rows * columns];
+      if (navGrid.goalCells[i] >= 0) {
+        navGrid.searchFrom(
+            new int[] {navGrid.goalCells[i]}, false, obstacles, navGrid.costsToGo[i]);
+      } else {
+        Arrays.fill(navGrid.costsToGo[i], Float.POSITIVE_INFINITY);
+      }
+    }
+    return navGrid;
+  }
+
+  /** Serializes the compiled navgrid. */
+  public byte[] toBytes() {
+    int cellCount = rows * columns;
+    int size = 4 + 4 + 8 + 4 + 4 + 8 * 3 + 4 + obstacles.length * 8 + cellCount * 4;
+    List<byte[]> names = new ArrayList<>();
+    for (Goal goal : goals) {
+      byte[] name = goal.name().getBytes(StandardCharsets.UTF_8);
+      names.add(name);
+      size += 4 + name.length + 8 * 2 + cellCount * 4;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.putInt(MAGIC).putInt(VERSION).putLong(sourceChecksum);
+    buffer.putInt(columns).putInt(rows);
+    buffer.putDouble(nodeSizeMeters).putDouble(fieldLengthMeters).putDouble(fieldWidthMeters);
+    buffer.putInt(goals.size());
+    for (int i = 0; i < goals.size(); i++) {
+      buffer.putInt(names.get(i).length).put(names.get(i));
+      buffer.putDouble(goals.get(i).position().getX());
+      buffer.putDouble(goals.get(i).position().getY());
+    }
+    buffer.asLongBuffer().put(obstacles);
+    buffer.position(buffer.position() + obstacles.length * 8);
+    buffer.asFloatBuffer().put(obstacleDistancesMeters);
+    buffer.position(buffer.position() + cellCount * 4);
+    for (float[] costs : costsToGo) {
+      buffer.asFloatBuffer().put(costs);
+      buffer.position(buffer.position() + cellCount * 4);
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Reads a navgrid serialized by {@link #toBytes()}.
+   *
+   * @throws IOException If the data is not a navgrid of the current version.
+   */
+  public static NavGrid fromBytes(byte[] data) throws IOException {
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException("Not a compiled navgrid of version " + VERSION);
+      }
+      long sourceChecksum = buffer.getLong();
+      int columns = buffer.getInt();
+      int rows = buffer.getInt();
+      double nodeSizeMeters = buffer.getDouble();
+      double fieldLengthMeters = buffer.getDouble();
+      double fieldWidthMeters = buffer.getDouble();
+      int goalCount = buffer.getInt();
+      List<Goal> goals = new ArrayList<>();
+      for (int i = 0; i < goalCount; i++) {
+        byte[] name = new byte[buffer.getInt()];
+        buffer.get(name);
+        goals.add(
+            new Goal(
+                new String(name, StandardCharsets.UTF_8),
+                new Translation2d(buffer.getDouble(), buffer.getDouble())));
+      }
+
+      int cellCount = rows * columns;
+      long[] obstacles = new long[(cellCount + 63) / 64];
+      buffer.asLongBuffer().get(obstacles);
+      buffer.position(buffer.position() + obstacles.length * 8);
+      float[] obstacleDistancesMeters = new float[cellCount];
+      buffer.asFloatBuffer().get(obstacleDistancesMeters);
+      buffer.position(buffer.position() + cellCount * 4);
+      float[][] costsToGo = new float[goalCount][cellCount];
+      for (float[] costs : costsToGo) {
+        buffer.asFloatBuffer().get(costs);
+        buffer.position(buffer.position() + cellCount * 4);
+      }
+      return new NavGrid(
+          sourceChecksum,
+          columns,
+          rows,
+          nodeSizeMeters,
+          fieldLengthMeters,
+          fieldWidthMeters,
+          obstacles,
+          obstacleDistancesMeters,
+          goals,
+          costsToGo);
+    } catch (RuntimeException e) {
+      throw new IOException("Truncated or corrupt navgrid", e);
+    }
+  }
+
+  /** Returns the goals with a cost-to-go field. */
+  public List<Goal> getGoals() {
+    return goals;
+  }
+
+  /**
+   * Returns the index of the cached goal whose field leads to a position, i.e. the goal in the same
+   * grid cell, or -1 if there is none.
+   */
+  public int findGoal(Translation2d position) {
+    int cell = findFreeCell(obstacles, position);
+    for (int i = 0; i < goalCells.length; i++) {
+      if (cell >= 0 && goalCells[i] == cell) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the shortest route to a cached goal.
+   *
+   * @param start The start position, which may be inside an obstacle.
+   * @param goal The index of the goal, from {@link #findGoal(Translation2d)}.
+   * @param goalPosition The exact goal position, used as the last waypoint.
+   * @return The waypoints from the start to the goal position, or an empty list if the goal can't
+   *     be reached.
+   */
+  public List<Translation2d> findRoute(Translation2d start, int goal, Translation2d goalPosition) {
+    return findRoute(costsToGo[goal], obstacles, true, start, goalPosition);
+  }
+
+  /** Returns whether the straight line between two points stays out of obstacles. */
+  public boolean isVisible(Translation2d start, Translation2d end) {
+    return isVisible(obstacles, true, start, end);
+  }
+
+  /**
+   * Creates a copy of the cost-to-go field of a cached goal that can be updated with dynamic
+   * obstacles.
+   */
+  public DynamicField createDynamicField(int goal) {
+    return new DynamicField(goal);
+  }
+
+  /** Creates an empty set of cells, for {@link #markBoxes(List, long[])}. */
+  public long[] createCellSet() {
+    return new long[obstacles.length];
+  }
+
+  /**
+   * Replaces a set of cells with the cells covered by bounding boxes, the same cells LocalADStar
+   * treats as dynamic obstacles.
+   *
+   * @param boxes Pairs of opposite corners of each box.
+   * @param cells The set of cells to replace, from {@link #createCellSet()}.
+   */
+  public void markBoxes(List<Pair<Translation2d, Translation2d>> boxes, long[] cells) {
+    Arrays.fill(cells, 0L);
+    for (var box : boxes) {
+      int firstColumn = (int) Math.floor(box.getFirst().getX() / nodeSizeMeters);
+      int firstRow = (int) Math.floor(box.getFirst().getY() / nodeSizeMeters);
+      int secondColumn = (int) Math.floor(box.getSecond().getX() / nodeSizeMeters);
+      int secondRow = (int) Math.floor(box.getSecond().getY() / nodeSizeMeters);
+      int minColumn = Math.max(0, Math.min(firstColumn, secondColumn));
+      int maxColumn = Math.min(columns - 1, Math.max(firstColumn, secondColumn));
+      int minRow = Math.max(0, Math.min(firstRow, secondRow));
+      int maxRow = Math.min(rows - 1, Math.max(firstRow, secondRow));
+      for (int row = minRow; row <= maxRow; row++) {
+        for (int column = minColumn; column <= maxColumn; column++) {
+          int cell = row * columns + column;
+          cells[cell >>> 6] |= 1L << cell;
+        }
+      }
+    }
+  }
+
+  private List<Translation2d> findRoute(
+      float[] costs,
+      long[] blocked,
+      boolean useDistanceField,
+      Translation2d start,
+      Translation2d goalPosition) {
+    int cell = findFreeCell(blocked, start);
+    if (cell < 0 || Float.isInfinite(costs[cell])) {
+      return List.of();
+    }
+
+    // Descend the cost-to-go field, every step leads to a neighbor closer to the goal
+    List<Translation2d> points = new ArrayList<>();
+    points.add(start);
+    for (int step = 0; costs[cell] > 0.0f && step < costs.length; step++) {
+      int next = findParent(costs, blocked, cell);
+      if (next < 0) {
+        break;
+      }
+      cell = next;
+      points.add(cellCenter(cell));
+    }
+    points.add(goalPosition);
+
+    // Keep only the waypoints that the previous one can't see
+    List<Translation2d> route = new ArrayList<>();
+    route.add(points.get(0));
+    int from = 0;
+    while (from < points.size() - 1) {
+      int to = points.size() - 1;
+      while (to > from + 1
+          && !isVisible(blocked, useDistanceField, points.get(from), points.get(to))) {
+        to--;
+      }
+      route.add(points.get(to));
+      from = to;
+    }
+    return route;
+  }
+
+  /** Returns the neighbor a cell's cost comes from, which is closer to the goal, or -1. */
+  private int findParent(float[] costs, long[] blocked, int cell) {
+    int column = cell % columns;
+    int row = cell / columns;
+    int parent = -1;
+    double parentCost = costs[cell];
+    for (int dy = -1; dy <= 1; dy++) {
+      for (int dx = -1; dx <= 1; dx++) {
+        if (!canMove(blocked, column, row, dx, dy)) {
+          continue;
+        }
+        int neighbor = cell + dy * columns + dx;
+        double cost = costs[neighbor] + stepCost(dx, dy);
+        if (costs[neighbor] < costs[cell] && cost < parentCost + 1e-6) {
+          parent = neighbor;
+          parentCost = cost;
+        }
+      }
+    }
+    return parent;
+  }
+
+  /**
+   * Returns whether a line stays out of blocked cells. The distance field only accounts for the
+   * static obstacles, so it can only be used to skip ahead without dynamic obstacles.
+   */
+  private boolean isVisible(
+      long[] blocked, boolean useDistanceField, Translation2d start, Translation2d end) {
+    double length = start.getDistance(end);
+    double directionX = length > 0.0 ? (end.getX() - start.getX()) / length : 0.0;
+    double directionY = length > 0.0 ? (end.getY() - start.getY()) / length : 0.0;
+    double distance = 0.0;
+    while (true) {
+      int cell =
+          cellAt(start.getX() + directionX * distance, start.getY() + directionY * distance);
+      if (isObstacle(blocked, cell)) {
+        return false;
+      }
+      if (distance >= length) {
+        return true;
+      }
+      // Points closer than this to the center of the cell can't be inside an obstacle
+      double clearance =
+          useDistanceField ? obstacleDistancesMeters[cell] - 1.5 * nodeSizeMeters : 0.0;
+      distance = Math.min(length, distance + Math.max(clearance, nodeSizeMeters / 4.0));
+    }
+  }
+
+  /** Returns the distance from the cell containing a position to the nearest obstacle cell. */
+  public double getObstacleDistanceMeters(Translation2d position) {
+    return obstacleDistancesMeters[cellAt(position.getX(), position.getY())];
+  }
+
+  /**
+   * Fills a field with the shortest distance from the nearest source cell (Dijkstra's algorithm).
+   * Distances through obstacles ignore them, otherwise only free cells are reached and unreachable
+   * cells are infinite.
+   */
+  private void searchFrom(
+      int[] sources, boolean throughObstacles, long[] blocked, float[] distances) {
+    Arrays.fill(distances, Float.POSITIVE_INFINITY);
+    // Entries hold the distance bits above the cell, so they sort by distance
+    PriorityQueue<Long> queue = new PriorityQueue<>();
+    for (int source : sources) {
+      distances[source] = 0.0f;
+      queue.add((long) source);
+    }
+    while (!queue.isEmpty()) {
+      long entry = queue.poll();
+      int cell = (int) entry;
+      float distance = Float.intBitsToFloat((int) (entry >>> 32));
+      if (distance > distances[cell]) {
+        continue;
+      }
+      int column = cell % columns;
+      int row = cell / columns;
+      for (int dy = -1; dy <= 1; dy++) {
+        for (int dx = -1; dx <= 1; dx++) {
+          if (throughObstacles
+              ? !inBounds(column + dx, row + dy) || (dx == 0 && dy == 0)
+              : !canMove(blocked, column, row, dx, dy)) {
+            continue;
+          }
+          int neighbor = cell + dy * columns + dx;
+          float neighborDistance = (float) (distance + stepCost(dx, dy));
+          if (neighborDistance < distances[neighbor]) {
+            distances[neighbor] = neighborDistance;
+            queue.add(((long) Float.floatToIntBits(neighborDistance) << 32) | neighbor);
+          }
+        }
+      }
+    }
+  }
+
+  /** Returns whether LocalADStar would move from a free cell to a neighbor. */
+  private boolean canMove(long[] blocked, int column, int row, int dx, int dy) {
+    if ((dx == 0 && dy == 0) || !inBounds(column + dx, row + dy)) {
+      return false;
+    }
+    if (isObstacle(blocked, (row + dy) * columns + column + dx)) {
+      return false;
+    }
+    return dx == 0
+        || dy == 0
+        || (!isObstacle(blocked, row * columns + column + dx)
+            && !isObstacle(blocked, (row + dy) * columns + column));
+  }
+
+  private double stepCost(int dx, int dy) {
+    return dx != 0 && dy != 0 ? SQRT_2 * nodeSizeMeters : nodeSizeMeters;
+  }
+
+  /** Returns the nearest free cell to a position (breadth first like LocalADStar), or -1. */
+  private int findFreeCell(long[] blocked, Translation2d position) {
+    int start = cellAt(position.getX(), position.getY());
+    if (!isObstacle(blocked, start)) {
+      return start;
+    }
+    boolean[] visited = new boolean[rows * columns];
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    queue.add(start);
+    visited[start] = true;
+    while (!queue.isEmpty()) {
+      int cell = queue.poll();
+      if (!isObstacle(blocked, cell)) {
+        return cell;
+      }
+      int column = cell % columns;
+      int row = cell / columns;
+      for (int dy = -1; dy <= 1; dy++) {
+        for (int dx = -1; dx <= 1; dx++) {
+          int neighbor = cell + dy * columns + dx;
+          if (inBounds(column + dx, row + dy) && !visited[neighbor]) {
+            visited[neighbor] = true;
+            queue.add(neighbor);
+          }
+        }
+      }
+    }
+    return -1;
+  }
+
+  private int cellAt(double xMeters, double yMeters) {
+    int column = Math.max(0, Math.min(columns - 1, (int) Math.floor(xMeters / nodeSizeMeters)));
+    int row = Math.max(0, Math.min(rows - 1, (int) Math.floor(yMeters / nodeSizeMeters)));
+    return row * columns + column;
+  }
+
+  private Translation2d cellCenter(int cell) {
+    return new Translation2d(
+        (cell % columns + 0.5) * nodeSizeMeters, (cell / columns + 0.5) * nodeSizeMeters);
+  }
+
+  private boolean inBounds(int column, int row) {
+    return column >= 0 && column < columns && row >= 0 && row < rows;
+  }
+
+  private boolean isObstacle(int cell) {
+    return isObstacle(obstacles, cell);
+  }
+
+  private static boolean isObstacle(long[] blocked, int cell) {
+    return (blocked[cell >>> 6] & (1L << cell)) != 0;
+  }
+
+  private static long checksum(byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    return crc.getValue();
+  }
+
+  /**
+   * Cost-to-go field of a cached goal with dynamic obstacles. Updates only repair the cells whose
+   * costs depend on changed cells: cells whose shortest route crossed a newly blocked cell are
+   * invalidated, and the search restarts from their boundary and from freed cells, stopping where
+   * costs no longer improve. Only used from one thread.
+   */
+  public final class DynamicField {
+    private final int goalCell;
+    private final float[] costs;
+    private final int[] parents;
+    private final long[] dynamicCells = createCellSet();
+    private final long[] blocked = obstacles.clone();
+    private final int[] changedCells = new int[rows * columns]; // Blocked first, freed from the end
+    private final int[] stack = new int[2 * rows * columns]; // Blocked cells can be pushed twice
+    private final int[] invalidated = new int[rows * columns];
+    private final PriorityQueue<Long> queue = new PriorityQueue<>();
+    private boolean hasDynamicCells = false;
+
+    private DynamicField(int goal) {
+      goalCell = goalCells[goal];
+      costs = costsToGo[goal].clone();
+      parents = new int[costs.length];
+      for (int cell = 0; cell < costs.length; cell++) {
+        parents[cell] = findParent(costs, blocked, cell);
+      }
+    }
+
+    /**
+     * Replaces the dynamic obstacles and repairs the field.
+     *
+     * @param cells The cells covered by dynamic obstacles, from {@link #markBoxes(List, long[])}.
+     * @return The number of free cells that became blocked or free.
+     */
+    public int setDynamicObstacles(long[] cells) {
+      // Apply every change first, so the repair sees the new obstacles
+      int changedCount = 0;
+      int blockedCount = 0;
+      int freedStart = changedCells.length;
+      for (int word = 0; word < cells.length; word++) {
+        long changed = (cells[word] ^ dynamicCells[word]) & ~obstacles[word];
+        while (changed != 0) {
+          int cell = (word << 6) + Long.numberOfTrailingZeros(changed);
+          changed &= changed - 1;
+          changedCount++;
+          blocked[word] ^= 1L << cell;
+          if (isObstacle(blocked, cell)) {
+            changedCells[blockedCount++] = cell;
+          } else {
+            changedCells[--freedStart] = cell;
+          }
+        }
+        dynamicCells[word] = cells[word];
+      }
+      hasDynamicCells = false;
+      for (long word : cells) {
+        hasDynamicCells |= word != 0;
+      }
+      if (changedCount == 0) {
+        return 0;
+      }
+
+      // Invalidate the blocked cells, and the cells that can no longer reach their parent
+      int stackSize = 0;
+      for (int i = 0; i < blockedCount; i++) {
+        int cell = changedCells[i];
+        stack[stackSize++] = cell;
+        int column = cell % columns;
+        int row = cell / columns;
+        for (int dy = -1; dy <= 1; dy++) {
+          for (int dx = -1; dx <= 1; dx++) {
+            int neighbor = cell + dy * columns + dx;
+            if (!inBounds(column + dx, row + dy) || isObstacle(blocked, neighbor)) {
+              continue;
+            }
+            int parent = parents[neighbor];
+            if (parent >= 0
+                && !canMove(
+                    blocked,
+                    neighbor % columns,
+                    neighbor / columns,
+                    parent % columns - neighbor % columns,
+                    parent / columns - neighbor / columns)) {
+              stack[stackSize++] = neighbor;
+              parents[neighbor] = -1;
+            }
+          }
+        }
+      }
+
+      // Invalidate everything routed through them
+      int invalidatedCount = 0;
+      while (stackSize > 0) {
+        int cell = stack[--stackSize];
+        if (Float.isInfinite(costs[cell]) && parents[cell] == -2) {
+          continue; // Already invalidated
+        }
+        costs[cell] = Float.POSITIVE_INFINITY;
+        parents[cell] = -2;
+        invalidated[invalidatedCount++] = cell;
+        int column = cell % columns;
+        int row = cell / columns;
+        for (int dy = -1; dy <= 1; dy++) {
+          for (int dx = -1; dx <= 1; dx++) {
+            int neighbor = cell + dy * columns + dx;
+            if (inBounds(column + dx, row + dy) && parents[neighbor] == cell) {
+              stack[stackSize++] = neighbor;
+              parents[neighbor] = -1;
+            }
+          }
+        }
+      }
+
+      // Restart the search from the boundary of the invalidated cells and around freed cells
+      queue.clear();
+      for (int i = 0; i < invalidatedCount; i++) {
+        seed(invalidated[i]);
+      }
+      for (int i = freedStart; i < changedCells.length; i++) {
+        int cell = changedCells[i];
+        int column = cell % columns;
+        int row = cell / columns;
+        for (int dy = -1; dy <= 1; dy++) {
+          for (int dx = -1; dx <= 1; dx++) {
+            if (inBounds(column + dx, row + dy)) {
+              seed(cell + dy * columns + dx);
+            }
+          }
+        }
+      }
+      propagate();
+      return changedCount;
+    }
+
+    /**
+     * Finds the shortest route to the goal around the static and dynamic obstacles.
+     *
+     * @param start The start position, which may be inside an obstacle.
+     * @param goalPosition The exact goal position, used as the last waypoint.
+     * @return The waypoints from the start to the goal position, or an empty list if the goal
+     *     can't be reached.
+     */
+    public List<Translation2d> findRoute(Translation2d start, Translation2d goalPosition) {
+      return NavGrid.this.findRoute(costs, blocked, !hasDynamicCells, start, goalPosition);
+    }
+
+    /** Returns the repaired costs. */
+    float[] getCosts() {
+      return costs;
+    }
+
+    /** Returns the costs searched from scratch with the current obstacles, to check a repair. */
+    float[] searchFromScratch() {
+      float[] fresh = new float[costs.length];
+      if (isObstacle(blocked, goalCell)) {
+        Arrays.fill(fresh, Float.POSITIVE_INFINITY);
+      } else {
+        searchFrom(new int[] {goalCell}, false, blocked, fresh);
+      }
+      return fresh;
+    }
+
+    /** Lowers the cost of a free cell to its best neighbor's, and queues it if that improves. */
+    private void seed(int cell) {
+      if (isObstacle(blocked, cell)) {
+        costs[cell] = Float.POSITIVE_INFINITY;
+        parents[cell] = -1;
+        return;
+      }
+      if (cell == goalCell) {
+        costs[cell] = 0.0f;
+        parents[cell] = -1;
+        queue.add((long) cell);
+        return;
+      }
+      int column = cell % columns;
+      int row = cell / columns;
+      for (int dy = -1; dy <= 1; dy++) {
+        for (int dx = -1; dx <= 1; dx++) {
+          if (!canMove(blocked, column, row, dx, dy)) {
+            continue;
+          }
+          int neighbor = cell + dy * columns + dx;
+          float cost = (float) (costs[neighbor] + stepCost(dx, dy));
+          if (cost < costs[cell]) {
+            costs[cell] = cost;
+            parents[cell] = neighbor;
+          }
+        }
+      }
+      if (!Float.isInfinite(costs[cell])) {
+        queue.add(((long) Float.floatToIntBits(costs[cell]) << 32) | cell);
+      }
+    }
+
+    /** Lowers the costs of the neighbors of queued cells, as in the initial search. */
+    private void propagate() {
+      while (!queue.isEmpty()) {
+        long entry = queue.poll();
+        int cell = (int) entry;
+        float cost = Float.intBitsToFloat((int) (entry >>> 32));
+        if (cost > costs[cell]) {
+          continue;
+        }
+        int column = cell % columns;
+        int row = cell / columns;
+        for (int dy = -1; dy <= 1; dy++) {
+          for (int dx = -1; dx <= 1; dx++) {
+            if (!canMove(blocked, column, row, dx, dy)) {
+              continue;
+            }
+            int neighbor = cell + dy * columns + dx;
+            float neighborCost = (float) (cost + stepCost(dx, dy));
+            if (neighborCost < costs[neighbor]) {
+              costs[neighbor] = neighborCost;
+              parents[neighbor] = cell;
+              queue.add(((long) Float.floatToIntBits(neighborCost) << 32) | neighbor);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /** A named pathfinding goal. */
+  public record Goal(String name, Translation2d position) {}
+}
@@ -0,0 +1,402 @@
+package frc.robot.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pathplanner.lib.path.ConstraintsZone;
+import com.pathplanner.lib.path.GoalEndState;
+import com.pathplanner.lib.path.PathConstraints;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.RotationTarget;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Compiled form of the PathPlanner paths ("deploy/pathplanner/paths"): the bezier points of each
+ * path with its rotation targets, constraint zones and end state, so loading a path doesn't parse
+ * its JSON. Paths are rebuilt through PathPlanner's constructor, which samples the curve, so they
+ * can be flipped and replanned by {@link com.pathplanner.lib.auto.AutoBuilder} like paths loaded
+ * from their files.
+ *
+ * <p>"./gradlew pathCache" compiles every path into "paths.bin" next to the "paths" directory, and
+ * deploying does so automatically. {@link #getPath(String)} uses the compiled path when it was
+ * compiled from the current JSON, and otherwise parses the JSON. Paths with event markers aren't
+ * compiled, since their commands are only registered on the robot.
+ *
+ * <p>Loaded paths are kept, and loading is thread safe, so paths can be loaded in the background.
+ */
+public final class PathCache {
+  private static final int MAGIC = 0x50415448; // "PATH"
+  private static final int VERSION = 2;
+
+  private final Path pathDirectory;
+  private final Map<String, CompiledPath> compiledPaths;
+  private final Map<String, PathPlannerPath> paths = new ConcurrentHashMap<>();
+
+  private PathCache(Path pathDirectory, Map<String, CompiledPath> compiledPaths) {
+    this.pathDirectory = pathDirectory;
+    this.compiledPaths = compiledPaths;
+  }
+
+  /** Compiles every path in the "paths" directory into "paths.bin", with both as arguments. */
+  public static void main(String... args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: pathCache <paths directory> <paths.bin>");
+      System.exit(2);
+    }
+    long startNanos = System.nanoTime();
+    Map<String, CompiledPath> compiledPaths = new LinkedHashMap<>();
+    int skippedCount = 0;
+    for (String name : listPaths(Path.of(args[0]))) {
+      byte[] json = Files.readAllBytes(Path.of(args[0], name + ".path"));
+      CompiledPath compiled = CompiledPath.parse(json);
+      if (compiled == null) {
+        System.out.println("Not compiling \"" + name + "\", it has event markers");
+        skippedCount++;
+        continue;
+      }
+      compiledPaths.put(name, compiled);
+    }
+    Files.write(Path.of(args[1]), toBytes(compiledPaths));
+    System.out.printf(
+        "Compiled %d paths (%d skipped) in %.1f ms%n",
+        compiledPaths.size(), skippedCount, (System.nanoTime() - startNanos) / 1e6);
+  }
+
+  /**
+   * Parses a path file the way PathPlanner does, without looking it up in the deploy directory.
+   *
+   * @return The path, or null if it has event markers.
+   * @throws IOException If the JSON can't be parsed.
+   */
+  static PathPlannerPath parse(byte[] json) throws IOException {
+    CompiledPath compiled = CompiledPath.parse(json);
+    return compiled != null ? compiled.toPath() : null;
+  }
+
+  /**
+   * Loads the compiled paths from the deploy directory. Without a readable "paths.bin", every path
+   * is parsed from its JSON.
+   */
+  public static PathCache load() {
+    Path directory = Filesystem.getDeployDirectory().toPath().resolve("pathplanner");
+    Path binaryPath = directory.resolve("paths.bin");
+    Map<String, CompiledPath> compiledPaths = Map.of();
+    if (Files.exists(binaryPath)) {
+      try {
+        compiledPaths = fromBytes(Files.readAllBytes(binaryPath));
+      } catch (IOException e) {
+        System.out.println("Compiled paths unreadable, parsing paths from JSON: " + e);
+      }
+    }
+    return new PathCache(directory.resolve("paths"), compiledPaths);
+  }
+
+  /**
+   * Returns a path by the name of its file, without the extension.
+   *
+   * @throws UncheckedIOException If the path's JSON can't be read.
+   */
+  public PathPlannerPath getPath(String name) {
+    return paths.computeIfAbsent(name, this::loadPath);
+  }
+
+  private PathPlannerPath loadPath(String name) {
+    CompiledPath compiled = compiledPaths.get(name);
+    if (compiled != null) {
+      try {
+        if (compiled.sourceChecksum == checksum(Files.readAllBytes(pathFile(name)))) {
+          return compiled.toPath();
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      System.out.println("Compiled path \"" + name + "\" out of date, parsing its JSON");
+    }
+    return PathPlannerPath.fromPathFile(name);
+  }
+
+  private Path pathFile(String name) {
+    return pathDirectory.resolve(name + ".path");
+  }
+
+  /** Returns the names of the ".path" files in a directory, without the extension. */
+  static List<String> listPaths(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .map(file -> file.getFileName().toString())
+          .filter(file -> file.endsWith(".path"))
+          .map(file -> file.substring(0, file.length() - ".path".length()))
+          .sorted()
+          .toList();
+    }
+  }
+
+  private static byte[] toBytes(Map<String, CompiledPath> compiledPaths) {
+    int size = 4 + 4 + 4;
+    Map<String, byte[]> names = new HashMap<>();
+    for (var entry : compiledPaths.entrySet()) {
+      byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+      names.put(entry.getKey(), name);
+      size += 4 + name.length + entry.getValue().size();
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(compiledPaths.size());
+    for (var entry : compiledPaths.entrySet()) {
+      byte[] name = names.get(entry.getKey());
+      buffer.putInt(name.length).put(name);
+      entry.getValue().write(buffer);
+    }
+    return buffer.array();
+  }
+
+  private static Map<String, CompiledPath> fromBytes(byte[] data) throws IOException {
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException("Not compiled paths of version " + VERSION);
+      }
+      int pathCount = buffer.getInt();
+      Map<String, CompiledPath> compiledPaths = new HashMap<>();
+      for (int i = 0; i < pathCount; i++) {
+        byte[] name = new byte[buffer.getInt()];
+        buffer.get(name);
+        compiledPaths.put(new String(name, StandardCharsets.UTF_8), CompiledPath.read(buffer));
+      }
+      return compiledPaths;
+    } catch (RuntimeException e) {
+      throw new IOException("Truncated or corrupt compiled paths", e);
+    }
+  }
+
+  static long checksum(byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    return crc.getValue();
+  }
+
+  private static void putConstraints(ByteBuffer buffer, PathConstraints constraints) {
+    buffer.putDouble(constraints.getMaxVelocityMps());
+    buffer.putDouble(constraints.getMaxAccelerationMpsSq());
+    buffer.putDouble(constraints.getMaxAngularVelocityRps());
+    buffer.putDouble(constraints.getMaxAngularAccelerationRpsSq());
+  }
+
+  private static PathConstraints getConstraints(ByteBuffer buffer) {
+    return new PathConstraints(
+        buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+  }
+
+  /** Parses constraints like PathPlanner, whose files hold angular limits in degrees. */
+  private static PathConstraints parseConstraints(JsonNode json) {
+    return new PathConstraints(
+        json.get("maxVelocity").asDouble(),
+        json.get("maxAcceleration").asDouble(),
+        Units.degreesToRadians(json.get("maxAngularVelocity").asDouble()),
+        Units.degreesToRadians(json.get("maxAngularAcceleration").asDouble()));
+  }
+
+  private static Translation2d parsePoint(JsonNode json) {
+    return new Translation2d(json.get("x").asDouble(), json.get("y").asDouble());
+  }
+
+  /**
+   * The definition of a path. Rotation targets, constraint zones and constraints are immutable and
+   * shared, the path itself is created for each load since PathPlanner samples it.
+   */
+  private static class CompiledPath {
+    private final long sourceChecksum;
+    private final double[] bezierCoordinates; // x and y of each point
+    private final RotationTarget[] rotationTargets;
+    private final ConstraintsZone[] constraintZones;
+    private final PathConstraints globalConstraints;
+    private final GoalEndState goalEndState;
+    private final boolean reversed;
+    private final Rotation2d previewStartingRotation;
+
+    private CompiledPath(
+        long sourceChecksum,
+        double[] bezierCoordinates,
+        RotationTarget[] rotationTargets,
+        ConstraintsZone[] constraintZones,
+        PathConstraints globalConstraints,
+        GoalEndState goalEndState,
+        boolean reversed,
+        Rotation2d previewStartingRotation) {
+      this.sourceChecksum = sourceChecksum;
+      this.bezierCoordinates = bezierCoordinates;
+      this.rotationTargets = rotationTargets;
+      this.constraintZones = constraintZones;
+      this.globalConstraints = globalConstraints;
+      this.goalEndState = goalEndState;
+      this.reversed = reversed;
+      this.previewStartingRotation = previewStartingRotation;
+    }
+
+    /** Parses a path file like {@link PathPlannerPath#fromPathFile}, or returns null. */
+    static CompiledPath parse(byte[] json) throws IOException {
+      JsonNode root = new ObjectMapper().readTree(json);
+      if (root.path("eventMarkers").size() > 0) {
+        return null;
+      }
+
+      // Each waypoint's anchor with the control points between it and its neighbors
+      JsonNode waypoints = root.get("waypoints");
+      List<Translation2d> bezierPoints = new ArrayList<>();
+      for (int i = 0; i < waypoints.size(); i++) {
+        JsonNode waypoint = waypoints.get(i);
+        if (i > 0) {
+          bezierPoints.add(parsePoint(waypoint.get("prevControl")));
+        }
+        bezierPoints.add(parsePoint(waypoint.get("anchor")));
+        if (i < waypoints.size() - 1) {
+          bezierPoints.add(parsePoint(waypoint.get("nextControl")));
+        }
+      }
+      double[] bezierCoordinates = new double[bezierPoints.size() * 2];
+      for (int i = 0; i < bezierPoints.size(); i++) {
+        bezierCoordinates[i * 2] = bezierPoints.get(i).getX();
+        bezierCoordinates[i * 2 + 1] = bezierPoints.get(i).getY();
+      }
+
+      JsonNode rotationTargetsJson = root.path("rotationTargets");
+      RotationTarget[] rotationTargets = new RotationTarget[rotationTargetsJson.size()];
+      for (int i = 0; i < rotationTargets.length; i++) {
+        JsonNode target = rotationTargetsJson.get(i);
+        rotationTargets[i] =
+            new RotationTarget(
+                target.get("waypointRelativePos").asDouble(),
+                Rotation2d.fromDegrees(target.get("rotationDegrees").asDouble()),
+                target.path("rotateFast").asBoolean(false));
+      }
+
+      JsonNode constraintZonesJson = root.path("constraintZones");
+      ConstraintsZone[] constraintZones = new ConstraintsZone[constraintZonesJson.size()];
+      for (int i = 0; i < constraintZones.length; i++) {
+        JsonNode zone = constraintZonesJson.get(i);
+        constraintZones[i] =
+            new ConstraintsZone(
+                zone.get("minWaypointRelativePos").asDouble(),
+                zone.get("maxWaypointRelativePos").asDouble(),
+                parseConstraints(zone.get("constraints")));
+      }
+
+      JsonNode goalEndState = root.get("goalEndState");
+      JsonNode previewStartingState = root.path("previewStartingState");
+      return new CompiledPath(
+          checksum(json),
+          bezierCoordinates,
+          rotationTargets,
+          constraintZones,
+          parseConstraints(root.get("globalConstraints")),
+          new GoalEndState(
+              goalEndState.get("velocity").asDouble(),
+              Rotation2d.fromDegrees(goalEndState.get("rotation").asDouble()),
+              goalEndState.path("rotateFast").asBoolean(false)),
+          root.path("reversed").asBoolean(false),
+          Rotation2d.fromDegrees(previewStartingState.path("rotation").asDouble(0.0)));
+    }
+
+    PathPlannerPath toPath() {
+      List<Translation2d> bezierPoints = new ArrayList<>(bezierCoordinates.length / 2);
+      for (int i = 0; i < bezierCoordinates.length; i += 2) {
+        bezierPoints.add(new Translation2d(bezierCoordinates[i], bezierCoordinates[i + 1]));
+      }
+      return new PathPlannerPath(
+          bezierPoints,
+          new ArrayList<>(Arrays.asList(rotationTargets)),
+          new ArrayList<>(Arrays.asList(constraintZones)),
+          new ArrayList<>(),
+          globalConstraints,
+          goalEndState,
+          reversed,
+          previewStartingRotation);
+    }
+
+    int size() {
+      int size = 8 + 8 * 4 + 8 * 2 + 1 + 1 + 8 + 4 * 3;
+      size += bezierCoordinates.length * 8;
+      size += rotationTargets.length * (8 * 2 + 1);
+      size += constraintZones.length * (8 * 2 + 8 * 4);
+      return size;
+    }
+
+    void write(ByteBuffer buffer) {
+      buffer.putLong(sourceChecksum);
+      putConstraints(buffer, globalConstraints);
+      buffer.putDouble(goalEndState.getVelocity());
+      buffer.putDouble(goalEndState.getRotation().getDegrees());
+      buffer.put((byte) (goalEndState.shouldRotateFast() ? 1 : 0));
+      buffer.put((byte) (reversed ? 1 : 0));
+      buffer.putDouble(previewStartingRotation.getDegrees());
+      buffer.putInt(bezierCoordinates.length / 2);
+      for (double coordinate : bezierCoordinates) {
+        buffer.putDouble(coordinate);
+      }
+      buffer.putInt(rotationTargets.length);
+      for (RotationTarget rotationTarget : rotationTargets) {
+        buffer.putDouble(rotationTarget.getPosition());
+        buffer.putDouble(rotationTarget.getTarget().getDegrees());
+        buffer.put((byte) (rotationTarget.shouldRotateFast() ? 1 : 0));
+      }
+      buffer.putInt(constraintZones.length);
+      for (ConstraintsZone zone : constraintZones) {
+        buffer.putDouble(zone.getMinWaypointPos());
+        buffer.putDouble(zone.getMaxWaypointPos());
+        putConstraints(buffer, zone.getConstraints());
+      }
+    }
+
+    static CompiledPath read(ByteBuffer buffer) {
+      long sourceChecksum = buffer.getLong();
+      PathConstraints globalConstraints = getConstraints(buffer);
+      GoalEndState goalEndState =
+          new GoalEndState(
+              buffer.getDouble(), Rotation2d.fromDegrees(buffer.getDouble()), buffer.get() != 0);
+      boolean reversed = buffer.get() != 0;
+      Rotation2d previewStartingRotation = Rotation2d.fromDegrees(buffer.getDouble());
+      double[] bezierCoordinates = new double[buffer.getInt() * 2];
+      for (int i = 0; i < bezierCoordinates.length; i++) {
+        bezierCoordinates[i] = buffer.getDouble();
+      }
+      RotationTarget[] rotationTargets = new RotationTarget[buffer.getInt()];
+      for (int i = 0; i < rotationTargets.length; i++) {
+        double position = buffer.getDouble();
+        Rotation2d target = Rotation2d.fromDegrees(buffer.getDouble());
+        rotationTargets[i] = new RotationTarget(position, target, buffer.get() != 0);
+      }
+      ConstraintsZone[] constraintZones = new ConstraintsZone[buffer.getInt()];
+      for (int i = 0; i < constraintZones.length; i++) {
+        double minPosition = buffer.getDouble();
+        double maxPosition = buffer.getDouble();
+        constraintZones[i] = new ConstraintsZone(minPosition, maxPosition, getConstraints(buffer));
+      }
+      return new CompiledPath(
+          sourceChecksum,
+          bezierCoordinates,
+          rotationTargets,
+          constraintZones,
+          globalConstraints,
+          goalEndState,
+          reversed,
+          previewStartingRotation);
+    }
+  }
+}
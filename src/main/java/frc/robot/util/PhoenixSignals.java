@@ -0,0 +1,91 @@
+package frc.robot.util;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.hardware.ParentDevice;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Refreshes the status signals of every Phoenix 6 device with one batched call per CAN bus, rather
+ * than one call per IO.
+ *
+ * <p>IO implementations register their signals once in their constructors, and then only read the
+ * cached values in "updateInputs". {@link #refreshAll()} is called at the start of every cycle,
+ * before any subsystem runs. The refresh time is logged under "PhoenixSignals/RefreshMS", and the
+ * age of each device's oldest signal under "PhoenixSignals/StalenessMS/".
+ */
+public final class PhoenixSignals {
+  private static final Map<String, BaseStatusSignal[]> signalsByBus = new LinkedHashMap<>();
+  private static final List<SignalGroup> groups = new ArrayList<>();
+  private static BaseStatusSignal[][] buses = new BaseStatusSignal[0][];
+
+  private PhoenixSignals() {}
+
+  /**
+   * Registers signals to be refreshed every cycle.
+   *
+   * @param device The device the signals belong to.
+   * @param signals The signals, which must all belong to the device.
+   * @return The group of registered signals, used to check the status of the last refresh.
+   */
+  public static SignalGroup register(ParentDevice device, BaseStatusSignal... signals) {
+    signalsByBus.merge(device.getNetwork(), signals, PhoenixSignals::concat);
+    buses = signalsByBus.values().toArray(new BaseStatusSignal[0][]);
+
+    String name = device.getClass().getSimpleName() + device.getDeviceID();
+    SignalGroup group = new SignalGroup(name, signals);
+    groups.add(group);
+    return group;
+  }
+
+  /** Refreshes every registered signal. Call once at the start of every cycle. */
+  public static void refreshAll() {
+    if (buses.length == 0) {
+      return;
+    }
+    long startNanos = System.nanoTime();
+    for (var signals : buses) {
+      BaseStatusSignal.refreshAll(signals);
+    }
+    Logger.recordOutput("PhoenixSignals/RefreshMS", (System.nanoTime() - startNanos) / 1e6);
+
+    for (var group : groups) {
+      double stalenessSecs = 0.0;
+      for (var signal : group.signals) {
+        stalenessSecs = Math.max(stalenessSecs, signal.getTimestamp().getLatency());
+      }
+      Logger.recordOutput(group.stalenessKey, stalenessSecs * 1000.0);
+    }
+  }
+
+  private static BaseStatusSignal[] concat(BaseStatusSignal[] first, BaseStatusSignal[] second) {
+    BaseStatusSignal[] result = new BaseStatusSignal[first.length + second.length];
+    System.arraycopy(first, 0, result, 0, first.length);
+    System.arraycopy(second, 0, result, first.length, second.length);
+    return result;
+  }
+
+  /** The signals registered together by one IO. */
+  public static class SignalGroup {
+    private final String stalenessKey;
+    private final BaseStatusSignal[] signals;
+
+    private SignalGroup(String name, BaseStatusSignal[] signals) {
+      this.stalenessKey = "PhoenixSignals/StalenessMS/" + name;
+      this.signals = signals;
+    }
+
+    /** Returns whether every signal in the group was received in the last refresh. */
+    public boolean isOK() {
+      for (var signal : signals) {
+        if (!signal.getStatus().isOK()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
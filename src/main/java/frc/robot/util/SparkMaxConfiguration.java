@@ -0,0 +1,33 @@
+package frc.robot.util;
+
+import com.revrobotics.CANSparkBase.IdleMode;
+import java.util.Locale;
+
+/**
+ * Settings of a SparkMax that are saved to flash, in the style of the Phoenix 6 configuration
+ * objects. Fields left unchanged keep the factory defaults.
+ */
+public class SparkMaxConfiguration {
+  public boolean inverted = false;
+  public IdleMode idleMode = IdleMode.kCoast;
+  public int smartCurrentLimitAmps = 80;
+  /** Nominal voltage for voltage compensation, or 0 to disable it. */
+  public double voltageCompensationVolts = 0.0;
+
+  public int encoderMeasurementPeriodMs = 32;
+  public int encoderAverageDepth = 8;
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.ROOT,
+        "inverted=%b idleMode=%s currentLimit=%d voltageCompensation=%.2f"
+            + " measurementPeriod=%d averageDepth=%d",
+        inverted,
+        idleMode,
+        smartCurrentLimitAmps,
+        voltageCompensationVolts,
+        encoderMeasurementPeriodMs,
+        encoderAverageDepth);
+  }
+}
@@ -0,0 +1,383 @@
+package frc.robot.util;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.hardware.ParentDevice;
+import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
+import com.revrobotics.CANSparkMax;
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.Constants;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Plan of the status frame rates of every CAN device, declared by the IO implementations from the
+ * inputs they actually read.
+ *
+ * <p>IO implementations declare their signals and rates in their constructors, and {@link #apply()}
+ * is called once after every IO is created. The CAN utilization of each bus is estimated separately
+ * and logged under "CANBus/". When a bus is over {@link Constants#canBusUtilizationBudget}, the
+ * low priority signals (those only logged) are slowed down until it fits, and a warning is
+ * reported. The plan is always applied, even if the bus still doesn't fit. Frames that carry
+ * odometry signals are tracked separately, so the remaining headroom can be converted into a
+ * maximum odometry frequency.
+ *
+ * <p>SparkMax frames that carry no declared signal are disabled. Phoenix devices only send the
+ * declared signals, since every other signal is disabled by "optimizeBusUtilization". Phoenix
+ * signals that are sent in the same frame (position and velocity, the orientation angles, the
+ * angular velocities, the currents) are counted as one frame.
+ */
+public final class StatusFramePlan {
+  // Extended frame with 8 data bytes, including worst case bit stuffing
+  private static final double BITS_PER_FRAME = 160.0;
+  private static final double BUS_BITS_PER_SEC = 1e6;
+  private static final int SPARK_MAX_DISABLED_PERIOD_MS = 65535;
+  private static final int SPARK_MAX_FAULTS_PERIOD_MS = 100;
+  private static final double MIN_LOW_PRIORITY_SCALE = 0.125;
+  private static final double MIN_LOW_PRIORITY_HZ = 10.0;
+  private static final String RIO_BUS = "rio";
+  private static final Map<String, String> PHOENIX_SHARED_FRAMES =
+      Map.ofEntries(
+          Map.entry("Position", "PositionVelocity"),
+          Map.entry("Velocity", "PositionVelocity"),
+          Map.entry("Yaw", "Orientation"),
+          Map.entry("Pitch", "Orientation"),
+          Map.entry("Roll", "Orientation"),
+          Map.entry("AngularVelocityXWorld", "AngularVelocityWorld"),
+          Map.entry("AngularVelocityYWorld", "AngularVelocityWorld"),
+          Map.entry("AngularVelocityZWorld", "AngularVelocityWorld"),
+          Map.entry("StatorCurrent", "Current"),
+          Map.entry("SupplyCurrent", "Current"),
+          Map.entry("TorqueCurrent", "Current"));
+
+  private static final List<DevicePlan> devices = new ArrayList<>();
+  private static double maxOdometryFrequency = Double.POSITIVE_INFINITY;
+
+  private StatusFramePlan() {}
+
+  /** The SparkMax status signals, and the periodic frame carrying each. */
+  public enum SparkMaxSignal {
+    APPLIED_OUTPUT(PeriodicFrame.kStatus0),
+    VELOCITY(PeriodicFrame.kStatus1),
+    BUS_VOLTAGE(PeriodicFrame.kStatus1),
+    CURRENT(PeriodicFrame.kStatus1),
+    TEMPERATURE(PeriodicFrame.kStatus1),
+    POSITION(PeriodicFrame.kStatus2),
+    ANALOG_SENSOR(PeriodicFrame.kStatus3),
+    ALTERNATE_ENCODER(PeriodicFrame.kStatus4),
+    ABSOLUTE_POSITION(PeriodicFrame.kStatus5),
+    ABSOLUTE_VELOCITY(PeriodicFrame.kStatus6);
+
+    private final PeriodicFrame frame;
+
+    private SparkMaxSignal(PeriodicFrame frame) {
+      this.frame = frame;
+    }
+  }
+
+  /** Adds a SparkMax to the plan, with every frame disabled until its signals are declared. */
+  public static SparkMaxPlan sparkMax(CANSparkMax sparkMax) {
+    var plan = new SparkMaxPlan(sparkMax);
+    devices.add(plan);
+    return plan;
+  }
+
+  /**
+   * Adds a SparkMax driving a simple mechanism to the plan. Every logged input is read once per
+   * cycle, and the electrical ones are only logged.
+   */
+  public static SparkMaxPlan simpleMotor(CANSparkMax sparkMax) {
+    return sparkMax(sparkMax)
+        .signals(50.0, SparkMaxSignal.VELOCITY, SparkMaxSignal.POSITION)
+        .lowPrioritySignals(
+            50.0,
+            SparkMaxSignal.APPLIED_OUTPUT,
+            SparkMaxSignal.BUS_VOLTAGE,
+            SparkMaxSignal.CURRENT);
+  }
+
+  /** Adds a Phoenix 6 device to the plan, with every signal disabled until it is declared. */
+  public static PhoenixPlan phoenix(ParentDevice device) {
+    var plan = new PhoenixPlan(device);
+    devices.add(plan);
+    return plan;
+  }
+
+  /**
+   * Returns the highest odometry frequency that keeps the estimated utilization of every bus within
+   * the budget, or infinity if no odometry signals were declared.
+   */
+  public static double getMaxOdometryFrequency() {
+    return maxOdometryFrequency;
+  }
+
+  /**
+   * Fits the plan of each bus within the utilization budget, logs the estimates and applies the
+   * plan to every device. Reports a warning instead of failing when a bus is over the budget.
+   */
+  public static void apply() {
+    if (devices.isEmpty()) {
+      return;
+    }
+
+    Map<String, List<DevicePlan>> buses = new LinkedHashMap<>();
+    for (var device : devices) {
+      buses.computeIfAbsent(device.bus, bus -> new ArrayList<>()).add(device);
+    }
+    double budget = Constants.canBusUtilizationBudget;
+    double budgetFramesPerSec = budget * BUS_BITS_PER_SEC / BITS_PER_FRAME;
+    maxOdometryFrequency = Double.POSITIVE_INFINITY;
+    for (var bus : buses.entrySet()) {
+      String key = "CANBus/" + bus.getKey() + "/";
+      List<DevicePlan> busDevices = bus.getValue();
+
+      // Halve the low priority rates until the bus fits
+      double lowPriorityScale = 1.0;
+      double framesPerSec = getFramesPerSec(busDevices, lowPriorityScale);
+      while (framesPerSec > budgetFramesPerSec && lowPriorityScale > MIN_LOW_PRIORITY_SCALE) {
+        lowPriorityScale /= 2.0;
+        framesPerSec = getFramesPerSec(busDevices, lowPriorityScale);
+      }
+      double utilization = getUtilization(framesPerSec);
+      if (lowPriorityScale < 1.0) {
+        DriverStation.reportWarning(
+            String.format(
+                "CAN bus \"%s\" status frames were over the budget of %.0f%%, low priority signals"
+                    + " slowed down to %.0f%% of their rates",
+                bus.getKey(), budget * 100.0, lowPriorityScale * 100.0),
+            false);
+      }
+      if (utilization > budget) {
+        DriverStation.reportWarning(
+            String.format(
+                "CAN bus \"%s\" status frames use an estimated %.1f%% of the bus, over the budget"
+                    + " of %.0f%%",
+                bus.getKey(), utilization * 100.0, budget * 100.0),
+            false);
+      }
+
+      double fixedFramesPerSec = 0.0;
+      int odometryFrameCount = 0;
+      for (var device : busDevices) {
+        double deviceFramesPerSec = device.getFramesPerSec(lowPriorityScale);
+        Logger.recordOutput(key + "Devices/" + device.name + "FramesPerSec", deviceFramesPerSec);
+        fixedFramesPerSec += deviceFramesPerSec - device.getOdometryFramesPerSec();
+        odometryFrameCount += device.getOdometryFrameCount();
+        device.apply(lowPriorityScale);
+      }
+      if (odometryFrameCount > 0) {
+        maxOdometryFrequency =
+            Math.min(
+                maxOdometryFrequency,
+                (budgetFramesPerSec - fixedFramesPerSec) / odometryFrameCount);
+      }
+      Logger.recordOutput(key + "EstimatedFramesPerSec", framesPerSec);
+      Logger.recordOutput(key + "EstimatedUtilization", utilization);
+      Logger.recordOutput(key + "LowPriorityScale", lowPriorityScale);
+    }
+    Logger.recordOutput("CANBus/UtilizationBudget", budget);
+    Logger.recordOutput("CANBus/MaxOdometryFrequencyHz", maxOdometryFrequency);
+  }
+
+  private static double getFramesPerSec(List<DevicePlan> devices, double lowPriorityScale) {
+    double framesPerSec = 0.0;
+    for (var device : devices) {
+      framesPerSec += device.getFramesPerSec(lowPriorityScale);
+    }
+    return framesPerSec;
+  }
+
+  private static double getUtilization(double framesPerSec) {
+    return framesPerSec * BITS_PER_FRAME / BUS_BITS_PER_SEC;
+  }
+
+  /** The rates requested for one status frame. */
+  private static class Frame {
+    private final List<BaseStatusSignal> signals = new ArrayList<>(); // Phoenix only
+    private double frequencyHz = 0.0;
+    private double lowPriorityFrequencyHz = 0.0;
+    private boolean odometry = false;
+
+    /** Returns the frame rate, with low priority rates scaled down but not below the minimum. */
+    private double getFrequency(double lowPriorityScale) {
+      double lowPriorityHz =
+          Math.max(
+              lowPriorityFrequencyHz * lowPriorityScale,
+              Math.min(lowPriorityFrequencyHz, MIN_LOW_PRIORITY_HZ));
+      return Math.max(frequencyHz, lowPriorityHz);
+    }
+
+    private void declare(double frequencyHz, boolean lowPriority, boolean odometry) {
+      if (lowPriority) {
+        lowPriorityFrequencyHz = Math.max(lowPriorityFrequencyHz, frequencyHz);
+      } else {
+        this.frequencyHz = Math.max(this.frequencyHz, frequencyHz);
+      }
+      this.odometry |= odometry;
+    }
+  }
+
+  private abstract static class DevicePlan {
+    private final String name;
+    private final String bus;
+    final Map<Object, Frame> frames = new LinkedHashMap<>();
+
+    private DevicePlan(String name, String bus) {
+      this.name = name;
+      this.bus = bus;
+    }
+
+    /** Returns the frame rate with odometry frames at their declared frequency. */
+    abstract double getFramesPerSec(double lowPriorityScale);
+
+    /** Returns the rate of the frames that carry odometry signals, at their declared frequency. */
+    double getOdometryFramesPerSec() {
+      double framesPerSec = 0.0;
+      for (var frame : frames.values()) {
+        framesPerSec += frame.odometry ? frame.getFrequency(1.0) : 0.0;
+      }
+      return framesPerSec;
+    }
+
+    int getOdometryFrameCount() {
+      int count = 0;
+      for (var frame : frames.values()) {
+        count += frame.odometry ? 1 : 0;
+      }
+      return count;
+    }
+
+    abstract void apply(double lowPriorityScale);
+  }
+
+  /** Status frame plan of one SparkMax. */
+  public static class SparkMaxPlan extends DevicePlan {
+    private static final PeriodicFrame[] FRAMES = PeriodicFrame.values();
+
+    private final CANSparkMax sparkMax;
+
+    private SparkMaxPlan(CANSparkMax sparkMax) {
+      super("SparkMax" + sparkMax.getDeviceId(), RIO_BUS);
+      this.sparkMax = sparkMax;
+      for (var frame : FRAMES) {
+        frames.put(frame, new Frame());
+      }
+    }
+
+    /** Declares signals read at the specified frequency. */
+    public SparkMaxPlan signals(double frequencyHz, SparkMaxSignal... signals) {
+      return declare(frequencyHz, false, false, signals);
+    }
+
+    /**
+     * Declares signals that are only logged, read at the specified frequency unless the bus is over
+     * the budget.
+     */
+    public SparkMaxPlan lowPrioritySignals(double frequencyHz, SparkMaxSignal... signals) {
+      return declare(frequencyHz, true, false, signals);
+    }
+
+    /** Declares signals sampled by the odometry thread, whose frequency changes at runtime. */
+    public SparkMaxPlan odometrySignals(double frequencyHz, SparkMaxSignal... signals) {
+      return declare(frequencyHz, false, true, signals);
+    }
+
+    private SparkMaxPlan declare(
+        double frequencyHz, boolean lowPriority, boolean odometry, SparkMaxSignal... signals) {
+      for (var signal : signals) {
+        frames.get(signal.frame).declare(frequencyHz, lowPriority, odometry);
+      }
+      return this;
+    }
+
+    private int getPeriodMs(PeriodicFrame frame, double lowPriorityScale) {
+      double frequencyHz = frames.get(frame).getFrequency(lowPriorityScale);
+      if (frequencyHz > 0.0) {
+        return (int) Math.round(1000.0 / frequencyHz);
+      }
+      // Faults are sent in status 0, so it is never disabled
+      return frame == PeriodicFrame.kStatus0
+          ? SPARK_MAX_FAULTS_PERIOD_MS
+          : SPARK_MAX_DISABLED_PERIOD_MS;
+    }
+
+    @Override
+    double getFramesPerSec(double lowPriorityScale) {
+      double framesPerSec = 0.0;
+      for (var frame : FRAMES) {
+        framesPerSec += 1000.0 / getPeriodMs(frame, lowPriorityScale);
+      }
+      return framesPerSec;
+    }
+
+    @Override
+    void apply(double lowPriorityScale) {
+      for (var frame : FRAMES) {
+        sparkMax.setPeriodicFramePeriod(frame, getPeriodMs(frame, lowPriorityScale));
+      }
+    }
+  }
+
+  /** Status signal plan of one Phoenix 6 device. */
+  public static class PhoenixPlan extends DevicePlan {
+    private final ParentDevice device;
+
+    private PhoenixPlan(ParentDevice device) {
+      super(
+          device.getClass().getSimpleName() + device.getDeviceID(),
+          device.getNetwork().isEmpty() ? RIO_BUS : device.getNetwork());
+      this.device = device;
+    }
+
+    /** Declares signals read at the specified frequency. */
+    public PhoenixPlan signals(double frequencyHz, BaseStatusSignal... signals) {
+      return declare(frequencyHz, false, false, signals);
+    }
+
+    /**
+     * Declares signals that are only logged, read at the specified frequency unless the bus is over
+     * the budget.
+     */
+    public PhoenixPlan lowPrioritySignals(double frequencyHz, BaseStatusSignal... signals) {
+      return declare(frequencyHz, true, false, signals);
+    }
+
+    /** Declares signals sampled by the odometry thread, whose frequency changes at runtime. */
+    public PhoenixPlan odometrySignals(double frequencyHz, BaseStatusSignal... signals) {
+      return declare(frequencyHz, false, true, signals);
+    }
+
+    private PhoenixPlan declare(
+        double frequencyHz, boolean lowPriority, boolean odometry, BaseStatusSignal... signals) {
+      for (var signal : signals) {
+        // Signals in an unknown frame are counted as a frame of their own
+        Object frameKey = PHOENIX_SHARED_FRAMES.getOrDefault(signal.getName(), signal.getName());
+        Frame frame = frames.computeIfAbsent(frameKey, key -> new Frame());
+        frame.signals.add(signal);
+        frame.declare(frequencyHz, lowPriority, odometry);
+      }
+      return this;
+    }
+
+    @Override
+    double getFramesPerSec(double lowPriorityScale) {
+      double framesPerSec = 0.0;
+      for (var frame : frames.values()) {
+        framesPerSec += frame.getFrequency(lowPriorityScale);
+      }
+      return framesPerSec;
+    }
+
+    @Override
+    void apply(double lowPriorityScale) {
+      for (var frame : frames.values()) {
+        BaseStatusSignal.setUpdateFrequencyForAll(
+            frame.getFrequency(lowPriorityScale),
+            frame.signals.toArray(new BaseStatusSignal[0]));
+      }
+      device.optimizeBusUtilization();
+    }
+  }
+}
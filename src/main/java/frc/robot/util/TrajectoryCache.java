@@ -0,0 +1,286 @@
+package frc.robot.util;
+
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trajectories of the PathPlanner paths, generated ahead of time and sampled every {@link
+ * #SAMPLE_PERIOD_SECS}, for both alliances. Following one doesn't generate anything on the robot,
+ * and sampling it only indexes into its arrays.
+ *
+ * <p>"./gradlew trajectoryCache" generates "trajectories.bin" next to the "paths" directory, and
+ * deploying does so automatically. The file is memory mapped rather than read, and trajectories
+ * whose path JSON changed since are left out. Paths with event markers or driven in reverse aren't
+ * generated.
+ *
+ * <p>Trajectories start at rest from the starting rotation of their path, so they only match what
+ * PathPlanner would generate for a path started from a standstill at that rotation. Paths that
+ * follow a moving segment are left to PathPlanner (see {@link
+ * frc.robot.commands.auto.AutoRegistry}).
+ */
+public final class TrajectoryCache {
+  public static final double SAMPLE_PERIOD_SECS = 0.02;
+
+  /** Speeds below which a path ends at rest, where PathPlanner's followers stop the drive. */
+  public static final double REST_SPEED_METERS_PER_SEC = 0.1;
+
+  private static final int MAGIC = 0x5452414a; // "TRAJ"
+  private static final int VERSION = 1;
+
+  private final Map<String, Entry> entries;
+
+  private TrajectoryCache(Map<String, Entry> entries) {
+    this.entries = entries;
+  }
+
+  /** Generates the trajectories of every path in the "paths" directory into "trajectories.bin". */
+  public static void main(String... args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: trajectoryCache <paths directory> <trajectories.bin>");
+      System.exit(2);
+    }
+    long startNanos = System.nanoTime();
+    List<String> names = new ArrayList<>();
+    List<byte[]> nameBytes = new ArrayList<>();
+    List<Long> checksums = new ArrayList<>();
+    List<double[]> samples = new ArrayList<>(); // Blue then red for each path
+    for (String name : PathCache.listPaths(Path.of(args[0]))) {
+      byte[] json = Files.readAllBytes(Path.of(args[0], name + ".path"));
+      PathPlannerPath path = PathCache.parse(json);
+      if (path == null || path.isReversed()) {
+        System.out.println("Not generating \"" + name + "\", it has event markers or is reversed");
+        continue;
+      }
+      names.add(name);
+      nameBytes.add(name.getBytes(StandardCharsets.UTF_8));
+      checksums.add(PathCache.checksum(json));
+      samples.add(generate(path));
+      samples.add(generate(path.flipPath()));
+    }
+
+    // Samples start on an 8 byte boundary after the index, so they can be viewed as doubles
+    int indexSize = 4 + 4 + 4;
+    for (byte[] name : nameBytes) {
+      indexSize += 4 + name.length + 8 + 2 * (8 + 4);
+    }
+    int dataOffset = (indexSize + 7) & ~7;
+    int size = dataOffset;
+    for (double[] trajectory : samples) {
+      size += trajectory.length * 8;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(names.size());
+    long offset = dataOffset;
+    for (int i = 0; i < names.size(); i++) {
+      buffer.putInt(nameBytes.get(i).length).put(nameBytes.get(i)).putLong(checksums.get(i));
+      for (int alliance = 0; alliance < 2; alliance++) {
+        double[] trajectory = samples.get(i * 2 + alliance);
+        buffer.putLong(offset).putInt(trajectory.length / SampledTrajectory.STRIDE);
+        offset += trajectory.length * 8L;
+      }
+    }
+    buffer.position(dataOffset);
+    for (double[] trajectory : samples) {
+      buffer.asDoubleBuffer().put(trajectory);
+      buffer.position(buffer.position() + trajectory.length * 8);
+    }
+    Files.write(Path.of(args[1]), buffer.array());
+    System.out.printf(
+        "Generated %d trajectories (%.1f KiB) in %.1f ms%n",
+        samples.size(), size / 1024.0, (System.nanoTime() - startNanos) / 1e6);
+  }
+
+  /** Samples the trajectory of a path from rest into interleaved states. */
+  private static double[] generate(PathPlannerPath path) {
+    PathPlannerTrajectory trajectory =
+        new PathPlannerTrajectory(
+            path, new ChassisSpeeds(), path.getPreviewStartingHolonomicPose().getRotation());
+    int count = (int) Math.ceil(trajectory.getTotalTimeSeconds() / SAMPLE_PERIOD_SECS) + 1;
+    int stride = SampledTrajectory.STRIDE;
+    double[] samples = new double[count * stride];
+    for (int i = 0; i < count; i++) {
+      PathPlannerTrajectory.State state = trajectory.sample(i * SAMPLE_PERIOD_SECS);
+      int index = i * stride;
+      samples[index + SampledTrajectory.X] = state.positionMeters.getX();
+      samples[index + SampledTrajectory.Y] = state.positionMeters.getY();
+      samples[index + SampledTrajectory.ROTATION] = state.targetHolonomicRotation.getRadians();
+      samples[index + SampledTrajectory.VX] = state.velocityMps * state.heading.getCos();
+      samples[index + SampledTrajectory.VY] = state.velocityMps * state.heading.getSin();
+    }
+
+    // Angular velocity from the sampled rotations, so it matches them exactly
+    for (int i = 0; i < count; i++) {
+      int previous = Math.max(i - 1, 0);
+      int next = Math.min(i + 1, count - 1);
+      double rotationChange =
+          MathUtil.angleModulus(
+              samples[next * stride + SampledTrajectory.ROTATION]
+                  - samples[previous * stride + SampledTrajectory.ROTATION]);
+      samples[i * stride + SampledTrajectory.OMEGA] =
+          next > previous ? rotationChange / ((next - previous) * SAMPLE_PERIOD_SECS) : 0.0;
+    }
+    return samples;
+  }
+
+  /**
+   * Maps the trajectories from the deploy directory. Without a readable "trajectories.bin", there
+   * are none.
+   */
+  public static TrajectoryCache load() {
+    Path directory = Filesystem.getDeployDirectory().toPath().resolve("pathplanner");
+    Path binaryPath = directory.resolve("trajectories.bin");
+    if (!Files.exists(binaryPath)) {
+      return new TrajectoryCache(Map.of());
+    }
+    try (FileChannel channel = FileChannel.open(binaryPath, StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      return new TrajectoryCache(readIndex(buffer, directory.resolve("paths")));
+    } catch (IOException | RuntimeException e) {
+      System.out.println("Trajectories unreadable, generating them on the robot instead: " + e);
+      return new TrajectoryCache(Map.of());
+    }
+  }
+
+  private static Map<String, Entry> readIndex(ByteBuffer buffer, Path pathDirectory)
+      throws IOException {
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IOException("Not trajectories of version " + VERSION);
+    }
+    int pathCount = buffer.getInt();
+    Map<String, Entry> entries = new HashMap<>();
+    for (int i = 0; i < pathCount; i++) {
+      byte[] nameBytes = new byte[buffer.getInt()];
+      buffer.get(nameBytes);
+      String name = new String(nameBytes, StandardCharsets.UTF_8);
+      long sourceChecksum = buffer.getLong();
+      SampledTrajectory blue = readTrajectory(buffer);
+      SampledTrajectory red = readTrajectory(buffer);
+      Path pathFile = pathDirectory.resolve(name + ".path");
+      if (Files.exists(pathFile)
+          && PathCache.checksum(Files.readAllBytes(pathFile)) == sourceChecksum) {
+        entries.put(name, new Entry(blue, red));
+      } else {
+        System.out.println("Trajectory of \"" + name + "\" out of date, leaving it out");
+      }
+    }
+    return entries;
+  }
+
+  private static SampledTrajectory readTrajectory(ByteBuffer buffer) {
+    int offset = (int) buffer.getLong();
+    int sampleCount = buffer.getInt();
+    return new SampledTrajectory(
+        buffer
+            .slice(offset, sampleCount * SampledTrajectory.STRIDE * 8)
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .asDoubleBuffer(),
+        sampleCount);
+  }
+
+  /** Returns the trajectories of a path, or null if they weren't generated. */
+  public Entry get(String pathName) {
+    return entries.get(pathName);
+  }
+
+  /** The trajectories of a path for each alliance. */
+  public record Entry(SampledTrajectory blue, SampledTrajectory red) {
+    public SampledTrajectory get(boolean isRed) {
+      return isRed ? red : blue;
+    }
+  }
+
+  /** A trajectory sampled at a fixed period, as interleaved states. */
+  public static class SampledTrajectory {
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int ROTATION = 2;
+    private static final int VX = 3;
+    private static final int VY = 4;
+    private static final int OMEGA = 5;
+    private static final int STRIDE = 6;
+
+    private final DoubleBuffer samples;
+    private final int sampleCount;
+
+    private SampledTrajectory(DoubleBuffer samples, int sampleCount) {
+      this.samples = samples;
+      this.sampleCount = sampleCount;
+    }
+
+    /** Returns the time to the last sample. */
+    public double getDurationSecs() {
+      return (sampleCount - 1) * SAMPLE_PERIOD_SECS;
+    }
+
+    /** Returns the rotation of the first sample, which the trajectory was generated from. */
+    public double getStartRotationRad() {
+      return samples.get(ROTATION);
+    }
+
+    /** Returns the rotation of the last sample. */
+    public double getEndRotationRad() {
+      return samples.get((sampleCount - 1) * STRIDE + ROTATION);
+    }
+
+    /** Returns whether the last sample is slower than {@link #REST_SPEED_METERS_PER_SEC}. */
+    public boolean endsAtRest() {
+      int last = (sampleCount - 1) * STRIDE;
+      return Math.hypot(samples.get(last + VX), samples.get(last + VY))
+          < REST_SPEED_METERS_PER_SEC;
+    }
+
+    /**
+     * Interpolates the state at a time between the two samples around it. Times outside the
+     * trajectory are clamped to its start or end.
+     */
+    public void sample(double timeSecs, Setpoint setpoint) {
+      double position = MathUtil.clamp(timeSecs / SAMPLE_PERIOD_SECS, 0.0, sampleCount - 1);
+      int index = Math.max(Math.min((int) position, sampleCount - 2), 0);
+      double t = position - index;
+      int a = index * STRIDE;
+      int b = Math.min(index + 1, sampleCount - 1) * STRIDE;
+      setpoint.xMeters = interpolate(a + X, b + X, t);
+      setpoint.yMeters = interpolate(a + Y, b + Y, t);
+      setpoint.rotationRad =
+          MathUtil.angleModulus(
+              samples.get(a + ROTATION)
+                  + MathUtil.angleModulus(samples.get(b + ROTATION) - samples.get(a + ROTATION))
+                      * t);
+      setpoint.vxMetersPerSec = interpolate(a + VX, b + VX, t);
+      setpoint.vyMetersPerSec = interpolate(a + VY, b + VY, t);
+      setpoint.omegaRadPerSec = interpolate(a + OMEGA, b + OMEGA, t);
+    }
+
+    private double interpolate(int a, int b, double t) {
+      return samples.get(a) + (samples.get(b) - samples.get(a)) * t;
+    }
+  }
+
+  /** A field relative state of a trajectory, reused between samples. */
+  public static class Setpoint {
+    public double xMeters;
+    public double yMeters;
+    public double rotationRad;
+    public double vxMetersPerSec;
+    public double vyMetersPerSec;
+    public double omegaRadPerSec;
+  }
+}
@@ -0,0 +1,56 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestReporter;
+
+/**
+ * Runs every auto routine in the headless {@link SimHarness} and checks that it finishes in time.
+ * The simulated time, wall time and final pose of each auto, and the overall simulated seconds per
+ * wall second, are published to the test report.
+ */
+class AutoSimTest {
+  private static final double AUTO_TIMEOUT_SECS = 15.0;
+
+  // The robot container can only be constructed once per JVM
+  private static SimHarness harness;
+
+  @BeforeAll
+  static void createHarness() {
+    harness = new SimHarness();
+  }
+
+  @AfterAll
+  static void reportSpeedup(TestReporter reporter) {
+    reporter.publishEntry(
+        "Simulated seconds per wall second", String.format("%.1f", harness.getSpeedup()));
+  }
+
+  @TestFactory
+  Stream<DynamicTest> autosFinish(TestReporter reporter) {
+    return harness.getAutos().entrySet().stream()
+        .map(
+            auto ->
+                DynamicTest.dynamicTest(
+                    auto.getKey(),
+                    () -> {
+                      SimHarness.Result result =
+                          harness.runAuto(auto.getKey(), auto.getValue(), AUTO_TIMEOUT_SECS);
+                      reporter.publishEntry(
+                          result.name(),
+                          String.format(
+                              "%.2f s sim, %.1f ms wall, final pose %s",
+                              result.simulatedSecs(),
+                              result.wallSecs() * 1000.0,
+                              result.finalPose()));
+                      assertTrue(
+                          result.finished(),
+                          "\"" + result.name() + "\" did not finish within " + AUTO_TIMEOUT_SECS);
+                    }));
+  }
+}
@@ -0,0 +1,112 @@
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants.Mode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the SIM robot headless and faster than real time, so that every auto routine can be
+ * exercised on a build server. {@link AutoSimTest} runs every auto with it as part of "./gradlew
+ * test".
+ *
+ * <p>The HAL sim clock is paused and stepped manually by one loop period per cycle, so anything
+ * based on {@link edu.wpi.first.wpilibj.Timer} (e.g. wait commands) sees simulated time pass
+ * without the harness ever sleeping. Only one harness can exist per JVM, since the robot container
+ * can only be constructed once.
+ */
+class SimHarness {
+  private static final double LOOP_PERIOD_SECS = 0.02;
+  private static final double SETTLE_SECS = 0.5;
+
+  private final RobotContainer robotContainer;
+  private double simulatedSecs = 0.0;
+  private long wallNanos = 0;
+
+  SimHarness() {
+    if (Constants.currentMode != Mode.SIM) {
+      throw new IllegalStateException("The sim harness requires \"-Drobot.mode=SIM\"");
+    }
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+    SimHooks.pauseTiming();
+    DriverStationSim.setDsAttached(true);
+    setEnabled(false);
+    robotContainer = new RobotContainer();
+  }
+
+  /** Returns every auto routine available to the robot, by name. */
+  Map<String, Command> getAutos() {
+    Map<String, Command> autos = new LinkedHashMap<>();
+    for (String name : robotContainer.getAutoRegistry().getNames()) {
+      Command command = robotContainer.getAutoRegistry().build(name);
+      if (command != null) {
+        autos.put(name, command);
+      }
+    }
+    return autos;
+  }
+
+  /**
+   * Resets the robot to the origin, then runs a command in autonomous until it finishes or the
+   * timeout elapses.
+   *
+   * @return The result of the run.
+   */
+  Result runAuto(String name, Command command, double timeoutSecs) {
+    long startNanos = System.nanoTime();
+    CommandScheduler.getInstance().cancelAll();
+    setEnabled(false);
+    robotContainer.getDrive().setPose(new Pose2d());
+    step(SETTLE_SECS);
+
+    setEnabled(true);
+    command.schedule();
+    double elapsedSecs = 0.0;
+    while (command.isScheduled() && elapsedSecs < timeoutSecs) {
+      step(LOOP_PERIOD_SECS);
+      elapsedSecs += LOOP_PERIOD_SECS;
+    }
+    boolean finished = !command.isScheduled();
+    command.cancel();
+    setEnabled(false);
+    step(LOOP_PERIOD_SECS);
+
+    long autoWallNanos = System.nanoTime() - startNanos;
+    wallNanos += autoWallNanos;
+    return new Result(
+        name, finished, elapsedSecs, autoWallNanos / 1e9, robotContainer.getDrive().getPose());
+  }
+
+  /** Returns the total simulated seconds per wall clock second across every run so far. */
+  double getSpeedup() {
+    return wallNanos > 0 ? simulatedSecs / (wallNanos / 1e9) : 0.0;
+  }
+
+  /** Runs robot cycles until the specified amount of simulated time has passed. */
+  private void step(double durationSecs) {
+    for (double t = 0.0; t < durationSecs - 1e-9; t += LOOP_PERIOD_SECS) {
+      CommandScheduler.getInstance().run();
+      SimHooks.stepTiming(LOOP_PERIOD_SECS);
+      simulatedSecs += LOOP_PERIOD_SECS;
+    }
+  }
+
+  private static void setEnabled(boolean enabled) {
+    DriverStationSim.setAutonomous(true);
+    DriverStationSim.setEnabled(enabled);
+    DriverStationSim.notifyNewData();
+    DriverStation.refreshData();
+  }
+
+  /** Outcome of a single auto run. */
+  record Result(
+      String name, boolean finished, double simulatedSecs, double wallSecs, Pose2d finalPose) {}
+}
@@ -0,0 +1,47 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that integrating odometry in {@link Drive#periodic()} allocates nothing per sample. The
+ * cost per sample is the difference between a drive with many samples per cycle and one with few,
+ * so allocations made once per cycle (logging keys, disabled setpoints) cancel out.
+ */
+class DriveAllocationTest {
+  private static final int FEW_SAMPLES = 5;
+  private static final int MANY_SAMPLES = 20;
+  private static final int WARMUP_CYCLES = 5000;
+  private static final int MEASURED_CYCLES = 1000;
+
+  // Samples are integrated in primitives, so nothing should be allocated per sample. The margin
+  // only absorbs noise in the measurement, a single Rotation2d per sample is already 24 bytes.
+  private static final long MAX_BYTES_PER_SAMPLE = 16;
+
+  @Test
+  void odometryAllocatesNothingPerSample() {
+    double fewBytesPerCycle = measureBytesPerCycle(DriveFakes.createDrive(FEW_SAMPLES));
+    double manyBytesPerCycle = measureBytesPerCycle(DriveFakes.createDrive(MANY_SAMPLES));
+    double bytesPerSample = (manyBytesPerCycle - fewBytesPerCycle) / (MANY_SAMPLES - FEW_SAMPLES);
+    assertTrue(
+        bytesPerSample <= MAX_BYTES_PER_SAMPLE,
+        String.format(
+            "Allocated %.0f bytes per odometry sample (%.0f per cycle with %d samples)",
+            bytesPerSample, manyBytesPerCycle, MANY_SAMPLES));
+  }
+
+  private static double measureBytesPerCycle(Drive drive) {
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      drive.periodic();
+    }
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long startBytes = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < MEASURED_CYCLES; i++) {
+      drive.periodic();
+    }
+    return (threads.getThreadAllocatedBytes(threadId) - startBytes) / (double) MEASURED_CYCLES;
+  }
+}
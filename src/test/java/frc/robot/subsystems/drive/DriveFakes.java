@@ -0,0 +1,101 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * In-memory replacements for the drive hardware, so tests and benchmarks exercise only the robot
+ * code. Each fake produces a fixed number of odometry samples per 20 ms cycle, with steadily
+ * increasing timestamps and positions.
+ */
+final class DriveFakes {
+  private static final double CYCLE_SECS = 0.02;
+
+  private DriveFakes() {}
+
+  /**
+   * Creates a drive using fake IOs. Every drive configures PathPlanner again, which only reports an
+   * error, so later drives in the same JVM are still usable.
+   */
+  static Drive createDrive(int samplesPerCycle) {
+    HAL.initialize(500, 0);
+    return new Drive(
+        new FakeGyroIO(samplesPerCycle),
+        new FakeModuleIO(samplesPerCycle),
+        new FakeModuleIO(samplesPerCycle),
+        new FakeModuleIO(samplesPerCycle),
+        new FakeModuleIO(samplesPerCycle));
+  }
+
+  /** Module IO that drives forward at a constant speed. */
+  static class FakeModuleIO implements ModuleIO {
+    private static final Rotation2d TURN_ABSOLUTE_POSITION = new Rotation2d(0.1);
+    private static final Rotation2d TURN_POSITION = new Rotation2d(0.05);
+    private static final double DRIVE_VELOCITY_RAD_PER_SEC = 50.0;
+
+    private final double[] timestamps;
+    private final double[] drivePositionsRad;
+    private final double[] turnPositionsRad;
+    private double timestamp = 0.0;
+    private double drivePositionRad = 0.0;
+
+    FakeModuleIO(int samplesPerCycle) {
+      timestamps = new double[samplesPerCycle];
+      drivePositionsRad = new double[samplesPerCycle];
+      turnPositionsRad = new double[samplesPerCycle];
+    }
+
+    @Override
+    public void updateInputs(ModuleIOInputs inputs) {
+      double sampleSecs = CYCLE_SECS / timestamps.length;
+      for (int i = 0; i < timestamps.length; i++) {
+        timestamp += sampleSecs;
+        drivePositionRad += DRIVE_VELOCITY_RAD_PER_SEC * sampleSecs;
+        timestamps[i] = timestamp;
+        drivePositionsRad[i] = drivePositionRad;
+        turnPositionsRad[i] = TURN_POSITION.getRadians();
+      }
+
+      inputs.drivePositionRad = drivePositionRad;
+      inputs.driveVelocityRadPerSec = DRIVE_VELOCITY_RAD_PER_SEC;
+      inputs.turnAbsolutePosition = TURN_ABSOLUTE_POSITION;
+      inputs.turnPosition = TURN_POSITION;
+      // Nothing is logged in the tests and benchmarks, so the arrays can be reused
+      inputs.odometryTimestamps = timestamps;
+      inputs.odometryDrivePositionsRad = drivePositionsRad;
+      inputs.odometryTurnPositionsRad = turnPositionsRad;
+    }
+  }
+
+  /** Gyro IO that rotates at a constant rate. */
+  static class FakeGyroIO implements GyroIO {
+    private static final double YAW_VELOCITY_RAD_PER_SEC = 1.0;
+
+    private final double[] timestamps;
+    private final double[] yawPositionsRad;
+    private double timestamp = 0.0;
+    private double yawRad = 0.0;
+
+    FakeGyroIO(int samplesPerCycle) {
+      timestamps = new double[samplesPerCycle];
+      yawPositionsRad = new double[samplesPerCycle];
+    }
+
+    @Override
+    public void updateInputs(GyroIOInputs inputs) {
+      double sampleSecs = CYCLE_SECS / timestamps.length;
+      for (int i = 0; i < timestamps.length; i++) {
+        timestamp += sampleSecs;
+        yawRad += YAW_VELOCITY_RAD_PER_SEC * sampleSecs;
+        timestamps[i] = timestamp;
+        yawPositionsRad[i] = yawRad;
+      }
+
+      inputs.connected = true;
+      inputs.yawPosition = new Rotation2d(yawRad);
+      inputs.yawVelocityRadPerSec = YAW_VELOCITY_RAD_PER_SEC;
+      inputs.odometryYawTimestamps = timestamps;
+      inputs.odometryYawPositionsRad = yawPositionsRad;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link OdometryRingBuffer} drains what the producer published, and leaves out the
+ * samples whose slots the producer may have reused by the time the drain is done.
+ */
+class OdometryRingBufferTest {
+  private static final int CAPACITY = OdometryRingBuffer.CAPACITY;
+
+  private OdometryRingBuffer.Sequence sequence;
+  private OdometryRingBuffer first;
+  private OdometryRingBuffer second;
+
+  @BeforeEach
+  void setup() {
+    sequence = new OdometryRingBuffer.Sequence();
+    first = new OdometryRingBuffer(sequence);
+    second = new OdometryRingBuffer(sequence);
+  }
+
+  @Test
+  void drainsPublishedSamples() {
+    publish(10);
+    sequence.snapshot();
+    publish(5); // After the snapshot, drained in the next cycle
+    assertArrayEquals(range(0, 10), first.drain());
+    assertArrayEquals(range(0, 10), second.drain());
+
+    sequence.snapshot();
+    assertArrayEquals(range(10, 15), first.drain());
+    assertArrayEquals(range(10, 15), second.drain());
+  }
+
+  @Test
+  void keepsOnlyTheLatestSamplesPerCycle() {
+    publish(100);
+    sequence.snapshot();
+    assertArrayEquals(range(100 - OdometryRingBuffer.MAX_SAMPLES_PER_CYCLE, 100), first.drain());
+  }
+
+  @Test
+  void dropsLappedSamples() {
+    publish(40);
+    sequence.snapshot();
+    first.drain();
+    second.drain();
+    publish(60);
+    sequence.snapshot();
+
+    // The producer keeps going while the consumer is stalled. With samples up to 178 published, it
+    // may be writing sample 179 over sample 51 (128 slots).
+    publish(79);
+    assertArrayEquals(range(52, 100), first.drain());
+    assertArrayEquals(range(52, 100), second.drain(), "Buffers drained different samples");
+
+    // Whole cycle lapped
+    publish(CAPACITY);
+    sequence.snapshot();
+    publish(CAPACITY);
+    assertEquals(0, first.drain().length);
+    assertEquals(0, second.drain().length);
+  }
+
+  /** Publishes samples whose values are their sequence numbers. */
+  private void publish(int count) {
+    for (int i = 0; i < count; i++) {
+      long sequenceNumber = sequence.next();
+      first.write(sequenceNumber, sequenceNumber);
+      second.write(sequenceNumber, sequenceNumber);
+      sequence.publish(sequenceNumber);
+    }
+  }
+
+  private static double[] range(int start, int end) {
+    double[] values = new double[end - start];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = start + i;
+    }
+    return values;
+  }
+}
@@ -0,0 +1,110 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link SquareSwerveKinematics} gives the same results as WPILib's {@link
+ * SwerveDriveKinematics} for the drive geometry, over random inputs.
+ */
+class SquareSwerveKinematicsTest {
+  private static final double MAX_SPEED = 4.6;
+  private static final double TOLERANCE = 1e-9;
+  private static final int SAMPLES = 10000;
+
+  private SwerveDriveKinematics wpilibKinematics;
+  private SquareSwerveKinematics squareKinematics;
+  private final Random random = new Random(3374);
+  private final double[] speeds = new double[4];
+  private final double[] anglesRad = new double[4];
+  private final double[] result = new double[3];
+
+  @BeforeEach
+  void setup() {
+    var translations = Drive.getModuleTranslations();
+    assertEquals(
+        translations[0].getX(), translations[0].getY(), "The drive base is no longer square");
+    wpilibKinematics = new SwerveDriveKinematics(translations);
+    squareKinematics = new SquareSwerveKinematics(translations[0].getX(), translations[0].getY());
+  }
+
+  @Test
+  void moduleStatesMatchWpilib() {
+    for (int sample = 0; sample < SAMPLES; sample++) {
+      // Include zero speeds, which keep the previous headings
+      var chassisSpeeds =
+          sample % 10 == 0
+              ? new ChassisSpeeds()
+              : new ChassisSpeeds(
+                  random.nextGaussian() * 3.0,
+                  random.nextGaussian() * 3.0,
+                  random.nextGaussian() * 5.0);
+
+      SwerveModuleState[] states = wpilibKinematics.toSwerveModuleStates(chassisSpeeds);
+      SwerveDriveKinematics.desaturateWheelSpeeds(states, MAX_SPEED);
+      squareKinematics.toModuleStates(
+          chassisSpeeds.vxMetersPerSecond,
+          chassisSpeeds.vyMetersPerSecond,
+          chassisSpeeds.omegaRadiansPerSecond,
+          speeds,
+          anglesRad);
+      SquareSwerveKinematics.desaturate(speeds, MAX_SPEED);
+      for (int i = 0; i < 4; i++) {
+        assertEquals(states[i].speedMetersPerSecond, speeds[i], TOLERANCE, "module speed");
+        assertEquals(
+            0.0,
+            states[i].angle.minus(new Rotation2d(anglesRad[i])).getRadians(),
+            TOLERANCE,
+            "module angle");
+      }
+    }
+  }
+
+  @Test
+  void chassisSpeedsMatchWpilib() {
+    // Unrelated module states, which need the least squares solution
+    for (int sample = 0; sample < SAMPLES; sample++) {
+      SwerveModuleState[] states = new SwerveModuleState[4];
+      for (int i = 0; i < 4; i++) {
+        randomizeModule(i);
+        states[i] = new SwerveModuleState(speeds[i], new Rotation2d(anglesRad[i]));
+      }
+      ChassisSpeeds expected = wpilibKinematics.toChassisSpeeds(states);
+      squareKinematics.toChassisSpeeds(speeds, anglesRad, result);
+      assertEquals(expected.vxMetersPerSecond, result[0], TOLERANCE, "vx");
+      assertEquals(expected.vyMetersPerSecond, result[1], TOLERANCE, "vy");
+      assertEquals(expected.omegaRadiansPerSecond, result[2], TOLERANCE, "omega");
+    }
+  }
+
+  @Test
+  void twistsMatchWpilib() {
+    for (int sample = 0; sample < SAMPLES; sample++) {
+      SwerveModulePosition[] deltas = new SwerveModulePosition[4];
+      for (int i = 0; i < 4; i++) {
+        randomizeModule(i);
+        speeds[i] *= 0.004;
+        deltas[i] = new SwerveModulePosition(speeds[i], new Rotation2d(anglesRad[i]));
+      }
+      Twist2d expected = wpilibKinematics.toTwist2d(deltas);
+      squareKinematics.toTwist(speeds, anglesRad, result);
+      assertEquals(expected.dx, result[0], TOLERANCE, "dx");
+      assertEquals(expected.dy, result[1], TOLERANCE, "dy");
+      assertEquals(expected.dtheta, result[2], TOLERANCE, "dtheta");
+    }
+  }
+
+  private void randomizeModule(int index) {
+    speeds[index] = random.nextGaussian() * 3.0;
+    anglesRad[index] = random.nextDouble() * 2.0 * Math.PI - Math.PI;
+  }
+}
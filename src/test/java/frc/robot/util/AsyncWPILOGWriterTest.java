@@ -0,0 +1,194 @@
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.littletonrobotics.junction.LogTable;
+
+/**
+ * Reads the logs of {@link AsyncWPILOGWriter} back with WPILib's {@link DataLogReader}: every value
+ * type, values that only change sometimes, and the outputs and cycles left out when the ring fills
+ * up while the disk is stalled.
+ */
+class AsyncWPILOGWriterTest {
+  private static final long CYCLE_MICROS = 20000;
+
+  @TempDir Path directory;
+
+  @Test
+  void everyTypeRoundTrips() throws IOException {
+    String path = directory.resolve("types.wpilog").toString();
+    var writer = new AsyncWPILOGWriter(path);
+    writer.start();
+    LogTable table = new LogTable(0);
+    for (int i = 0; i < 3; i++) {
+      table.setTimestamp(i * CYCLE_MICROS);
+      table.put("Test/Raw", new byte[] {1, 2, (byte) i});
+      table.put("Test/Boolean", i % 2 == 0);
+      table.put("Test/Integer", 1L << 40 | i);
+      table.put("Test/Float", 0.5f + i);
+      table.put("Test/Double", Math.PI * i);
+      table.put("Test/String", "value" + i);
+      table.put("Test/BooleanArray", new boolean[] {true, i == 1, false});
+      table.put("Test/IntegerArray", new long[] {-1L, i, Long.MAX_VALUE});
+      table.put("Test/FloatArray", new float[] {0.25f, i});
+      table.put("Test/DoubleArray", new double[] {-2.5, i, Double.MAX_VALUE});
+      table.put("Test/StringArray", new String[] {"a", "", "\u00e9" + i});
+      table.put("Test/Constant", 3374L);
+      writer.putTable(table);
+    }
+    writer.end();
+
+    Log log = readLog(path);
+    for (int i = 0; i < 3; i++) {
+      assertArrayEquals(new byte[] {1, 2, (byte) i}, log.value("/Test/Raw", "raw", i).getRaw());
+      assertEquals(i % 2 == 0, log.value("/Test/Boolean", "boolean", i).getBoolean());
+      assertEquals(1L << 40 | i, log.value("/Test/Integer", "int64", i).getInteger());
+      assertEquals(0.5f + i, log.value("/Test/Float", "float", i).getFloat());
+      assertEquals(Math.PI * i, log.value("/Test/Double", "double", i).getDouble());
+      assertEquals("value" + i, log.value("/Test/String", "string", i).getString());
+      assertArrayEquals(
+          new boolean[] {true, i == 1, false},
+          log.value("/Test/BooleanArray", "boolean[]", i).getBooleanArray());
+      assertArrayEquals(
+          new long[] {-1L, i, Long.MAX_VALUE},
+          log.value("/Test/IntegerArray", "int64[]", i).getIntegerArray());
+      assertArrayEquals(
+          new float[] {0.25f, i}, log.value("/Test/FloatArray", "float[]", i).getFloatArray());
+      assertArrayEquals(
+          new double[] {-2.5, i, Double.MAX_VALUE},
+          log.value("/Test/DoubleArray", "double[]", i).getDoubleArray());
+      assertArrayEquals(
+          new String[] {"a", "", "\u00e9" + i},
+          log.value("/Test/StringArray", "string[]", i).getStringArray());
+      assertEquals(i * CYCLE_MICROS, log.value("/Timestamp", "int64", i).getInteger());
+    }
+
+    // Unchanged values are only written once
+    assertEquals(1, log.records("/Test/Constant").size());
+    assertEquals(3374L, log.value("/Test/Constant", "int64", 0).getInteger());
+    for (String metric : List.of("MaxWriteMs", "MaxFsyncMs")) {
+      assertEquals(3, log.records("/AsyncLogWriter/" + metric).size());
+      assertEquals("double", log.types.get("/AsyncLogWriter/" + metric));
+    }
+    assertEquals(0, lastInteger(log, "/AsyncLogWriter/DroppedCycles"));
+    assertEquals(0, lastInteger(log, "/AsyncLogWriter/DroppedOutputCycles"));
+  }
+
+  @Test
+  void fullRingDropsOutputsThenCycles() throws IOException, InterruptedException {
+    String path = directory.resolve("stalled.wpilog").toString();
+    var writer = new AsyncWPILOGWriter(path, 16 * 1024);
+    writer.putHeader();
+
+    // Without the writer thread, the ring only fills up. A cycle takes about 600 bytes with the
+    // output and 100 without it, so outputs are left out past half the ring, then whole cycles.
+    final int stalledCycles = 200;
+    final int constantOutputCycle = 20;
+    LogTable table = new LogTable(0);
+    int cycle = 0;
+    for (; cycle < stalledCycles; cycle++) {
+      putCycle(writer, table, cycle, Math.min(cycle, constantOutputCycle));
+    }
+
+    // Once the disk catches up, the output is written again even though it stopped changing
+    writer.startWriter();
+    for (int i = 0; i < 50; i++, cycle++) {
+      putCycle(writer, table, cycle, constantOutputCycle);
+      Thread.sleep(CYCLE_MICROS / 1000);
+    }
+    writer.end();
+
+    Log log = readLog(path);
+    long droppedCycles = lastInteger(log, "/AsyncLogWriter/DroppedCycles");
+    long droppedOutputCycles = lastInteger(log, "/AsyncLogWriter/DroppedOutputCycles");
+    assertTrue(droppedCycles > 0, "No cycle was dropped");
+    assertTrue(droppedOutputCycles > 0, "No outputs were left out");
+
+    // Every cycle that wasn't dropped has its input, at the right time
+    List<DataLogRecord> inputs = log.records("/Inputs/Cycle");
+    assertEquals(cycle - droppedCycles, inputs.size());
+    for (DataLogRecord input : inputs) {
+      assertEquals(input.getTimestamp() / CYCLE_MICROS, input.getInteger());
+    }
+
+    List<DataLogRecord> outputs = log.records("/RealOutputs/Values");
+    assertTrue(outputs.size() < inputs.size(), "Outputs were never left out");
+    double[] lastOutput = outputs.get(outputs.size() - 1).getDoubleArray();
+    assertEquals(constantOutputCycle, lastOutput[0]);
+    long lastStalledOutput =
+        outputs.stream()
+            .filter(record -> record.getTimestamp() < stalledCycles * CYCLE_MICROS)
+            .mapToLong(record -> (long) record.getDoubleArray()[0])
+            .max()
+            .orElse(-1);
+    assertTrue(lastStalledOutput < constantOutputCycle, "The stalled ring kept every output");
+    assertFalse(lastStalledOutput < 0, "No output was written before the ring filled up");
+  }
+
+  private static void putCycle(AsyncWPILOGWriter writer, LogTable table, int cycle, int output) {
+    table.setTimestamp(cycle * CYCLE_MICROS);
+    table.put("Inputs/Cycle", (long) cycle);
+    double[] values = new double[64];
+    values[0] = output;
+    table.put("RealOutputs/Values", values);
+    writer.putTable(table);
+  }
+
+  private static long lastInteger(Log log, String name) {
+    List<DataLogRecord> records = log.records(name);
+    return records.get(records.size() - 1).getInteger();
+  }
+
+  private static Log readLog(String path) throws IOException {
+    DataLogReader reader = new DataLogReader(path);
+    assertTrue(reader.isValid(), "Not a valid WPILOG file");
+    assertEquals("AdvantageKit", reader.getExtraHeader());
+    Log log = new Log();
+    Map<Integer, String> names = new HashMap<>();
+    for (DataLogRecord record : reader) {
+      if (record.isStart()) {
+        DataLogRecord.StartRecordData start = record.getStartData();
+        assertFalse(names.containsValue(start.name), "Entry started twice: " + start.name);
+        names.put(start.entry, start.name);
+        log.types.put(start.name, start.type);
+      } else if (!record.isControl()) {
+        log.records
+            .computeIfAbsent(names.get(record.getEntry()), name -> new ArrayList<>())
+            .add(record);
+      }
+    }
+    return log;
+  }
+
+  /** The records of a log by entry name, in order. */
+  private static class Log {
+    private final Map<String, String> types = new HashMap<>();
+    private final Map<String, List<DataLogRecord>> records = new HashMap<>();
+
+    List<DataLogRecord> records(String name) {
+      assertTrue(records.containsKey(name), "No records for " + name);
+      return records.get(name);
+    }
+
+    /** Returns the record of an entry in a cycle, checking the entry's type. */
+    DataLogRecord value(String name, String type, int cycle) {
+      assertEquals(type, types.get(name), "Type of " + name);
+      List<DataLogRecord> entryRecords = records(name);
+      assertEquals(cycle * CYCLE_MICROS, entryRecords.get(cycle).getTimestamp());
+      return entryRecords.get(cycle);
+    }
+  }
+}
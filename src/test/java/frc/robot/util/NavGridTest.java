@@ -0,0 +1,100 @@
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+import edu.wpi.first.math.Pair;
+import edu.wpi.first.math.geometry.Translation2d;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link NavGrid.DynamicField} repairs its field to the same costs as searching from
+ * scratch, as random robot-sized obstacles move, appear and disappear around each cached goal.
+ */
+class NavGridTest {
+  private static final int STEPS = 300;
+  private static final int MAX_OBSTACLES = 8;
+  private static final double OBSTACLE_HALF_SIZE = 0.45;
+  private static final double TOLERANCE = 1e-4;
+
+  private static NavGrid navGrid;
+
+  @BeforeAll
+  static void loadNavGrid() throws IOException {
+    navGrid = NavGrid.load();
+  }
+
+  @Test
+  void dynamicFieldMatchesSearchFromScratch() {
+    Random random = new Random(3374);
+    long[] cells = navGrid.createCellSet();
+    for (int goal = 0; goal < navGrid.getGoals().size(); goal++) {
+      Translation2d goalPosition = navGrid.getGoals().get(goal).position();
+      NavGrid.DynamicField field = navGrid.createDynamicField(goal);
+      List<Translation2d> centers = new ArrayList<>();
+      for (int step = 0; step < STEPS; step++) {
+        if (step % 50 == 49) {
+          centers.clear();
+        } else {
+          moveObstacles(random, centers, goalPosition);
+        }
+        List<Pair<Translation2d, Translation2d>> boxes = new ArrayList<>();
+        var halfSize = new Translation2d(OBSTACLE_HALF_SIZE, OBSTACLE_HALF_SIZE);
+        for (var center : centers) {
+          boxes.add(new Pair<>(center.minus(halfSize), center.plus(halfSize)));
+        }
+        navGrid.markBoxes(boxes, cells);
+        field.setDynamicObstacles(cells);
+
+        assertCostsEqual(field.searchFromScratch(), field.getCosts(), goal, step);
+      }
+    }
+  }
+
+  private static void assertCostsEqual(float[] expected, float[] actual, int goal, int step) {
+    for (int cell = 0; cell < expected.length; cell++) {
+      // Unreachable cells are infinite in both, and their difference isn't greater
+      if (Math.abs(expected[cell] - actual[cell]) > TOLERANCE) {
+        fail(
+            String.format(
+                "Cost of cell %d for goal %d after step %d: expected %f, got %f",
+                cell, goal, step, expected[cell], actual[cell]));
+      }
+    }
+  }
+
+  /**
+   * Moves each obstacle by up to two cells, teleports some of them, and adds or removes one now and
+   * then. Obstacles are mostly placed near the goal, where they change its routes the most.
+   */
+  private static void moveObstacles(
+      Random random, List<Translation2d> centers, Translation2d goalPosition) {
+    for (int i = 0; i < centers.size(); i++) {
+      centers.set(
+          i,
+          random.nextDouble() < 0.1
+              ? randomPosition(random, goalPosition)
+              : centers
+                  .get(i)
+                  .plus(
+                      new Translation2d(
+                          (random.nextInt(5) - 2) * 0.3, (random.nextInt(5) - 2) * 0.3)));
+    }
+    if (centers.size() < MAX_OBSTACLES && random.nextDouble() < 0.3) {
+      centers.add(randomPosition(random, goalPosition));
+    } else if (!centers.isEmpty() && random.nextDouble() < 0.1) {
+      centers.remove(random.nextInt(centers.size()));
+    }
+  }
+
+  private static Translation2d randomPosition(Random random, Translation2d goalPosition) {
+    return random.nextBoolean()
+        ? goalPosition.plus(
+            new Translation2d(random.nextGaussian() * 1.5, random.nextGaussian() * 1.5))
+        : new Translation2d(random.nextDouble() * 16.54, random.nextDouble() * 8.21);
+  }
+}
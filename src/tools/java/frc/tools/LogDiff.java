@@ -0,0 +1,359 @@
+package frc.tools;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.littletonrobotics.junction.LogFileUtil;
+
+/**
+ * Compares an original log against its replayed "_sim" log and reports which fields diverged. Run
+ * with "./gradlew logDiff --args='path/to/log.wpilog'", optionally followed by the replayed log.
+ *
+ * <p>Both logs are read in a single pass, merged by timestamp, so memory use depends only on the
+ * number of fields. Fields are only written when they change, so each field holds its last value
+ * and both sides are compared at every timestamp where either one changes. Outputs are matched
+ * across the "RealOutputs/" and "ReplayOutputs/" tables, and all other fields by name.
+ *
+ * <p>Numeric fields and arrays are compared element by element. Structs whose schema (logged under
+ * "/.schema/") only holds doubles, like the geometry and kinematics structs, are compared the same
+ * way. Anything else, including other structs, only reports whether the values are equal.
+ */
+public class LogDiff {
+  private static final double TOLERANCE = 1e-9;
+  private static final String SCHEMA_PREFIX = "/.schema/struct:";
+
+  private final Map<String, Field> fields = new LinkedHashMap<>();
+  private final List<Field> changedFields = new ArrayList<>();
+
+  public static void main(String... args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("Usage: logDiff <original.wpilog> [replayed.wpilog]");
+      System.exit(2);
+    }
+    String originalPath = args[0];
+    String replayedPath =
+        args.length > 1 ? args[1] : LogFileUtil.addPathSuffix(originalPath, "_sim");
+
+    long startNanos = System.nanoTime();
+    List<Field> fields = new LogDiff().diff(originalPath, replayedPath);
+    double wallSecs = (System.nanoTime() - startNanos) / 1e9;
+
+    int diverged = 0;
+    int compared = 0;
+    List<String> unmatched = new ArrayList<>();
+    for (Field field : fields) {
+      if (field.comparisons == 0) {
+        if (field.names[0] == null || field.names[1] == null) {
+          unmatched.add(field.names[0] == null ? "+ " + field.names[1] : "- " + field.names[0]);
+        }
+        continue;
+      }
+      compared++;
+      if (field.firstDivergence < 0) {
+        continue;
+      }
+      diverged++;
+      System.out.printf(
+          "%-60s first %9.3f s  max %10.4g  rms %10.4g  %s%n",
+          field.key,
+          field.firstDivergence / 1e6,
+          field.maxError,
+          field.samples > 0 ? Math.sqrt(field.sumSquaredError / field.samples) : 0.0,
+          field.mismatches > 0 ? field.mismatches + " mismatched values" : "");
+    }
+    for (String name : unmatched) {
+      System.out.println(name);
+    }
+    System.out.printf(
+        "%d of %d fields diverged, %d only in one log, compared in %.3f s%n",
+        diverged, compared, unmatched.size(), wallSecs);
+    System.exit(diverged > 0 ? 1 : 0);
+  }
+
+  /**
+   * Compares two logs.
+   *
+   * @return Every field found in either log, sorted by first divergence (diverged fields first).
+   */
+  public List<Field> diff(String originalPath, String replayedPath) throws IOException {
+    Side original = new Side(originalPath, 0);
+    Side replayed = new Side(replayedPath, 1);
+
+    long groupTimestamp = Long.MIN_VALUE;
+    while (original.next != null || replayed.next != null) {
+      Side side;
+      if (original.next == null) {
+        side = replayed;
+      } else if (replayed.next == null) {
+        side = original;
+      } else {
+        side =
+            original.next.getTimestamp() <= replayed.next.getTimestamp() ? original : replayed;
+      }
+      long timestamp = side.next.getTimestamp();
+      if (timestamp != groupTimestamp) {
+        compareChangedFields(groupTimestamp);
+        groupTimestamp = timestamp;
+      }
+      side.process(side.next);
+      side.advance();
+    }
+    compareChangedFields(groupTimestamp);
+
+    List<Field> sorted = new ArrayList<>(fields.values());
+    sorted.sort(
+        Comparator.comparingLong(
+            (Field field) -> field.firstDivergence < 0 ? Long.MAX_VALUE : field.firstDivergence));
+    return sorted;
+  }
+
+  private void compareChangedFields(long timestamp) {
+    for (Field field : changedFields) {
+      field.changed = false;
+      field.compare(timestamp);
+    }
+    changedFields.clear();
+  }
+
+  /** Maps a log entry name to the key shared by both logs, or null to skip the entry. */
+  private static String getKey(String name, int sideIndex) {
+    if (name.startsWith("/")) {
+      name = name.substring(1);
+    }
+    if (name.startsWith("RealOutputs/")) {
+      // The replayed log also carries the original outputs, which are not recomputed
+      return sideIndex == 0 ? "Outputs/" + name.substring("RealOutputs/".length()) : null;
+    }
+    if (name.startsWith("ReplayOutputs/")) {
+      return sideIndex == 1 ? "Outputs/" + name.substring("ReplayOutputs/".length()) : null;
+    }
+    return name;
+  }
+
+  /** One of the two logs being compared. */
+  private class Side {
+    private final int index;
+    private final Iterator<DataLogRecord> records;
+    private final Map<Integer, Field> entries = new HashMap<>();
+    private final Map<Integer, String> types = new HashMap<>();
+    private final Map<Integer, String> schemaEntries = new HashMap<>();
+    private final Map<String, String> schemas = new HashMap<>();
+    private final Map<String, Boolean> doubleStructs = new HashMap<>();
+    private DataLogRecord next;
+
+    private Side(String path, int index) throws IOException {
+      DataLogReader reader = new DataLogReader(path);
+      if (!reader.isValid()) {
+        throw new IOException("Not a valid log: " + path);
+      }
+      this.index = index;
+      this.records = reader.iterator();
+      advance();
+    }
+
+    private void advance() {
+      next = records.hasNext() ? records.next() : null;
+    }
+
+    private void process(DataLogRecord record) {
+      if (record.isStart()) {
+        DataLogRecord.StartRecordData start = record.getStartData();
+        if (start.name.startsWith(SCHEMA_PREFIX)) {
+          schemaEntries.put(start.entry, start.name.substring(SCHEMA_PREFIX.length()));
+        }
+        String key = getKey(start.name, index);
+        if (key != null) {
+          Field field = fields.computeIfAbsent(key, Field::new);
+          field.names[index] = start.name;
+          entries.put(start.entry, field);
+          types.put(start.entry, start.type);
+        }
+        return;
+      }
+      if (record.isControl()) {
+        return;
+      }
+      String schemaName = schemaEntries.get(record.getEntry());
+      if (schemaName != null) {
+        schemas.put(schemaName, new String(record.getRaw(), StandardCharsets.UTF_8));
+        doubleStructs.clear();
+      }
+      Field field = entries.get(record.getEntry());
+      if (field == null) {
+        return;
+      }
+      String type = types.get(record.getEntry());
+      if (type.startsWith("struct:") && isDoubleStruct(type.substring("struct:".length()))) {
+        byte[] raw = record.getRaw();
+        double[] converted = new double[raw.length / Double.BYTES];
+        ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(converted);
+        field.values[index] = converted;
+      } else {
+        field.values[index] = decode(record, type);
+      }
+      if (!field.changed) {
+        field.changed = true;
+        changedFields.add(field);
+      }
+    }
+
+    /**
+     * Returns whether a struct (or struct array) only holds doubles, directly or in nested structs,
+     * according to the schemas logged so far.
+     */
+    private boolean isDoubleStruct(String name) {
+      if (name.endsWith("[]")) {
+        name = name.substring(0, name.length() - 2);
+      }
+      Boolean cached = doubleStructs.get(name);
+      if (cached != null) {
+        return cached;
+      }
+      String schema = schemas.get(name);
+      if (schema == null) {
+        return false;
+      }
+      doubleStructs.put(name, false); // Until checked, in case of a cycle
+      boolean doubles = true;
+      for (String declaration : schema.split(";")) {
+        if (declaration.isBlank()) {
+          continue;
+        }
+        // "type name" or "type name[count]", anything else (enums, bit fields) isn't a double
+        String[] parts = declaration.trim().split("\\s+");
+        if (parts.length != 2 || parts[1].contains(":")) {
+          doubles = false;
+        } else if (!parts[0].equals("double") && !parts[0].equals("float64")) {
+          doubles &= isDoubleStruct(parts[0]);
+        }
+      }
+      doubleStructs.put(name, doubles);
+      return doubles;
+    }
+  }
+
+  /** Returns numeric values as a double array, and anything else as a comparable object. */
+  private static Object decode(DataLogRecord record, String type) {
+    switch (type) {
+      case "double":
+        return new double[] {record.getDouble()};
+      case "float":
+        return new double[] {record.getFloat()};
+      case "int64":
+        return new double[] {record.getInteger()};
+      case "boolean":
+        return new double[] {record.getBoolean() ? 1.0 : 0.0};
+      case "double[]":
+        return record.getDoubleArray();
+      case "float[]":
+        {
+          float[] values = record.getFloatArray();
+          double[] converted = new double[values.length];
+          for (int i = 0; i < values.length; i++) {
+            converted[i] = values[i];
+          }
+          return converted;
+        }
+      case "int64[]":
+        {
+          long[] values = record.getIntegerArray();
+          double[] converted = new double[values.length];
+          for (int i = 0; i < values.length; i++) {
+            converted[i] = values[i];
+          }
+          return converted;
+        }
+      case "boolean[]":
+        {
+          boolean[] values = record.getBooleanArray();
+          double[] converted = new double[values.length];
+          for (int i = 0; i < values.length; i++) {
+            converted[i] = values[i] ? 1.0 : 0.0;
+          }
+          return converted;
+        }
+      case "string":
+      case "json":
+        return record.getString();
+      case "string[]":
+        return record.getStringArray();
+      default:
+        return record.getRaw();
+    }
+  }
+
+  /** Divergence statistics for a single field. */
+  public static class Field {
+    public final String key;
+    /** Original and replayed entry names, null if the field is missing from that log. */
+    public final String[] names = new String[2];
+    /** Timestamp of the first divergence in microseconds, or -1 if the values always matched. */
+    public long firstDivergence = -1;
+
+    public double maxError = 0.0;
+    public double sumSquaredError = 0.0;
+    /** Number of timestamps where both values were compared. */
+    public long comparisons = 0;
+    /** Number of numeric elements compared. */
+    public long samples = 0;
+    /** Number of comparisons where the values could not be compared numerically. */
+    public long mismatches = 0;
+
+    private final Object[] values = new Object[2];
+    private boolean changed = false;
+
+    private Field(String key) {
+      this.key = key;
+    }
+
+    private void compare(long timestamp) {
+      if (values[0] == null || values[1] == null) {
+        return;
+      }
+      comparisons++;
+      if (values[0] instanceof double[] original && values[1] instanceof double[] replayed) {
+        if (original.length != replayed.length) {
+          diverge(timestamp);
+          mismatches++;
+          return;
+        }
+        for (int i = 0; i < original.length; i++) {
+          if (Double.isNaN(original[i]) || Double.isNaN(replayed[i])) {
+            if (Double.isNaN(original[i]) != Double.isNaN(replayed[i])) {
+              diverge(timestamp);
+              mismatches++;
+            }
+            continue;
+          }
+          double error = Math.abs(original[i] - replayed[i]);
+          maxError = Math.max(maxError, error);
+          sumSquaredError += error * error;
+          samples++;
+          if (error > TOLERANCE) {
+            diverge(timestamp);
+          }
+        }
+      } else if (!Objects.deepEquals(values[0], values[1])) {
+        diverge(timestamp);
+        mismatches++;
+      }
+    }
+
+    private void diverge(long timestamp) {
+      if (firstDivergence < 0) {
+        firstDivergence = timestamp;
+      }
+    }
+  }
+}
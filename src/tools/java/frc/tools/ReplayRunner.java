@@ -0,0 +1,160 @@
+package frc.tools;
+
+import frc.robot.Constants;
+import frc.robot.Main;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Replays every log in a directory through the REPLAY mode pipeline, writing a "_sim" log next to
+ * each one. Run with "./gradlew replayBatch" (defaults to "logs/"), or pass a directory and an
+ * optional number of parallel replays with "--args".
+ *
+ * <p>The logger is static, so each log is replayed in its own JVM running the normal robot program.
+ * The log is selected through the "AKIT_LOG_PATH" environment variable read by {@link
+ * org.littletonrobotics.junction.LogFileUtil#findReplayLog()}, and the replay exits on its own once
+ * the log ends.
+ *
+ * <p>Each JVM also runs in its own scratch directory, so the files the robot program writes to its
+ * working directory (e.g. "networktables.json") aren't shared between parallel replays. The deploy
+ * directory is linked into it, since the robot program reads it relative to the working directory.
+ */
+public class ReplayRunner {
+  private static final String SIM_SUFFIX = "_sim.wpilog";
+
+  public static void main(String... args) throws IOException, InterruptedException {
+    Path directory = Path.of(args.length > 0 ? args[0] : "logs");
+    int parallelism =
+        args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+    List<Path> logs;
+    try (Stream<Path> files = Files.list(directory)) {
+      logs =
+          files
+              .filter(path -> path.toString().endsWith(".wpilog"))
+              .filter(path -> !path.toString().endsWith(SIM_SUFFIX))
+              .sorted()
+              .toList();
+    }
+    if (logs.isEmpty()) {
+      System.out.println("No logs found in " + directory.toAbsolutePath());
+      return;
+    }
+    System.out.printf(
+        "Replaying %d logs from %s, %d at a time%n",
+        logs.size(), directory.toAbsolutePath(), parallelism);
+
+    long startNanos = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, logs.size()));
+    List<Future<Result>> futures = new ArrayList<>();
+    for (Path log : logs) {
+      futures.add(executor.submit(() -> replay(log)));
+    }
+    executor.shutdown();
+
+    long totalBytes = 0;
+    int failures = 0;
+    for (Future<Result> future : futures) {
+      Result result;
+      try {
+        result = future.get();
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+      totalBytes += result.bytes();
+      if (!result.succeeded()) {
+        failures++;
+      }
+      System.out.printf(
+          "%-40s %-6s %8.1f ms %8.2f MB/s%s%n",
+          result.log().getFileName(),
+          result.succeeded() ? "ok" : "FAILED",
+          result.wallSecs() * 1000.0,
+          result.bytes() / 1e6 / result.wallSecs(),
+          result.succeeded() ? "" : " (output in " + result.output() + ")");
+    }
+
+    double totalSecs = (System.nanoTime() - startNanos) / 1e9;
+    System.out.printf(
+        "Replayed %d logs (%d failed) in %.2f s, %.2f MB/s overall%n",
+        logs.size(), failures, totalSecs, totalBytes / 1e6 / totalSecs);
+    System.exit(failures > 0 ? 1 : 0);
+  }
+
+  /** Replays a single log in a separate robot program JVM. */
+  private static Result replay(Path log) throws IOException, InterruptedException {
+    String java = ProcessHandle.current().info().command().orElse("java");
+    Path output = Files.createTempFile(log.getFileName().toString(), ".txt");
+    Path scratch = createScratchDirectory(log);
+    ProcessBuilder builder =
+        new ProcessBuilder(
+            java,
+            "-Drobot.mode=" + Constants.Mode.REPLAY.name(),
+            "-Djava.library.path=" + System.getProperty("java.library.path"),
+            "-cp",
+            System.getProperty("java.class.path"),
+            Main.class.getName());
+    builder.environment().put("AKIT_LOG_PATH", log.toAbsolutePath().toString());
+    builder.directory(scratch.toFile());
+    builder.redirectErrorStream(true);
+    builder.redirectOutput(output.toFile());
+
+    long startNanos = System.nanoTime();
+    int exitCode;
+    try {
+      exitCode = builder.start().waitFor();
+    } finally {
+      deleteRecursively(scratch);
+    }
+    double wallSecs = (System.nanoTime() - startNanos) / 1e9;
+
+    boolean succeeded = exitCode == 0;
+    if (succeeded) {
+      Files.delete(output);
+    }
+    return new Result(log, succeeded, Files.size(log), wallSecs, output.toFile());
+  }
+
+  /**
+   * Creates an empty working directory for one replay, with the deploy directory of this one
+   * linked (or copied, where links aren't allowed) at the same relative path.
+   */
+  private static Path createScratchDirectory(Path log) throws IOException {
+    Path scratch = Files.createTempDirectory("replay-" + log.getFileName());
+    Path deploy = Path.of("src", "main", "deploy");
+    Path source = deploy.toAbsolutePath();
+    Path target = scratch.resolve(deploy);
+    Files.createDirectories(target.getParent());
+    try {
+      Files.createSymbolicLink(target, source);
+    } catch (IOException | UnsupportedOperationException e) {
+      try (Stream<Path> files = Files.walk(source)) {
+        for (Path file : (Iterable<Path>) files::iterator) {
+          Files.copy(file, target.resolve(source.relativize(file)));
+        }
+      }
+    }
+    return scratch;
+  }
+
+  /** Deletes a scratch directory, without following the link to the deploy directory. */
+  private static void deleteRecursively(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private record Result(Path log, boolean succeeded, long bytes, double wallSecs, File output) {}
+}